@@ -0,0 +1,151 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package maps;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import trees.AVLTreeBenchmark;
+
+/**
+ * SimpleTreeMap's put, putAll, get and keys, with java.util.TreeMap and
+ * ConcurrentSkipListMap doing the same work as baselines.
+ *
+ * put builds a whole map from random keys, one put() at a time, and putAll
+ * builds it from a single unsorted batch, so their times are per map; get is
+ * per call, and keys per full set of keys (copied into a HashSet for the
+ * baselines, as keys() does).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SimpleTreeMapBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    Integer[] keys;
+    Integer[] lookups;
+    Map<Integer, Integer> batch;
+    SimpleTreeMap<Integer, Integer> simple;
+    TreeMap<Integer, Integer> treeMap;
+    ConcurrentSkipListMap<Integer, Integer> skipList;
+    int next;
+
+    @Setup
+    public void setup() {
+        keys = AVLTreeBenchmark.shuffled(size, 1);
+        lookups = AVLTreeBenchmark.shuffled(size, 2);
+        batch = new HashMap<>();
+        for (Integer k : keys) {
+            batch.put(k, k);
+        }
+        simple = putSimpleTreeMap();
+        treeMap = putTreeMap();
+        skipList = putConcurrentSkipListMap();
+    }
+
+    private Integer nextLookup() {
+        Integer k = lookups[next];
+        next = (next + 1 == lookups.length) ? 0 : next + 1;
+        return k;
+    }
+
+    private <M extends Map<Integer, Integer>> M putAll(M m) {
+        for (Integer k : keys) {
+            m.put(k, k);
+        }
+        return m;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SimpleTreeMap<Integer, Integer> putSimpleTreeMap() {
+        SimpleTreeMap<Integer, Integer> m = new SimpleTreeMap<>();
+        for (Integer k : keys) {
+            m.put(k, k);
+        }
+        return m;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public TreeMap<Integer, Integer> putTreeMap() {
+        return putAll(new TreeMap<>());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ConcurrentSkipListMap<Integer, Integer> putConcurrentSkipListMap() {
+        return putAll(new ConcurrentSkipListMap<>());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SimpleTreeMap<Integer, Integer> putAllSimpleTreeMap() {
+        SimpleTreeMap<Integer, Integer> m = new SimpleTreeMap<>();
+        m.putAll(batch);
+        return m;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public TreeMap<Integer, Integer> putAllTreeMap() {
+        TreeMap<Integer, Integer> m = new TreeMap<>();
+        m.putAll(batch);
+        return m;
+    }
+
+    @Benchmark
+    public Integer getSimpleTreeMap() {
+        return simple.get(nextLookup());
+    }
+
+    @Benchmark
+    public Integer getTreeMap() {
+        return treeMap.get(nextLookup());
+    }
+
+    @Benchmark
+    public Integer getConcurrentSkipListMap() {
+        return skipList.get(nextLookup());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Set<Integer> keysSimpleTreeMap() {
+        return simple.keys();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Set<Integer> keysTreeMap() {
+        return new HashSet<>(treeMap.keySet());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Set<Integer> keysConcurrentSkipListMap() {
+        return new HashSet<>(skipList.keySet());
+    }
+}
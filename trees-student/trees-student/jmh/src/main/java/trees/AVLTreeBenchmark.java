@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * AVLTree's add, remove, contains and iterator, on trees of random keys.
+ *
+ * add builds a whole tree, so its time is per tree; the others are per call
+ * (or per full iteration) on a tree built once. Each runs with the tree's
+ * metrics off and on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class AVLTreeBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean metrics;
+
+    Integer[] keys;
+    Integer[] lookups;
+    AVLTree<Integer> tree;
+    int next;
+
+    /**
+     * @return the integers 0 to n-1, shuffled
+     */
+    public static Integer[] shuffled(int n, long seed) {
+        Integer[] a = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = i;
+        }
+        Random r = new Random(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            Integer t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    @Setup
+    public void setup() {
+        keys = shuffled(size, 1);
+        lookups = shuffled(size, 2);
+        tree = new AVLTree<>();
+        if (metrics) {
+            tree.enableMetrics();
+        }
+        for (Integer k : keys) {
+            tree.add(k);
+        }
+    }
+
+    private Integer nextLookup() {
+        Integer k = lookups[next];
+        next = (next + 1 == lookups.length) ? 0 : next + 1;
+        return k;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public AVLTree<Integer> add() {
+        AVLTree<Integer> t = new AVLTree<>();
+        if (metrics) {
+            t.enableMetrics();
+        }
+        for (Integer k : keys) {
+            t.add(k);
+        }
+        return t;
+    }
+
+    /**
+     * Remove a key and put it back, so the tree stays the same size.
+     */
+    @Benchmark
+    public void removeAndAdd() {
+        Integer k = nextLookup();
+        tree.remove(k);
+        tree.add(k);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return tree.contains(nextLookup());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void iterator(Blackhole bh) {
+        for (Integer k : tree) {
+            bh.consume(k);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long streamSum() {
+        return tree.stream().mapToLong(Integer::longValue).sum();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long parallelStreamSum() {
+        return tree.parallelStream().mapToLong(Integer::longValue).sum();
+    }
+}
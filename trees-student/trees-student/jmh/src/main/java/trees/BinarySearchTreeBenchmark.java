@@ -0,0 +1,80 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BinarySearchTree.add, building a whole tree from keys in random or sorted
+ * order.
+ *
+ * Sorted keys build a tree that is a single path, so each add walks the whole
+ * tree and building takes quadratic time. The sorted sizes stop at 10K for
+ * that reason.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BinarySearchTreeBenchmark {
+    @State(Scope.Thread)
+    public static class RandomOrder {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        int size;
+
+        Integer[] keys;
+
+        @Setup
+        public void setup() {
+            keys = AVLTreeBenchmark.shuffled(size, 1);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SortedOrder {
+        @Param({"1000", "10000"})
+        int size;
+
+        Integer[] keys;
+
+        @Setup
+        public void setup() {
+            keys = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = i;
+            }
+        }
+    }
+
+    private static BinarySearchTree<Integer> build(Integer[] keys) {
+        BinarySearchTree<Integer> t = new BinarySearchTree<>();
+        for (Integer k : keys) {
+            t.add(k);
+        }
+        return t;
+    }
+
+    @Benchmark
+    public BinarySearchTree<Integer> addRandom(RandomOrder s) {
+        return build(s.keys);
+    }
+
+    @Benchmark
+    public BinarySearchTree<Integer> addSorted(SortedOrder s) {
+        return build(s.keys);
+    }
+}
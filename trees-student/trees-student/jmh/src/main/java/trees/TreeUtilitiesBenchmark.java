@@ -0,0 +1,82 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TreeUtilities.intoBalanced on a tree of random keys, and the checks
+ * (sequential and parallel) on the balanced tree it builds.
+ *
+ * balanceInPlace rebalances the same tree over and over; only the first call
+ * starts from random keys, but every call straightens the whole tree into a
+ * vine and folds it back up, so the work is the same.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TreeUtilitiesBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    BinarySearchTree<Integer> random;
+    BinarySearchTree<Integer> balanced;
+    BinarySearchTree<Integer> inPlace;
+
+    @Setup
+    public void setup() {
+        random = new BinarySearchTree<>();
+        for (Integer k : AVLTreeBenchmark.shuffled(size, 1)) {
+            random.add(k);
+        }
+        balanced = TreeUtilities.intoBalanced(random);
+        inPlace = TreeUtilities.intoBalanced(random);
+    }
+
+    @Benchmark
+    public BinarySearchTree<Integer> intoBalanced() {
+        return TreeUtilities.intoBalanced(random);
+    }
+
+    @Benchmark
+    public BinarySearchTree<Integer> balanceInPlace() {
+        TreeUtilities.balanceInPlace(inPlace);
+        return inPlace;
+    }
+
+    @Benchmark
+    public boolean isAVLTree() {
+        return TreeUtilities.isAVLTree(balanced.root);
+    }
+
+    @Benchmark
+    public boolean isAVLTreeParallel() {
+        return TreeUtilities.isAVLTreeParallel(balanced.root);
+    }
+
+    @Benchmark
+    public boolean isBST() {
+        return TreeUtilities.isBST(balanced.root);
+    }
+
+    @Benchmark
+    public boolean isBSTParallel() {
+        return TreeUtilities.isBSTParallel(balanced.root);
+    }
+}
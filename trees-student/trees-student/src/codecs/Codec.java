@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package codecs;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values of type E to and from bytes, for data structures that keep
+ * their contents outside the Java heap or on disk.
+ *
+ * Codecs read and write at the buffer's current position, advancing it past
+ * the bytes they use, in the style of ByteBuffer's relative get and put
+ * methods. The absolute variants, which take an index, leave the position
+ * alone, so several threads may read one buffer through them at once.
+ */
+public interface Codec<E> {
+    /**
+     * @return the number of bytes every encoded value takes, or -1 if values
+     *         are encoded with varying lengths
+     */
+    int fixedWidth();
+
+    /**
+     * @param e a value
+     * @return the number of bytes encode(e, buf) will write
+     */
+    int encodedSize(E e);
+
+    /**
+     * Write e at the buffer's position, advancing the position past it.
+     * @param e the value to encode
+     * @param buf the buffer to write to
+     */
+    void encode(E e, ByteBuffer buf);
+
+    /**
+     * Read a value at the buffer's position, advancing the position past it.
+     * @param buf the buffer to read from
+     * @return the decoded value
+     */
+    E decode(ByteBuffer buf);
+
+    /**
+     * Compare e to the value encoded at the buffer's position, without moving
+     * the position. The result is that of e.compareTo(decode(buf)).
+     *
+     * Codecs for primitive wrappers override this to compare in place, so
+     * that searching encoded keys does not allocate.
+     * @param e a value
+     * @param buf the buffer holding an encoded value at its position
+     * @return a negative integer, zero, or a positive integer as e is less
+     *         than, equal to, or greater than the encoded value
+     */
+    @SuppressWarnings("unchecked")
+    default int compareTo(E e, ByteBuffer buf) {
+        int position = buf.position();
+        E other = decode(buf);
+        buf.position(position);
+        return ((Comparable<E>) e).compareTo(other);
+    }
+
+    /**
+     * Write e at the given index, without moving the buffer's position.
+     * @param e the value to encode
+     * @param buf the buffer to write to
+     * @param index the index to write e at
+     */
+    default void encode(E e, ByteBuffer buf, int index) {
+        encode(e, buf.duplicate().position(index));
+    }
+
+    /**
+     * Read a value at the given index, without moving the buffer's position.
+     * @param buf the buffer to read from
+     * @param index the index of the encoded value
+     * @return the decoded value
+     */
+    default E decode(ByteBuffer buf, int index) {
+        return decode(buf.duplicate().position(index));
+    }
+
+    /**
+     * Compare e to the value encoded at the given index, without moving the
+     * buffer's position. The result is that of e.compareTo(decode(buf, index)).
+     * @param e a value
+     * @param buf the buffer holding an encoded value at index
+     * @param index the index of the encoded value
+     * @return a negative integer, zero, or a positive integer as e is less
+     *         than, equal to, or greater than the encoded value
+     */
+    @SuppressWarnings("unchecked")
+    default int compareTo(E e, ByteBuffer buf, int index) {
+        return ((Comparable<E>) e).compareTo(decode(buf, index));
+    }
+}
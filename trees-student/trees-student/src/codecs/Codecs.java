@@ -0,0 +1,179 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package codecs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codecs for common types.
+ */
+public final class Codecs {
+    private Codecs() {
+    }
+
+    /**
+     * Encodes an Integer as 4 big-endian bytes.
+     */
+    public static final Codec<Integer> INT = new Codec<Integer>() {
+        @Override
+        public int fixedWidth() {
+            return 4;
+        }
+
+        @Override
+        public int encodedSize(Integer e) {
+            return 4;
+        }
+
+        @Override
+        public void encode(Integer e, ByteBuffer buf) {
+            buf.putInt(e);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buf) {
+            return buf.getInt();
+        }
+
+        @Override
+        public int compareTo(Integer e, ByteBuffer buf) {
+            return Integer.compare(e, buf.getInt(buf.position()));
+        }
+
+        @Override
+        public void encode(Integer e, ByteBuffer buf, int index) {
+            buf.putInt(index, e);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buf, int index) {
+            return buf.getInt(index);
+        }
+
+        @Override
+        public int compareTo(Integer e, ByteBuffer buf, int index) {
+            return Integer.compare(e, buf.getInt(index));
+        }
+    };
+
+    /**
+     * Encodes a Long as 8 big-endian bytes.
+     */
+    public static final Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public int fixedWidth() {
+            return 8;
+        }
+
+        @Override
+        public int encodedSize(Long e) {
+            return 8;
+        }
+
+        @Override
+        public void encode(Long e, ByteBuffer buf) {
+            buf.putLong(e);
+        }
+
+        @Override
+        public Long decode(ByteBuffer buf) {
+            return buf.getLong();
+        }
+
+        @Override
+        public int compareTo(Long e, ByteBuffer buf) {
+            return Long.compare(e, buf.getLong(buf.position()));
+        }
+
+        @Override
+        public void encode(Long e, ByteBuffer buf, int index) {
+            buf.putLong(index, e);
+        }
+
+        @Override
+        public Long decode(ByteBuffer buf, int index) {
+            return buf.getLong(index);
+        }
+
+        @Override
+        public int compareTo(Long e, ByteBuffer buf, int index) {
+            return Long.compare(e, buf.getLong(index));
+        }
+    };
+
+    /**
+     * Encodes a Double as its 8-byte IEEE 754 bit pattern.
+     */
+    public static final Codec<Double> DOUBLE = new Codec<Double>() {
+        @Override
+        public int fixedWidth() {
+            return 8;
+        }
+
+        @Override
+        public int encodedSize(Double e) {
+            return 8;
+        }
+
+        @Override
+        public void encode(Double e, ByteBuffer buf) {
+            buf.putDouble(e);
+        }
+
+        @Override
+        public Double decode(ByteBuffer buf) {
+            return buf.getDouble();
+        }
+
+        @Override
+        public int compareTo(Double e, ByteBuffer buf) {
+            return Double.compare(e, buf.getDouble(buf.position()));
+        }
+
+        @Override
+        public void encode(Double e, ByteBuffer buf, int index) {
+            buf.putDouble(index, e);
+        }
+
+        @Override
+        public Double decode(ByteBuffer buf, int index) {
+            return buf.getDouble(index);
+        }
+
+        @Override
+        public int compareTo(Double e, ByteBuffer buf, int index) {
+            return Double.compare(e, buf.getDouble(index));
+        }
+    };
+
+    /**
+     * Encodes a String as a 4-byte length followed by its UTF-8 bytes.
+     */
+    public static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        public int fixedWidth() {
+            return -1;
+        }
+
+        @Override
+        public int encodedSize(String e) {
+            return 4 + e.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public void encode(String e, ByteBuffer buf) {
+            byte[] bytes = e.getBytes(StandardCharsets.UTF_8);
+            buf.putInt(bytes.length);
+            buf.put(bytes);
+        }
+
+        @Override
+        public String decode(ByteBuffer buf) {
+            byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+}
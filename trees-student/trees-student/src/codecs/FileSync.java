@@ -0,0 +1,43 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package codecs;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helpers for making changes to files durable.
+ *
+ * Forcing a file only makes its contents durable; creating, renaming or
+ * deleting it changes its directory, which must be forced as well, or after a
+ * crash the file may be missing, or still there.
+ */
+public final class FileSync {
+    private FileSync() {
+    }
+
+    /**
+     * Force the given directory's entries to disk, so that files created,
+     * renamed or deleted in it stay that way after a crash.
+     *
+     * Not every platform can open a directory to force it; there this does
+     * nothing. Once the directory is open, a failure to force it is thrown.
+     *
+     * @param dir the directory
+     * @throws IOException if the directory's entries could not be forced
+     */
+    public static void syncDirectory(Path dir) throws IOException {
+        FileChannel d;
+        try {
+            d = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return; // not every platform can open a directory
+        }
+        try (d) {
+            d.force(true);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package codecs;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a snapshot written by SnapshotWriter, one entry at a time, through a
+ * large direct buffer. Reading the last entry also checks the snapshot's
+ * CRC32, so a damaged file is detected before it is used.
+ *
+ * @see SnapshotWriter
+ */
+public class SnapshotReader implements Closeable {
+    private final FileChannel channel;
+    private final int fields;
+    private final long count;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buf = ByteBuffer.allocateDirect(SnapshotWriter.BUFFER_SIZE);
+    private int checked; // bytes of the buffer before this are included in crc
+    private long read;
+
+    /**
+     * Open the given snapshot, and read its header.
+     *
+     * @param path the file to read
+     * @throws IOException if the file cannot be read, or is not a snapshot
+     */
+    public SnapshotReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            buf.flip();
+            require(20);
+            if (buf.getInt() != SnapshotWriter.MAGIC || buf.getInt() != SnapshotWriter.VERSION) {
+                throw new IOException(path + " is not a snapshot");
+            }
+            fields = buf.getInt();
+            count = buf.getLong();
+            if ((fields != 1 && fields != 2) || count < 0) {
+                throw new IOException(path + " has a corrupt header");
+            }
+            if (count == 0) {
+                checkTrailer();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of fields per entry: 1 for a set, and 2 for a map
+     */
+    public int fields() {
+        return fields;
+    }
+
+    /**
+     * @return the number of entries in the snapshot
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Make sure the buffer holds at least the given number of unread bytes,
+     * refilling it from the file (and growing it, if needed) if it does not.
+     */
+    private void require(int bytes) throws IOException {
+        if (buf.remaining() >= bytes) {
+            return;
+        }
+        crc.update(buf.duplicate().position(checked).limit(buf.position()));
+        if (buf.capacity() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(bytes);
+            bigger.put(buf);
+            buf = bigger;
+        } else {
+            buf.compact();
+        }
+        checked = 0;
+        while (buf.position() < bytes) {
+            if (channel.read(buf) < 0) {
+                throw new EOFException("the snapshot is truncated");
+            }
+        }
+        buf.flip();
+    }
+
+    /**
+     * @return true iff there are entries left to read
+     */
+    public boolean hasNext() {
+        return read < count;
+    }
+
+    /**
+     * Read the next field of the current entry: call it once per entry of a
+     * set snapshot, and twice (key, then value) per entry of a map snapshot.
+     *
+     * @param codec the codec for the field
+     * @return the decoded field, which may be null
+     * @throws IOException if the snapshot is truncated or corrupt
+     */
+    public <E> E read(Codec<E> codec) throws IOException {
+        require(4);
+        int length = buf.getInt();
+        if (length == -1) {
+            return null;
+        } else if (length < 0) {
+            throw new IOException("corrupt field length: " + length);
+        }
+        if (length > buf.remaining() + channel.size() - channel.position()) {
+            throw new IOException("corrupt field length: " + length);
+        }
+        require(length);
+        // a corrupt field must not read past its recorded length
+        ByteBuffer field = buf.slice(buf.position(), length);
+        E e;
+        try {
+            e = codec.decode(field);
+        } catch (RuntimeException ex) {
+            throw new IOException("a field could not be decoded", ex);
+        }
+        if (field.position() != length) {
+            throw new IOException("a field did not decode to its recorded length");
+        }
+        buf.position(buf.position() + length);
+        return e;
+    }
+
+    /**
+     * Finish reading an entry. After the last entry, this checks the CRC32.
+     *
+     * @throws IOException if this was the last entry, and the CRC32 does not match
+     */
+    public void endEntry() throws IOException {
+        read++;
+        if (read == count) {
+            checkTrailer();
+        }
+    }
+
+    private void checkTrailer() throws IOException {
+        crc.update(buf.duplicate().position(checked).limit(buf.position()));
+        checked = buf.position();
+        require(8);
+        if (buf.getLong() != crc.getValue()) {
+            throw new IOException("the snapshot is corrupt: its CRC32 does not match");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package codecs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a snapshot: a compact, sequential binary file of sorted entries,
+ * for saving a tree or map and loading it back (with SnapshotReader) in
+ * O(n) time.
+ *
+ * A snapshot is:
+ * - a header: the magic number MAGIC, the format VERSION, the number of
+ *   fields per entry (1 for a set, 2 for a map), and the number of entries
+ *   (as a long);
+ * - the entries, in order, each field being an int length followed by that
+ *   many bytes of the field's encoding, or just the length -1 for null;
+ * - a trailer: the CRC32 of everything before it, as a long.
+ *
+ * Entries are encoded into a large direct buffer, which is written to a
+ * FileChannel whenever it fills, so writing a snapshot costs little more
+ * than the encoding and the disk bandwidth.
+ *
+ * The snapshot is written to a temporary file next to the target, which
+ * replaces the target (atomically, and durably) only once the snapshot is
+ * complete and on disk. So a crash, or an exception, part-way through
+ * leaves any previous snapshot in place.
+ */
+public class SnapshotWriter implements Closeable {
+    public static final int MAGIC = 0x534e4150; // "SNAP"
+    public static final int VERSION = 1;
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private final Path tmp;
+    private final FileChannel channel;
+    private final int fields;
+    private final long count;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long written;
+
+    /**
+     * Start a snapshot that will create (or replace) the given file when it is
+     * closed, and write its header.
+     *
+     * @param path the file to write
+     * @param fields the number of fields per entry: 1 or 2
+     * @param count the number of entries that will be written
+     * @throws IllegalArgumentException if fields is not 1 or 2, or count is negative
+     * @throws IOException if the file cannot be written
+     */
+    public SnapshotWriter(Path path, int fields, long count) throws IOException {
+        if (fields != 1 && fields != 2) {
+            throw new IllegalArgumentException("fields: " + fields);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("count: " + count);
+        }
+        this.path = path;
+        this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.fields = fields;
+        this.count = count;
+        channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(fields).putLong(count);
+    }
+
+    /**
+     * Write the next entry of a set snapshot.
+     * @throws IllegalStateException if this is a map snapshot, or count entries have already been written
+     */
+    public <E> void write(E e, Codec<E> codec) throws IOException {
+        if (fields != 1) {
+            throw new IllegalStateException("this is a snapshot of a map");
+        }
+        startEntry();
+        writeField(e, codec);
+    }
+
+    /**
+     * Write the next entry of a map snapshot.
+     * @throws IllegalStateException if this is a set snapshot, or count entries have already been written
+     */
+    public <K, V> void write(K k, Codec<K> keyCodec, V v, Codec<V> valueCodec) throws IOException {
+        if (fields != 2) {
+            throw new IllegalStateException("this is a snapshot of a set");
+        }
+        startEntry();
+        writeField(k, keyCodec);
+        writeField(v, valueCodec);
+    }
+
+    private void startEntry() {
+        if (written == count) {
+            throw new IllegalStateException("all " + count + " entries have been written");
+        }
+        written++;
+    }
+
+    private <E> void writeField(E e, Codec<E> codec) throws IOException {
+        if (e == null) {
+            ensureRoom(4);
+            buf.putInt(-1);
+            return;
+        }
+        int length = codec.encodedSize(e);
+        ensureRoom(4 + length);
+        buf.putInt(length);
+        codec.encode(e, buf);
+    }
+
+    /**
+     * Make room in the buffer for the given number of bytes, by writing it
+     * out, and growing it for a field larger than the buffer.
+     */
+    private void ensureRoom(int bytes) throws IOException {
+        if (buf.remaining() < bytes) {
+            drain();
+            if (buf.capacity() < bytes) {
+                buf = ByteBuffer.allocateDirect(bytes);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buf.flip();
+        crc.update(buf.duplicate());
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Write the trailer, force the snapshot to disk, and move it into place.
+     * If the snapshot is incomplete, or cannot be written, the temporary file
+     * is deleted and the target is left as it was.
+     * @throws IllegalStateException if fewer than count entries have been written
+     */
+    @Override
+    public void close() throws IOException {
+        boolean complete = false;
+        try {
+            if (written != count) {
+                throw new IllegalStateException("only " + written + " of " + count + " entries were written");
+            }
+            drain();
+            buf.putLong(crc.getValue());
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+            complete = true;
+        } finally {
+            channel.close();
+            if (!complete) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        FileSync.syncDirectory(path.toAbsolutePath().getParent());
+    }
+}
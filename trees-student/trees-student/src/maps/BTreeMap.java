@@ -0,0 +1,546 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package maps;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A SimpleOrderedMap implemented as an in-memory B-tree.
+ *
+ * Where a binary tree follows one pointer (and, at scale, takes one cache
+ * miss) per comparison, each B-tree node holds up to fanout - 1 keys in a
+ * contiguous array, binary searched in place, and up to fanout children. A
+ * lookup therefore visits only about log(n) / log(fanout) nodes.
+ *
+ * The insertion and deletion algorithms are those of CLRS, chapter 18: both
+ * make a single pass down the tree, splitting full nodes on the way down an
+ * insertion, and topping up (by borrowing from or merging with a sibling)
+ * nodes with the minimum number of keys on the way down a deletion. Every
+ * node but the root is therefore always at least half full, and all leaves
+ * are at the same depth.
+ *
+ * As in SimpleTreeMap, each node caches the number of keys in its subtree,
+ * so select(), rank() and countInRange() run in O(fanout * log n / log fanout)
+ * time.
+ */
+public class BTreeMap<K extends Comparable<K>, V> implements SimpleOrderedMap<K, V> {
+    private static final int DEFAULT_FANOUT = 64;
+
+    static final class Node {
+        final Object[] keys;
+        final Object[] values;
+        final Node[] children; // null in a leaf
+        int n; // number of keys in the node
+        int size; // number of keys in the subtree rooted at the node
+
+        Node(int maxKeys, boolean leaf) {
+            keys = new Object[maxKeys];
+            values = new Object[maxKeys];
+            children = leaf ? null : new Node[maxKeys + 1];
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+
+        /**
+         * @return the index of k in the node's keys if it is there, and
+         *         otherwise (-(insertion point) - 1), as Arrays.binarySearch
+         */
+        int search(Object k) {
+            return Arrays.binarySearch(keys, 0, n, k);
+        }
+
+        void updateSize() {
+            int s = n;
+            if (children != null) {
+                for (int i = 0; i <= n; i++) {
+                    s += children[i].size;
+                }
+            }
+            size = s;
+        }
+    }
+
+    /**
+     * The minimum degree: every node but the root has between t - 1 and
+     * 2t - 1 keys.
+     */
+    final int t;
+    private final int maxKeys;
+    Node root;
+    private int modCount; // number of structural modifications, so iterators can fail fast
+
+    /**
+     * Create an empty map with the default fanout.
+     */
+    public BTreeMap() {
+        this(DEFAULT_FANOUT);
+    }
+
+    /**
+     * Create an empty map whose nodes have at most the given number of
+     * children. An odd fanout is rounded down.
+     *
+     * @param fanout the maximum number of children of a node
+     * @throws IllegalArgumentException if fanout is less than 4
+     */
+    public BTreeMap(int fanout) {
+        if (fanout < 4) {
+            throw new IllegalArgumentException("fanout: " + fanout);
+        }
+        t = fanout / 2;
+        maxKeys = 2 * t - 1;
+        root = new Node(maxKeys, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(Node x, int i) {
+        return (K) x.keys[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(Node x, int i) {
+        return (V) x.values[i];
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    @Override
+    public V get(K k) {
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        Node x = root;
+        while (true) {
+            int i = x.search(k);
+            if (i >= 0) {
+                return value(x, i);
+            } else if (x.isLeaf()) {
+                return null;
+            }
+            x = x.children[-i - 1];
+        }
+    }
+
+    @Override
+    public V getOrDefault(K k, V defaultValue) {
+        V value = get(k);
+        return (value == null) ? defaultValue : value;
+    }
+
+    @Override
+    public void put(K k, V v) {
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        if (root.n == maxKeys) {
+            Node s = new Node(maxKeys, false);
+            s.children[0] = root;
+            s.size = root.size;
+            root = s;
+            splitChild(s, 0);
+        }
+        if (insertNonFull(root, k, v)) {
+            modCount++;
+        }
+    }
+
+    /**
+     * Split x's full child i around its median key, which moves up into x.
+     * @param x a non-full internal node
+     */
+    private void splitChild(Node x, int i) {
+        modCount++;
+        Node y = x.children[i];
+        Node z = new Node(maxKeys, y.isLeaf());
+        z.n = t - 1;
+        System.arraycopy(y.keys, t, z.keys, 0, t - 1);
+        System.arraycopy(y.values, t, z.values, 0, t - 1);
+        if (!y.isLeaf()) {
+            System.arraycopy(y.children, t, z.children, 0, t);
+            Arrays.fill(y.children, t, maxKeys + 1, null);
+        }
+        y.n = t - 1;
+
+        System.arraycopy(x.children, i + 1, x.children, i + 2, x.n - i);
+        x.children[i + 1] = z;
+        System.arraycopy(x.keys, i, x.keys, i + 1, x.n - i);
+        System.arraycopy(x.values, i, x.values, i + 1, x.n - i);
+        x.keys[i] = y.keys[t - 1];
+        x.values[i] = y.values[t - 1];
+        x.n++;
+
+        Arrays.fill(y.keys, t - 1, maxKeys, null);
+        Arrays.fill(y.values, t - 1, maxKeys, null);
+        y.updateSize();
+        z.updateSize();
+    }
+
+    /**
+     * The recursive helper method for put().
+     * @param x a non-full node
+     * @return true iff k was added (rather than its value overwritten)
+     */
+    private boolean insertNonFull(Node x, K k, V v) {
+        int i = x.search(k);
+        if (i >= 0) {
+            x.values[i] = v;
+            return false;
+        }
+        i = -i - 1;
+        if (x.isLeaf()) {
+            System.arraycopy(x.keys, i, x.keys, i + 1, x.n - i);
+            System.arraycopy(x.values, i, x.values, i + 1, x.n - i);
+            x.keys[i] = k;
+            x.values[i] = v;
+            x.n++;
+            x.size++;
+            return true;
+        }
+        if (x.children[i].n == maxKeys) {
+            splitChild(x, i);
+            int cmp = k.compareTo(key(x, i));
+            if (cmp == 0) {
+                x.values[i] = v;
+                return false;
+            } else if (cmp > 0) {
+                i++;
+            }
+        }
+        boolean added = insertNonFull(x.children[i], k, v);
+        if (added) {
+            x.size++;
+        }
+        return added;
+    }
+
+    /**
+     * @return true iff k is a key in the subtree rooted at x
+     */
+    private boolean contains(Node x, K k) {
+        while (true) {
+            int i = x.search(k);
+            if (i >= 0) {
+                return true;
+            } else if (x.isLeaf()) {
+                return false;
+            }
+            x = x.children[-i - 1];
+        }
+    }
+
+    @Override
+    public V remove(K k) {
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        if (!contains(root, k)) {
+            return null;
+        }
+        modCount++;
+        V value = delete(root, k);
+        if (root.n == 0 && !root.isLeaf()) {
+            root = root.children[0];
+        }
+        return value;
+    }
+
+    /**
+     * The recursive helper method for remove().
+     * @param x a node with at least t keys (or the root), whose subtree contains k
+     * @return the value that was associated with k
+     */
+    private V delete(Node x, K k) {
+        int i = x.search(k);
+        V value;
+        if (i >= 0 && x.isLeaf()) {
+            value = value(x, i);
+            removeKey(x, i);
+        } else if (i >= 0) {
+            value = value(x, i);
+            Node y = x.children[i];
+            Node z = x.children[i + 1];
+            if (y.n >= t) {
+                // replace k by its predecessor, deleted from y
+                Node p = y;
+                while (!p.isLeaf()) {
+                    p = p.children[p.n];
+                }
+                K pred = key(p, p.n - 1);
+                x.values[i] = delete(y, pred);
+                x.keys[i] = pred;
+            } else if (z.n >= t) {
+                // replace k by its successor, deleted from z
+                Node s = z;
+                while (!s.isLeaf()) {
+                    s = s.children[0];
+                }
+                K succ = key(s, 0);
+                x.values[i] = delete(z, succ);
+                x.keys[i] = succ;
+            } else {
+                merge(x, i);
+                delete(y, k);
+            }
+        } else {
+            i = -i - 1;
+            if (x.children[i].n == t - 1) {
+                i = fill(x, i);
+            }
+            value = delete(x.children[i], k);
+        }
+        x.size--;
+        return value;
+    }
+
+    private void removeKey(Node x, int i) {
+        System.arraycopy(x.keys, i + 1, x.keys, i, x.n - i - 1);
+        System.arraycopy(x.values, i + 1, x.values, i, x.n - i - 1);
+        x.n--;
+        x.keys[x.n] = null;
+        x.values[x.n] = null;
+    }
+
+    /**
+     * Give x's child i, which has only t - 1 keys, at least t keys, by
+     * borrowing a key from a sibling (through x) or else by merging it with a
+     * sibling.
+     * @return the index in x of the child that now holds child i's keys
+     */
+    private int fill(Node x, int i) {
+        Node c = x.children[i];
+        if (i > 0 && x.children[i - 1].n >= t) {
+            Node l = x.children[i - 1];
+            System.arraycopy(c.keys, 0, c.keys, 1, c.n);
+            System.arraycopy(c.values, 0, c.values, 1, c.n);
+            c.keys[0] = x.keys[i - 1];
+            c.values[0] = x.values[i - 1];
+            if (!c.isLeaf()) {
+                System.arraycopy(c.children, 0, c.children, 1, c.n + 1);
+                c.children[0] = l.children[l.n];
+                l.children[l.n] = null;
+            }
+            c.n++;
+            x.keys[i - 1] = l.keys[l.n - 1];
+            x.values[i - 1] = l.values[l.n - 1];
+            l.n--;
+            l.keys[l.n] = null;
+            l.values[l.n] = null;
+            l.updateSize();
+            c.updateSize();
+            return i;
+        } else if (i < x.n && x.children[i + 1].n >= t) {
+            Node r = x.children[i + 1];
+            c.keys[c.n] = x.keys[i];
+            c.values[c.n] = x.values[i];
+            if (!c.isLeaf()) {
+                c.children[c.n + 1] = r.children[0];
+                System.arraycopy(r.children, 1, r.children, 0, r.n);
+                r.children[r.n] = null;
+            }
+            c.n++;
+            x.keys[i] = r.keys[0];
+            x.values[i] = r.values[0];
+            removeKey(r, 0);
+            r.updateSize();
+            c.updateSize();
+            return i;
+        } else if (i < x.n) {
+            merge(x, i);
+            return i;
+        } else {
+            merge(x, i - 1);
+            return i - 1;
+        }
+    }
+
+    /**
+     * Merge x's child i + 1, and the key between them, into x's child i. Both
+     * children have t - 1 keys, so the result is full.
+     */
+    private void merge(Node x, int i) {
+        Node y = x.children[i];
+        Node z = x.children[i + 1];
+        y.keys[y.n] = x.keys[i];
+        y.values[y.n] = x.values[i];
+        System.arraycopy(z.keys, 0, y.keys, y.n + 1, z.n);
+        System.arraycopy(z.values, 0, y.values, y.n + 1, z.n);
+        if (!y.isLeaf()) {
+            System.arraycopy(z.children, 0, y.children, y.n + 1, z.n + 1);
+        }
+        y.n += z.n + 1;
+        y.size += z.size + 1;
+
+        removeKey(x, i);
+        System.arraycopy(x.children, i + 2, x.children, i + 1, x.n - i);
+        x.children[x.n + 1] = null;
+    }
+
+    @Override
+    public Set<K> keys() {
+        Set<K> keySet = new HashSet<>();
+        Iterator<K> it = keyIterator();
+        while (it.hasNext()) {
+            keySet.add(it.next());
+        }
+        return keySet;
+    }
+
+    @Override
+    public K select(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("i: " + i + ", size: " + size());
+        }
+        Node x = root;
+        while (true) {
+            if (x.isLeaf()) {
+                return key(x, i);
+            }
+            int j = 0;
+            while (i >= x.children[j].size) {
+                i -= x.children[j].size;
+                if (i == 0) {
+                    return key(x, j);
+                }
+                i--;
+                j++;
+            }
+            x = x.children[j];
+        }
+    }
+
+    @Override
+    public int rank(K k) {
+        int rank = 0;
+        Node x = root;
+        while (true) {
+            int i = x.search(k);
+            int pos = (i >= 0) ? i : -i - 1;
+            rank += pos;
+            if (x.isLeaf()) {
+                return rank;
+            }
+            for (int j = 0; j < pos; j++) {
+                rank += x.children[j].size;
+            }
+            if (i >= 0) {
+                return rank + x.children[i].size;
+            }
+            x = x.children[pos];
+        }
+    }
+
+    @Override
+    public int countInRange(K lo, K hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * Return an iterator over the keys of the map in ascending order. The
+     * iterator supports remove(), and fails fast on concurrent modification.
+     *
+     * @return an iterator over the keys of the map
+     */
+    public Iterator<K> keyIterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * An in-order iteration, keeping the path from the root to the next key
+     * on a stack of (node, index) frames.
+     */
+    private class KeyIterator implements Iterator<K> {
+        private final ArrayDeque<int[]> indexes = new ArrayDeque<>();
+        private final ArrayDeque<Node> nodes = new ArrayDeque<>();
+        private K lastReturned;
+        private int expectedModCount = modCount;
+
+        KeyIterator() {
+            seek(null);
+        }
+
+        /**
+         * Position the iterator at the first key greater than k (or at the
+         * first key, if k is null).
+         */
+        private void seek(K k) {
+            nodes.clear();
+            indexes.clear();
+            Node x = root;
+            while (x != null) {
+                int pos = 0;
+                if (k != null) {
+                    int i = x.search(k);
+                    pos = (i >= 0) ? i + 1 : -i - 1;
+                }
+                nodes.push(x);
+                indexes.push(new int[] { pos });
+                x = x.isLeaf() ? null : x.children[pos];
+            }
+            popExhausted();
+        }
+
+        private void popExhausted() {
+            while (!nodes.isEmpty() && indexes.peek()[0] >= nodes.peek().n) {
+                nodes.pop();
+                indexes.pop();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !nodes.isEmpty();
+        }
+
+        @Override
+        public K next() {
+            if (nodes.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Node x = nodes.peek();
+            int[] index = indexes.peek();
+            lastReturned = key(x, index[0]);
+            index[0]++;
+            if (x.isLeaf()) {
+                popExhausted();
+            } else {
+                for (Node c = x.children[index[0]]; c != null; c = c.isLeaf() ? null : c.children[0]) {
+                    nodes.push(c);
+                    indexes.push(new int[] { 0 });
+                }
+            }
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            BTreeMap.this.remove(lastReturned);
+            expectedModCount = modCount;
+            seek(lastReturned); // the removal may have restructured the path
+            lastReturned = null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package maps;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread-safe SimpleOrderedMap, backed by a SimpleTreeMap guarded by a
+ * StampedLock.
+ *
+ * Writers (put, remove) take the write lock. The common reads (get,
+ * getOrDefault, size, rank, countInRange) first run without any lock, under
+ * an optimistic stamp: they descend the tree and then validate that no write
+ * happened meanwhile, only falling back to the read lock if one did. An
+ * optimistic read writes no shared state, so readers do not contend with
+ * each other, and scale with the number of cores while writes are rare.
+ * The remaining reads (select, keys) take the read lock.
+ */
+public class ConcurrentSimpleTreeMap<K extends Comparable<K>, V> implements SimpleOrderedMap<K, V> {
+    private final SimpleTreeMap<K, V> map = new SimpleTreeMap<>();
+    private final StampedLock lock = new StampedLock();
+
+    @Override
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = map.size();
+        if (lock.validate(stamp)) {
+            return size;
+        }
+        stamp = lock.readLock();
+        try {
+            return map.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void put(K k, V v) {
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        long stamp = lock.writeLock();
+        try {
+            map.put(k, v);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V get(K k) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            V value = map.getOptimistic(k);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return map.get(k);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public V getOrDefault(K k, V defaultValue) {
+        V value = get(k);
+        return (value == null) ? defaultValue : value;
+    }
+
+    @Override
+    public V remove(K k) {
+        long stamp = lock.writeLock();
+        try {
+            return map.remove(k);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Insert every key-value pair in the batch under a single write lock, so
+     * readers see either none of the batch or all of it.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> batch) {
+        long stamp = lock.writeLock();
+        try {
+            map.putAll(batch);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove every key in the batch under a single write lock.
+     */
+    @Override
+    public int removeAll(Collection<? extends K> keys) {
+        long stamp = lock.writeLock();
+        try {
+            return map.removeAll(keys);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Set<K> keys() {
+        long stamp = lock.readLock();
+        try {
+            return map.keys();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public K select(int i) {
+        long stamp = lock.readLock();
+        try {
+            return map.select(i);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int rank(K k) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int rank = map.rankOptimistic(k);
+            if (lock.validate(stamp)) {
+                return rank;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return map.rank(k);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int countInRange(K lo, K hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int count = map.rankOptimistic(hi) - map.rankOptimistic(lo);
+            if (lock.validate(stamp)) {
+                return count;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return map.countInRange(lo, hi);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,638 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package maps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import codecs.Codec;
+import codecs.FileSync;
+
+/**
+ * A thread-safe SimpleOrderedMap whose changes survive crashes: a
+ * SimpleTreeMap, plus a write-ahead log of the changes made to it since its
+ * last snapshot, both kept in a directory.
+ *
+ * put() and remove() change the map in memory, append a record of the change
+ * to the log, and return only once the record is on disk. Rather than one
+ * fsync per change, changes are committed in groups: the first caller to
+ * need a sync becomes the leader, waits for the commit window (so that other
+ * callers can add their records), and then writes and syncs every record
+ * appended so far, in one write and one fsync, on behalf of all of them.
+ * Callers arriving while a sync is in progress simply wait for the next one.
+ * So the more concurrent writers, the more changes each fsync commits.
+ *
+ * A checkpoint writes the whole map as a snapshot (in the SnapshotWriter
+ * format), atomically replacing the previous one, and then empties the log.
+ * It happens automatically whenever the log grows past checkpointBytes, and
+ * can also be run explicitly with checkpoint(). Opening the map loads the
+ * snapshot and replays the log on top of it, ignoring a torn record at the
+ * end of the log (left by a crash during a write).
+ *
+ * Reads do not wait for syncs, so they may see changes whose callers are
+ * still waiting for them to become durable.
+ *
+ * The log is locked while the map is open, so only one DurableTreeMap at a
+ * time, in any process, can use a directory.
+ */
+public class DurableTreeMap<K extends Comparable<K>, V> implements SimpleOrderedMap<K, V>, Closeable {
+    static final String SNAPSHOT = "snapshot";
+    static final String LOG = "log";
+    private static final long DEFAULT_CHECKPOINT_BYTES = 64 << 20;
+
+    // log record: int length of the body, int CRC32 of the body, then the
+    // body: the operation, the key, and (for PUT) the value, each field an
+    // int length followed by its encoding (or the length -1 for null)
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_HEADER = 8;
+
+    private final Path dir;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final long commitWindowNanos;
+    private final long checkpointBytes;
+    private final SimpleTreeMap<K, V> map;
+    private final FileChannel log;
+
+    // guards the map; the write lock also guards pending and appended
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16); // records not yet written to the log
+    private long appended; // total bytes of records ever appended (a log sequence number)
+
+    // guards durable, syncing and failure
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition committed = commitLock.newCondition();
+    private long durable; // records up to this sequence number are on disk
+    private boolean syncing; // a leader is writing the log (or a checkpoint is running)
+    private IOException failure; // a failed sync: the log can no longer be trusted
+
+    // used only by the thread that set syncing
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private volatile long logSize;
+    long syncs; // number of fsyncs of the log, for testing
+
+    private volatile boolean closed;
+
+    /**
+     * Open (or create) the durable map in the given directory, committing
+     * as soon as a sync is requested, and checkpointing every 64 MiB of log.
+     *
+     * @see #DurableTreeMap(Path, Codec, Codec, Duration, long)
+     */
+    public DurableTreeMap(Path dir, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this(dir, keyCodec, valueCodec, Duration.ZERO, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Open (or create) the durable map in the given directory, recovering
+     * every change that was committed before it was last closed, or crashed.
+     *
+     * @param dir the directory holding the map's snapshot and log
+     * @param keyCodec the codec for the keys
+     * @param valueCodec the codec for the values
+     * @param commitWindow how long a group commit's leader waits for other
+     *        changes to join it before syncing; longer windows trade the
+     *        latency of each change for fewer fsyncs
+     * @param checkpointBytes the size of log after which to checkpoint, or 0 to never
+     *        checkpoint automatically
+     * @throws IOException if the directory cannot be read, or holds a damaged snapshot
+     */
+    public DurableTreeMap(Path dir, Codec<K> keyCodec, Codec<V> valueCodec, Duration commitWindow,
+            long checkpointBytes) throws IOException {
+        if (commitWindow.isNegative() || checkpointBytes < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.dir = dir;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.commitWindowNanos = commitWindow.toNanos();
+        this.checkpointBytes = checkpointBytes;
+
+        Files.createDirectories(dir);
+        log = FileChannel.open(dir.resolve(LOG), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            lockLog();
+            // a new log must still be there after a crash, with the changes committed to it
+            FileSync.syncDirectory(dir);
+            Files.deleteIfExists(dir.resolve(SNAPSHOT + ".tmp"));
+            Path snapshot = dir.resolve(SNAPSHOT);
+            map = Files.exists(snapshot) ? SimpleTreeMap.load(snapshot, keyCodec, valueCodec) : new SimpleTreeMap<>();
+            long valid = replay();
+            log.truncate(valid);
+            log.position(valid);
+            logSize = valid;
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lock the log for as long as it is open, so that no other DurableTreeMap,
+     * in this process or another, can open the same directory.
+     * @throws IOException if the log is already locked
+     */
+    private void lockLog() throws IOException {
+        FileLock held;
+        try {
+            held = log.tryLock();
+        } catch (OverlappingFileLockException e) {
+            held = null;
+        }
+        if (held == null) {
+            throw new IOException(dir + " is already open");
+        }
+    }
+
+    /*
+     * Recovery
+     */
+
+    /**
+     * Apply every complete record in the log to the map.
+     * @return the length of the complete records at the start of the log
+     */
+    private long replay() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        buf.flip();
+        long valid = 0;
+        CRC32 crc = new CRC32();
+        while (true) {
+            buf = fill(buf, RECORD_HEADER);
+            if (buf == null) {
+                break;
+            }
+            int length = buf.getInt(buf.position());
+            int checksum = buf.getInt(buf.position() + 4);
+            if (length <= 0) {
+                break;
+            }
+            buf = fill(buf, RECORD_HEADER + length);
+            if (buf == null) {
+                break;
+            }
+            crc.reset();
+            crc.update(buf.array(), buf.position() + RECORD_HEADER, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            buf.position(buf.position() + RECORD_HEADER);
+            int end = buf.position() + length;
+            byte op = buf.get();
+            K k = readField(buf, keyCodec);
+            if (op == PUT) {
+                map.put(k, readField(buf, valueCodec));
+            } else if (op == REMOVE) {
+                map.remove(k);
+            }
+            if (buf.position() != end || (op != PUT && op != REMOVE)) {
+                throw new IOException("a log record does not match the codecs");
+            }
+            valid += RECORD_HEADER + length;
+        }
+        return valid;
+    }
+
+    /**
+     * @return buf (or a bigger copy of it) holding at least the given number
+     *         of unread bytes, or null if the log ends first
+     */
+    private ByteBuffer fill(ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() >= bytes) {
+            return buf;
+        }
+        if (buf.capacity() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(bytes);
+            bigger.put(buf);
+            buf = bigger;
+        } else {
+            buf.compact();
+        }
+        while (buf.position() < bytes) {
+            if (log.read(buf) < 0) {
+                return null;
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static <E> E readField(ByteBuffer buf, Codec<E> codec) {
+        int length = buf.getInt();
+        return (length == -1) ? null : codec.decode(buf);
+    }
+
+    /*
+     * Appending and group commit
+     */
+
+    private static <E> int fieldSize(E e, Codec<E> codec) {
+        return 4 + ((e == null) ? 0 : codec.encodedSize(e));
+    }
+
+    private static <E> void writeField(E e, Codec<E> codec, ByteBuffer buf) {
+        if (e == null) {
+            buf.putInt(-1);
+        } else {
+            buf.putInt(codec.encodedSize(e));
+            codec.encode(e, buf);
+        }
+    }
+
+    /**
+     * Append a record to the pending records; the caller holds the write lock.
+     * @return the record's sequence number: the caller must wait for it to be durable
+     */
+    private long append(byte op, K k, V v) {
+        int length = 1 + fieldSize(k, keyCodec) + ((op == PUT) ? fieldSize(v, valueCodec) : 0);
+        if (pending.remaining() < RECORD_HEADER + length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + RECORD_HEADER + length));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        int start = pending.position();
+        pending.putInt(length);
+        pending.putInt(0);
+        pending.put(op);
+        writeField(k, keyCodec, pending);
+        if (op == PUT) {
+            writeField(v, valueCodec, pending);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(pending.array(), start + RECORD_HEADER, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+        appended += RECORD_HEADER + length;
+        return appended;
+    }
+
+    /**
+     * Wait until every record up to the given sequence number is on disk,
+     * leading a group commit if no other thread is.
+     * @throws UncheckedIOException if the log could not be written
+     */
+    private void awaitDurable(long lsn) {
+        commitLock.lock();
+        try {
+            while (durable < lsn) {
+                if (failure != null) {
+                    throw new UncheckedIOException(failure);
+                }
+                if (syncing) {
+                    committed.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                commitLock.unlock();
+                long synced = -1;
+                IOException error = null;
+                try {
+                    if (commitWindowNanos > 0) {
+                        LockSupport.parkNanos(commitWindowNanos);
+                    }
+                    synced = sync();
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    commitLock.lock();
+                    syncing = false;
+                    if (error != null) {
+                        failure = error;
+                    } else if (synced > durable) {
+                        durable = synced;
+                    }
+                    committed.signalAll();
+                }
+            }
+        } finally {
+            commitLock.unlock();
+        }
+        if (checkpointBytes > 0 && logSize >= checkpointBytes) {
+            try {
+                checkpoint(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Write every pending record to the log, and sync it; the caller has set syncing.
+     * @return the sequence number of the last record synced
+     */
+    private long sync() throws IOException {
+        ByteBuffer out;
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            out = pending;
+            pending = spare;
+            lsn = appended;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        out.flip();
+        logSize += out.remaining();
+        while (out.hasRemaining()) {
+            log.write(out);
+        }
+        log.force(false);
+        syncs++;
+        out.clear();
+        spare = out;
+        return lsn;
+    }
+
+    /**
+     * Write the whole map to a new snapshot, replacing the old one, and then
+     * empty the log. Changes wait while the snapshot is written.
+     *
+     * @throws IOException if the snapshot could not be written; the map and
+     *         its log are then unchanged
+     */
+    public void checkpoint() throws IOException {
+        checkpoint(false);
+    }
+
+    private void checkpoint(boolean onlyIfLogIsFull) throws IOException {
+        commitLock.lock();
+        try {
+            while (syncing) {
+                committed.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (onlyIfLogIsFull && logSize < checkpointBytes) {
+                return;
+            }
+            syncing = true;
+        } finally {
+            commitLock.unlock();
+        }
+        long lsn = -1;
+        try {
+            lock.writeLock().lock();
+            try {
+                // written to snapshot.tmp, then moved into place atomically; save()
+                // returns only once the move is durable, and if it throws, the
+                // log is left as it is
+                map.save(dir.resolve(SNAPSHOT), keyCodec, valueCodec);
+                // everything logged or pending is in the snapshot now
+                pending.clear();
+                lsn = appended;
+                log.truncate(0);
+                log.force(true);
+                logSize = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            commitLock.lock();
+            syncing = false;
+            if (lsn > durable) {
+                durable = lsn;
+            }
+            committed.signalAll();
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Wait for every change to be committed, and close the log.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            lsn = appended;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            awaitDurable(lsn);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            log.close();
+        }
+    }
+
+    /**
+     * Close the log at once, without waiting for records that are not yet
+     * durable, as if the process had died: for testing recovery.
+     */
+    void abandon() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.close();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("the map is closed");
+        }
+    }
+
+    /*
+     * The map operations
+     */
+
+    /**
+     * Insert the given key-value pair into the map, returning once the change
+     * is durable.
+     *
+     * @throws UncheckedIOException if the change could not be written to the log
+     */
+    @Override
+    public void put(K k, V v) {
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            map.put(k, v);
+            lsn = append(PUT, k, v);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Remove the key from the map, returning once the change is durable.
+     *
+     * @throws UncheckedIOException if the change could not be written to the log
+     */
+    @Override
+    public V remove(K k) {
+        long lsn;
+        V value;
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            int before = map.size();
+            value = map.remove(k);
+            if (map.size() == before) {
+                return null;
+            }
+            lsn = append(REMOVE, k, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(lsn);
+        return value;
+    }
+
+    /**
+     * Insert every key-value pair in the batch, returning once the whole batch
+     * is durable. The batch is applied under one write lock and made durable
+     * by a single commit, rather than one commit per pair.
+     *
+     * @throws UncheckedIOException if the batch could not be written to the log
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> batch) {
+        long lsn = 0;
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            map.putAll(batch);
+            for (Map.Entry<? extends K, ? extends V> e : batch.entrySet()) {
+                lsn = append(PUT, e.getKey(), e.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Remove every key in the batch, returning once the whole batch is
+     * durable, by a single commit.
+     *
+     * @throws UncheckedIOException if the batch could not be written to the log
+     */
+    @Override
+    public int removeAll(Collection<? extends K> keys) {
+        long lsn = 0;
+        int removed = 0;
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            for (K k : keys) {
+                int before = map.size();
+                map.remove(k);
+                if (map.size() != before) {
+                    lsn = append(REMOVE, k, null);
+                    removed++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable(lsn);
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return map.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public V get(K k) {
+        lock.readLock().lock();
+        try {
+            return map.get(k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public V getOrDefault(K k, V defaultValue) {
+        lock.readLock().lock();
+        try {
+            return map.getOrDefault(k, defaultValue);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<K> keys() {
+        lock.readLock().lock();
+        try {
+            return map.keys();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public K select(int i) {
+        lock.readLock().lock();
+        try {
+            return map.select(i);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int rank(K k) {
+        lock.readLock().lock();
+        try {
+            return map.rank(k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countInRange(K lo, K hi) {
+        lock.readLock().lock();
+        try {
+            return map.countInRange(lo, hi);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package maps;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, thread-safe SimpleOrderedMap, implemented as a skip list.
+ *
+ * No operation ever blocks: put, get and remove only read, and change the
+ * list with compare-and-set (through VarHandles), so any number of threads
+ * can write at the same time. The algorithm is the one used by
+ * java.util.concurrent.ConcurrentSkipListMap:
+ *
+ * - The base level is a sorted linked list of Nodes holding the mappings,
+ *   starting at a header node with a null key. Above it, levels of Index
+ *   nodes link a random subset (1/4, 1/8, ...) of the Nodes, so a search
+ *   skips ahead and descends, taking O(log n) expected steps.
+ * - A Node is removed by first setting its value to null (the "logical"
+ *   removal, after which the mapping is gone), then appending a marker node
+ *   (with a null key) after it, so no insertion can follow it any more, and
+ *   finally unlinking both from the list. Any thread that finds a removed
+ *   Node helps to unlink it, and searches unlink the Index nodes of removed
+ *   Nodes as they pass them.
+ *
+ * Since null values mark removed mappings, values may not be null.
+ *
+ * Unlike the AVL trees, a skip list cannot cheaply maintain subtree sizes
+ * under concurrent updates, so select(), rank() and countInRange() walk the
+ * base level, in O(n) time. size() is O(1), but under concurrent updates it
+ * is only an estimate, as are all of these. Iteration is weakly consistent:
+ * it never throws ConcurrentModificationException, and returns each key at
+ * most once, in ascending order.
+ */
+public class LockFreeSkipListMap<K extends Comparable<K>, V> implements SimpleOrderedMap<K, V> {
+    /**
+     * A base-level node. The header and marker nodes have a null key; a node
+     * whose value is null has been removed.
+     */
+    static final class Node<K, V> {
+        final K key;
+        volatile Object value;
+        volatile Node<K, V> next;
+
+        Node(K key, Object value, Node<K, V> next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * An index node: one level of a Node's "tower".
+     */
+    static final class Index<K, V> {
+        final Node<K, V> node;
+        final Index<K, V> down;
+        volatile Index<K, V> right;
+
+        Index(Node<K, V> node, Index<K, V> down, Index<K, V> right) {
+            this.node = node;
+            this.down = down;
+            this.right = right;
+        }
+    }
+
+    private static final VarHandle HEAD;
+    private static final VarHandle NEXT;
+    private static final VarHandle VALUE;
+    private static final VarHandle RIGHT;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            HEAD = l.findVarHandle(LockFreeSkipListMap.class, "head", Index.class);
+            NEXT = l.findVarHandle(Node.class, "next", Node.class);
+            VALUE = l.findVarHandle(Node.class, "value", Object.class);
+            RIGHT = l.findVarHandle(Index.class, "right", Index.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The top-left Index node; its node is the header of the base level.
+     */
+    private volatile Index<K, V> head = new Index<>(new Node<>(null, null, null), null, null);
+
+    private final LongAdder count = new LongAdder();
+
+    @Override
+    public int size() {
+        long n = count.sum();
+        return (n < 0) ? 0 : (n > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) n;
+    }
+
+    /**
+     * Finish removing n, whose value has been set to null: mark it by
+     * appending a marker node, then unlink n and the marker from b.
+     * @param b n's predecessor
+     * @param n a removed node
+     */
+    private static <K, V> void unlinkNode(Node<K, V> b, Node<K, V> n) {
+        Node<K, V> f;
+        Node<K, V> p;
+        while (true) {
+            f = n.next;
+            if (f != null && f.key == null) {
+                p = f.next; // already marked
+                break;
+            } else if (NEXT.compareAndSet(n, f, new Node<K, V>(null, null, f))) {
+                p = f;
+                break;
+            }
+        }
+        NEXT.compareAndSet(b, n, p);
+    }
+
+    /**
+     * @return true iff the index r should be unlinked, because its node has been removed
+     */
+    private static boolean isStale(Index<?, ?> r) {
+        Node<?, ?> p = r.node;
+        return p.key == null || p.value == null;
+    }
+
+    /**
+     * Descend the index levels to the base level, unlinking the indexes of
+     * removed nodes on the way.
+     * @param k the (non-null) key
+     * @return a base-level node with a key less than k (or the header)
+     */
+    private Node<K, V> findPredecessor(K k) {
+        Index<K, V> q = head;
+        while (true) {
+            Index<K, V> r;
+            while ((r = q.right) != null) {
+                if (isStale(r)) {
+                    RIGHT.compareAndSet(q, r, r.right);
+                } else if (k.compareTo(r.node.key) > 0) {
+                    q = r;
+                } else {
+                    break;
+                }
+            }
+            if (q.down == null) {
+                return q.node;
+            }
+            q = q.down;
+        }
+    }
+
+    /**
+     * @param k the (non-null) key
+     * @return the live node with key k, or null if there is none
+     */
+    private Node<K, V> findNode(K k) {
+        outer:
+        while (true) {
+            Node<K, V> b = findPredecessor(k);
+            while (true) {
+                Node<K, V> n = b.next;
+                if (n == null) {
+                    return null;
+                } else if (n.key == null) {
+                    continue outer; // b has been removed: start again
+                } else if (n.value == null) {
+                    unlinkNode(b, n);
+                } else {
+                    int cmp = k.compareTo(n.key);
+                    if (cmp > 0) {
+                        b = n;
+                    } else if (cmp == 0) {
+                        return n;
+                    } else {
+                        return null;
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(K k) {
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        Node<K, V> n = findNode(k);
+        if (n == null) {
+            return null;
+        }
+        return (V) n.value; // null if n has been removed since it was found
+    }
+
+    @Override
+    public V getOrDefault(K k, V defaultValue) {
+        V value = get(k);
+        return (value == null) ? defaultValue : value;
+    }
+
+    /**
+     * Insert the given key-value pair into the map; if the key already
+     * exists in the map, its value is overwritten.
+     *
+     * @param k the (non-null) key to insert
+     * @param v the (non-null) value to associate with the key
+     * @throws NullPointerException if k or v is null
+     */
+    @Override
+    public void put(K k, V v) {
+        if (k == null || v == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Index<K, V> h = head;
+            int levels = 0;
+            Index<K, V> q = h;
+            while (true) {
+                Index<K, V> r;
+                while ((r = q.right) != null) {
+                    if (isStale(r)) {
+                        RIGHT.compareAndSet(q, r, r.right);
+                    } else if (k.compareTo(r.node.key) > 0) {
+                        q = r;
+                    } else {
+                        break;
+                    }
+                }
+                if (q.down == null) {
+                    break;
+                }
+                levels++;
+                q = q.down;
+            }
+
+            Node<K, V> b = q.node;
+            Node<K, V> z = null;
+            while (true) {
+                Node<K, V> n = b.next;
+                int cmp;
+                if (n == null) {
+                    cmp = -1;
+                } else if (n.key == null) {
+                    break; // b has been removed: start again
+                } else {
+                    Object value = n.value;
+                    if (value == null) {
+                        unlinkNode(b, n);
+                        continue;
+                    }
+                    cmp = k.compareTo(n.key);
+                    if (cmp > 0) {
+                        b = n;
+                        continue;
+                    } else if (cmp == 0) {
+                        if (VALUE.compareAndSet(n, value, v)) {
+                            return;
+                        }
+                        continue; // n changed under us; look again
+                    }
+                }
+                Node<K, V> p = new Node<>(k, v, n);
+                if (NEXT.compareAndSet(b, n, p)) {
+                    z = p;
+                    break;
+                }
+            }
+            if (z != null) {
+                addTower(h, levels, z);
+                count.increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * With probability 1/4, give the newly inserted node z a tower of index
+     * nodes, of geometrically distributed height; a tower taller than the
+     * index adds one new level.
+     * @param h the head, as of when z's position was found
+     * @param levels the number of index levels below h
+     */
+    private void addTower(Index<K, V> h, int levels, Node<K, V> z) {
+        long rnd = ThreadLocalRandom.current().nextLong();
+        if ((rnd & 0x3) != 0) {
+            return;
+        }
+        int skips = levels; // levels to descend from h before linking the top of the tower
+        Index<K, V> x = null;
+        while (true) {
+            x = new Index<>(z, x, null);
+            if (rnd >= 0L || --skips < 0) {
+                break;
+            }
+            rnd <<= 1;
+        }
+        if (addIndices(h, skips, x) && skips < 0 && head == h) {
+            Index<K, V> hx = new Index<>(z, x, null);
+            Index<K, V> nh = new Index<>(h.node, h, hx);
+            HEAD.compareAndSet(this, h, nh);
+        }
+        if (z.value == null) {
+            findPredecessor(z.key); // z was removed meanwhile: clean up its indexes
+        }
+    }
+
+    /**
+     * Link the tower whose top is x into the index levels, from the bottom
+     * up, starting the search at q, skips levels above x's level.
+     * @return false if z turned out to be removed, or already indexed
+     */
+    private static <K extends Comparable<K>, V> boolean addIndices(Index<K, V> q, int skips, Index<K, V> x) {
+        K k = x.node.key;
+        boolean retrying = false;
+        while (true) {
+            Index<K, V> r = q.right;
+            int cmp;
+            if (r != null) {
+                if (isStale(r)) {
+                    RIGHT.compareAndSet(q, r, r.right);
+                    continue;
+                }
+                cmp = k.compareTo(r.node.key);
+                if (cmp > 0) {
+                    q = r;
+                    continue;
+                } else if (cmp == 0) {
+                    return false;
+                }
+            }
+            Index<K, V> d = q.down;
+            if (d != null && skips > 0) {
+                skips--;
+                q = d;
+            } else if (d != null && !retrying && !addIndices(d, 0, x.down)) {
+                return false;
+            } else {
+                x.right = r;
+                if (RIGHT.compareAndSet(q, r, x)) {
+                    return true;
+                }
+                retrying = true;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V remove(K k) {
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        outer:
+        while (true) {
+            Node<K, V> b = findPredecessor(k);
+            while (true) {
+                Node<K, V> n = b.next;
+                if (n == null) {
+                    return null;
+                } else if (n.key == null) {
+                    continue outer;
+                }
+                Object value = n.value;
+                if (value == null) {
+                    unlinkNode(b, n);
+                    continue;
+                }
+                int cmp = k.compareTo(n.key);
+                if (cmp > 0) {
+                    b = n;
+                } else if (cmp < 0) {
+                    return null;
+                } else if (VALUE.compareAndSet(n, value, null)) {
+                    unlinkNode(b, n);
+                    count.decrement();
+                    findPredecessor(k); // unlink n's indexes
+                    return (V) value;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the first live node at or after n on the base level, or null
+     */
+    private static <K, V> Node<K, V> live(Node<K, V> n) {
+        while (n != null && (n.key == null || n.value == null)) {
+            n = n.next;
+        }
+        return n;
+    }
+
+    @Override
+    public Set<K> keys() {
+        Set<K> keySet = new HashSet<>();
+        for (Node<K, V> n = live(head.node.next); n != null; n = live(n.next)) {
+            keySet.add(n.key);
+        }
+        return keySet;
+    }
+
+    /**
+     * Return the i-th smallest key in the map, counting from 0, by walking
+     * the base level, in O(i) time.
+     *
+     * @param i the rank of the key to return
+     * @return the i-th smallest key in the map
+     * @throws IndexOutOfBoundsException if i is not in [0, size())
+     */
+    @Override
+    public K select(int i) {
+        if (i >= 0) {
+            int j = 0;
+            for (Node<K, V> n = live(head.node.next); n != null; n = live(n.next)) {
+                if (j++ == i) {
+                    return n.key;
+                }
+            }
+        }
+        throw new IndexOutOfBoundsException("i: " + i + ", size: " + size());
+    }
+
+    /**
+     * Return the number of keys in the map that are strictly less than k, by
+     * walking the base level, in O(rank) time.
+     */
+    @Override
+    public int rank(K k) {
+        int rank = 0;
+        for (Node<K, V> n = live(head.node.next); n != null && n.key.compareTo(k) < 0; n = live(n.next)) {
+            rank++;
+        }
+        return rank;
+    }
+
+    /**
+     * Return the number of keys k in the map such that lo <= k < hi, in
+     * O(log n) expected time to find lo plus O(count) to walk to hi.
+     */
+    @Override
+    public int countInRange(K lo, K hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        int inRange = 0;
+        Node<K, V> n = live(findPredecessor(lo).next);
+        while (n != null && n.key.compareTo(lo) < 0) {
+            n = live(n.next);
+        }
+        for (; n != null && n.key.compareTo(hi) < 0; n = live(n.next)) {
+            inRange++;
+        }
+        return inRange;
+    }
+
+    /**
+     * Return a weakly consistent iterator over the keys of the map in
+     * ascending order. It reflects some, but not necessarily all, of the
+     * changes made to the map while it runs, and never throws
+     * ConcurrentModificationException. Removing a key through the iterator
+     * removes it from the map.
+     *
+     * @return an iterator over the keys of the map
+     */
+    public Iterator<K> keyIterator() {
+        return new Iterator<K>() {
+            private Node<K, V> next = live(head.node.next);
+            private K lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public K next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next.key;
+                next = live(next.next);
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                LockFreeSkipListMap.this.remove(lastReturned);
+                lastReturned = null;
+            }
+        };
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package maps;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import trees.ArrayAVLTree;
+
+/**
+ * A sorted map from long keys to values, with the same operations as
+ * SimpleOrderedMap&lt;Long, V&gt; but without boxing its keys: keys are stored
+ * in a long array and values in a parallel Object array, both indexed by the
+ * tree's slots.
+ *
+ * @see ArrayAVLTree
+ */
+public class LongObjectTreeMap<V> extends ArrayAVLTree {
+    private long[] keys;
+    private Object[] values;
+
+    public LongObjectTreeMap() {
+        keys = new long[left.length];
+        values = new Object[left.length];
+    }
+
+    private LongObjectTreeMap(int capacity) {
+        super(capacity);
+        keys = new long[left.length];
+        values = new Object[left.length];
+    }
+
+    /**
+     * Build a new map directly from parallel arrays of keys, in strictly
+     * increasing order, and their values, in O(n) time.
+     *
+     * @param keys the keys, in strictly increasing order
+     * @param values the values; values[i] is associated with keys[i]
+     * @return a new map containing the given key-value pairs
+     * @throws IllegalArgumentException if the arrays differ in length, or if
+     *         the keys are not strictly increasing
+     */
+    public static <V> LongObjectTreeMap<V> fromSorted(long[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys.length: " + keys.length + ", values.length: " + values.length);
+        }
+        LongObjectTreeMap<V> m = new LongObjectTreeMap<>(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0 && keys[i - 1] >= keys[i]) {
+                throw new IllegalArgumentException("keys are not strictly increasing: " + keys[i - 1] + ", " + keys[i]);
+            }
+            m.keys[i] = keys[i];
+            m.values[i] = values[i];
+        }
+        m.buildBalanced(keys.length);
+        return m;
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    protected void release(int slot) {
+        values[slot] = null;
+    }
+
+    /**
+     * @param k
+     * @return the slot holding k, or NIL if k is not in the map
+     */
+    private int find(long k) {
+        int n = root;
+        while (n != NIL) {
+            long key = keys[n];
+            if (k < key) {
+                n = left[n];
+            } else if (k > key) {
+                n = right[n];
+            } else {
+                return n;
+            }
+        }
+        return NIL;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int slot) {
+        return (V) values[slot];
+    }
+
+    /**
+     * Insert the given key-value pair into the map; if the key already
+     * exists in the map, its value is overwritten.
+     *
+     * @param k the key to insert
+     * @param v the value to associate with the key
+     */
+    public void put(long k, V v) {
+        int p = NIL;
+        int n = root;
+        while (n != NIL) {
+            p = n;
+            long key = keys[n];
+            if (k < key) {
+                n = left[n];
+            } else if (k > key) {
+                n = right[n];
+            } else {
+                values[n] = v;
+                return;
+            }
+        }
+        int slot = insert(p, p != NIL && k < keys[p]);
+        keys[slot] = k;
+        values[slot] = v;
+    }
+
+    /**
+     * @param k the key
+     * @return the value in the map associated with k, or null if k is not in the map
+     */
+    public V get(long k) {
+        int n = find(k);
+        return (n == NIL) ? null : value(n);
+    }
+
+    /**
+     * @param k            the key
+     * @param defaultValue the default value to return if the key is not in the map
+     * @return the value in the map associated with the given key, or the
+     *         defaultValue if the key is not in the map
+     */
+    public V getOrDefault(long k, V defaultValue) {
+        V value = get(k);
+        return (value == null) ? defaultValue : value;
+    }
+
+    /**
+     * @param k the key
+     * @return true iff the map contains the key k
+     */
+    public boolean containsKey(long k) {
+        return find(k) != NIL;
+    }
+
+    /**
+     * Remove the key from the map (if present) returning the previously associated
+     * value (or null, if the key was not present).
+     *
+     * @param k the key to remove
+     * @return the value associated with k, or null if no such key was in the map
+     */
+    public V remove(long k) {
+        int n = find(k);
+        if (n == NIL) {
+            return null;
+        }
+        V value = value(n);
+        delete(n);
+        return value;
+    }
+
+    /**
+     * Return the i-th smallest key in the map, counting from 0, in O(log n) time.
+     *
+     * @param i the rank of the key to return
+     * @return the i-th smallest key in the map
+     * @throws IndexOutOfBoundsException if i is not in [0, size())
+     */
+    public long select(int i) {
+        return keys[selectSlot(i)];
+    }
+
+    /**
+     * Return the number of keys in the map that are strictly less than k, in
+     * O(log n) time.
+     *
+     * @param k the key
+     * @return the number of keys in the map less than k
+     */
+    public int rank(long k) {
+        int rank = 0;
+        int n = root;
+        while (n != NIL) {
+            long key = keys[n];
+            if (k < key) {
+                n = left[n];
+            } else if (k > key) {
+                rank += count(left[n]) + 1;
+                n = right[n];
+            } else {
+                return rank + count(left[n]);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Return the number of keys k in the map such that lo <= k < hi, in
+     * O(log n) time.
+     *
+     * @param lo the inclusive lower bound
+     * @param hi the exclusive upper bound
+     * @return the number of keys in the map in the range [lo, hi)
+     */
+    public int countInRange(long lo, long hi) {
+        if (lo >= hi) {
+            return 0;
+        }
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * Return an iterator over the keys of the map in ascending order. The
+     * iterator supports remove(), and fails fast on concurrent modification.
+     *
+     * @return an iterator over the keys of the map
+     */
+    public PrimitiveIterator.OfLong keyIterator() {
+        class Iter extends SlotIterator implements PrimitiveIterator.OfLong {
+            @Override
+            public long nextLong() {
+                return keys[nextSlot()];
+            }
+        }
+        return new Iter();
+    }
+}
@@ -0,0 +1,834 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package maps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import codecs.Codec;
+import codecs.FileSync;
+
+/**
+ * A SimpleOrderedMap stored in a file, as a B+tree of fixed-size pages.
+ *
+ * The file is memory-mapped (in segments of SEGMENT_PAGES pages), and pages
+ * are read straight from the mapping, so opening a map only reads its header
+ * page: the operating system faults the rest in as it is touched.
+ *
+ * Keys and values are stored with fixed-width Codecs. All the entries are in
+ * the leaves, which are linked left to right for range scans; internal pages
+ * hold separator keys, and the number of entries under each child, so that
+ * rank() and select() take O(log n) page reads. Deleting never merges pages
+ * (a page emptied by deletions stays in the tree, and is refilled by later
+ * insertions in its key range), so the file never shrinks.
+ *
+ * Changes are not written to the file as they are made. A modified page is
+ * copied into the page cache, and stays there until the next flush(), which
+ * happens when the cache holds maxDirtyPages pages, or on an explicit call to
+ * flush() or close(). A flush first writes every cached page to a journal
+ * file next to the map's file and forces it, and the directory entry that
+ * names it, to disk, and only then copies the pages into the mapping (the
+ * journal is deleted afterwards, and the deletion forced to disk in turn, so
+ * a stale journal never reappears); if the process dies part-way through, opening
+ * the map replays a complete journal, or discards an incomplete one. Either
+ * way, after a crash the map holds exactly what it held at some flush: the
+ * changes since the last completed flush are lost, but no page is ever torn.
+ *
+ * Keys and values may not be null. The map is not thread-safe.
+ */
+public class MappedBPlusTreeMap<K extends Comparable<K>, V> implements SimpleOrderedMap<K, V>, Closeable {
+    static final int PAGE_SIZE = 4096;
+    private static final int SEGMENT_PAGES = 1 << 12; // 16 MiB per mapping
+    private static final int DEFAULT_MAX_DIRTY_PAGES = 1024;
+
+    private static final int MAGIC = 0x42545245; // "BTRE"
+    private static final int JOURNAL_MAGIC = 0x4a524e4c; // "JRNL"
+    private static final int VERSION = 1;
+
+    /**
+     * Page numbers are ints, and page 0 is the header, so 0 doubles as "no page".
+     */
+    private static final int NONE = 0;
+
+    // header page layout
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_PAGE_SIZE = 8;
+    private static final int H_KEY_WIDTH = 12;
+    private static final int H_VALUE_WIDTH = 16;
+    private static final int H_ROOT = 20;
+    private static final int H_PAGE_COUNT = 24;
+    private static final int H_SIZE = 28;
+    private static final int H_FIRST_LEAF = 32;
+
+    // tree page layout: a fixed header, then either entries (in a leaf), or
+    // (child page, child count) pairs followed by keys (in an internal page)
+    private static final int TYPE = 0;
+    private static final int COUNT = 4; // number of keys in the page
+    private static final int NEXT = 8; // next leaf to the right, or NONE
+    private static final int PAGE_HEADER = 16;
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+
+    private final Path path;
+    private final Path journal;
+    private final FileChannel channel;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final int keyWidth;
+    private final int valueWidth;
+    private final int leafCapacity;
+    private final int internalCapacity;
+    private final int internalKeys; // offset of the keys in an internal page
+    private final int maxDirtyPages;
+
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private final Map<Integer, ByteBuffer> dirty = new LinkedHashMap<>(); // the page cache
+    private boolean closed;
+
+    private int root;
+    private int pageCount;
+    private int size;
+    private int firstLeaf;
+    private int modCount; // number of structural modifications, so iterators can fail fast
+
+    /**
+     * Open the map stored in the given file, creating the file if it does not
+     * exist, with the default page cache size.
+     *
+     * @see #MappedBPlusTreeMap(Path, Codec, Codec, int)
+     */
+    public MappedBPlusTreeMap(Path path, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this(path, keyCodec, valueCodec, DEFAULT_MAX_DIRTY_PAGES);
+    }
+
+    /**
+     * Open the map stored in the given file, creating the file if it does not
+     * exist. If the map was not closed cleanly, it is recovered to its state
+     * at its last flush.
+     *
+     * @param path the map's file
+     * @param keyCodec a fixed-width codec for the keys
+     * @param valueCodec a fixed-width codec for the values
+     * @param maxDirtyPages the number of modified pages to cache before flushing them
+     * @throws IllegalArgumentException if either codec is variable-length, or
+     *         they do not match the widths the file was created with, or the
+     *         widths leave room for fewer than 3 keys per page
+     * @throws IOException if the file cannot be opened, or is not a map
+     */
+    public MappedBPlusTreeMap(Path path, Codec<K> keyCodec, Codec<V> valueCodec, int maxDirtyPages) throws IOException {
+        if (keyCodec.fixedWidth() <= 0 || valueCodec.fixedWidth() <= 0) {
+            throw new IllegalArgumentException("the codecs must have a fixed width");
+        }
+        if (maxDirtyPages < 1) {
+            throw new IllegalArgumentException("maxDirtyPages: " + maxDirtyPages);
+        }
+        this.path = path;
+        this.journal = path.resolveSibling(path.getFileName() + ".journal");
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.keyWidth = keyCodec.fixedWidth();
+        this.valueWidth = valueCodec.fixedWidth();
+        this.leafCapacity = (PAGE_SIZE - PAGE_HEADER) / (keyWidth + valueWidth);
+        this.internalCapacity = (PAGE_SIZE - PAGE_HEADER - 8) / (8 + keyWidth);
+        this.internalKeys = PAGE_HEADER + 8 * (internalCapacity + 1);
+        this.maxDirtyPages = maxDirtyPages;
+        if (leafCapacity < 3 || internalCapacity < 3) {
+            throw new IllegalArgumentException("keys and values are too wide for a page");
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            recover();
+            if (channel.size() == 0) {
+                root = 1;
+                firstLeaf = 1;
+                pageCount = 1;
+                allocate(LEAF);
+                flush();
+            } else {
+                readHeader();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer h = read(0);
+        if (h.getInt(H_MAGIC) != MAGIC || h.getInt(H_VERSION) != VERSION || h.getInt(H_PAGE_SIZE) != PAGE_SIZE) {
+            throw new IOException(path + " is not a map file");
+        }
+        if (h.getInt(H_KEY_WIDTH) != keyWidth || h.getInt(H_VALUE_WIDTH) != valueWidth) {
+            throw new IllegalArgumentException("the codecs do not match the widths in " + path);
+        }
+        root = h.getInt(H_ROOT);
+        pageCount = h.getInt(H_PAGE_COUNT);
+        size = h.getInt(H_SIZE);
+        firstLeaf = h.getInt(H_FIRST_LEAF);
+    }
+
+    private void writeHeader() {
+        ByteBuffer h = writable(0);
+        h.putInt(H_MAGIC, MAGIC);
+        h.putInt(H_VERSION, VERSION);
+        h.putInt(H_PAGE_SIZE, PAGE_SIZE);
+        h.putInt(H_KEY_WIDTH, keyWidth);
+        h.putInt(H_VALUE_WIDTH, valueWidth);
+        h.putInt(H_ROOT, root);
+        h.putInt(H_PAGE_COUNT, pageCount);
+        h.putInt(H_SIZE, size);
+        h.putInt(H_FIRST_LEAF, firstLeaf);
+    }
+
+    /*
+     * Pages and the page cache
+     */
+
+    private MappedByteBuffer segment(int page) throws IOException {
+        int s = page / SEGMENT_PAGES;
+        if (s >= segments.length) {
+            segments = Arrays.copyOf(segments, s + 1);
+        }
+        if (segments[s] == null) {
+            long bytes = (long) SEGMENT_PAGES * PAGE_SIZE;
+            segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, s * bytes, bytes);
+        }
+        return segments[s];
+    }
+
+    /**
+     * @return the page, for reading only: the cached copy if it has been
+     *         modified since the last flush, and otherwise a view of the mapping
+     */
+    private ByteBuffer read(int page) {
+        if (closed) {
+            throw new IllegalStateException("the map is closed");
+        }
+        ByteBuffer p = dirty.get(page);
+        if (p != null) {
+            return p;
+        }
+        try {
+            return segment(page).slice((page % SEGMENT_PAGES) * PAGE_SIZE, PAGE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the page, for writing: a copy in the page cache, which is not
+     *         written to the file until the next flush
+     */
+    private ByteBuffer writable(int page) {
+        ByteBuffer p = dirty.get(page);
+        if (p == null) {
+            p = ByteBuffer.allocate(PAGE_SIZE);
+            if (page < pageCount) {
+                p.put(0, read(page), 0, PAGE_SIZE);
+            }
+            dirty.put(page, p);
+        }
+        return p;
+    }
+
+    /**
+     * @return the number of a new, empty page of the given type
+     */
+    private int allocate(byte type) {
+        int page = pageCount;
+        ByteBuffer p = writable(page); // a new page, so an empty one
+        pageCount++;
+        p.put(TYPE, type);
+        return page;
+    }
+
+    /**
+     * Write every page modified since the last flush to the file, atomically
+     * with respect to crashes.
+     *
+     * @throws IOException if the pages could not be written
+     */
+    public void flush() throws IOException {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        writeJournal();
+        checkpoint();
+    }
+
+    /**
+     * Write the header and every cached page to the journal, and force it,
+     * and its directory entry, to disk. The journal is: a magic number, the number of pages, (page number,
+     * page contents) pairs, and a CRC32 of everything before it.
+     */
+    void writeJournal() throws IOException {
+        writeHeader();
+        CRC32 crc = new CRC32();
+        try (FileChannel out = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            buf.putInt(JOURNAL_MAGIC).putInt(dirty.size()).flip();
+            crc.update(buf.duplicate());
+            writeFully(out, buf);
+            for (Map.Entry<Integer, ByteBuffer> e : dirty.entrySet()) {
+                buf.clear();
+                buf.putInt(e.getKey()).flip();
+                crc.update(buf.duplicate());
+                writeFully(out, buf);
+                ByteBuffer page = e.getValue().duplicate().clear();
+                crc.update(page.duplicate());
+                writeFully(out, page);
+            }
+            buf.clear();
+            buf.putLong(crc.getValue()).flip();
+            writeFully(out, buf);
+            out.force(true);
+        }
+        // the journal must still be there after a crash part-way through apply()
+        FileSync.syncDirectory(directory());
+    }
+
+    private Path directory() {
+        return journal.toAbsolutePath().getParent();
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /**
+     * Copy the cached pages, already safe in the journal, into the file, and
+     * then delete the journal.
+     */
+    void checkpoint() throws IOException {
+        apply(dirty);
+        dirty.clear();
+        Files.deleteIfExists(journal);
+        // a journal that came back after a crash would be replayed over newer pages
+        FileSync.syncDirectory(directory());
+    }
+
+    private void apply(Map<Integer, ByteBuffer> pages) throws IOException {
+        for (Map.Entry<Integer, ByteBuffer> e : pages.entrySet()) {
+            int page = e.getKey();
+            segment(page).put((page % SEGMENT_PAGES) * PAGE_SIZE, e.getValue(), 0, PAGE_SIZE);
+        }
+        for (int page : pages.keySet()) {
+            segment(page).force((page % SEGMENT_PAGES) * PAGE_SIZE, PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Replay the journal left by a flush that was interrupted after the
+     * journal was complete, or discard an incomplete one.
+     */
+    private void recover() throws IOException {
+        if (!Files.exists(journal)) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(journal));
+        Map<Integer, ByteBuffer> pages = new LinkedHashMap<>();
+        boolean complete = false;
+        if (buf.remaining() >= 16 && buf.getInt(0) == JOURNAL_MAGIC) {
+            int count = buf.getInt(4);
+            long length = 8 + (long) count * (4 + PAGE_SIZE) + 8;
+            if (count >= 0 && buf.remaining() == length) {
+                CRC32 crc = new CRC32();
+                crc.update(buf.array(), 0, (int) length - 8);
+                complete = crc.getValue() == buf.getLong((int) length - 8);
+            }
+            if (complete) {
+                for (int i = 0, off = 8; i < count; i++, off += 4 + PAGE_SIZE) {
+                    pages.put(buf.getInt(off), buf.slice(off + 4, PAGE_SIZE));
+                }
+            }
+        }
+        if (complete) {
+            apply(pages);
+        }
+        Files.delete(journal);
+        FileSync.syncDirectory(directory());
+    }
+
+    /**
+     * Flush the map and close its file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            segments = null;
+            channel.close();
+        }
+    }
+
+    private void flushIfFull() {
+        if (dirty.size() >= maxDirtyPages) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /*
+     * Reading and writing tree pages
+     */
+
+    private static boolean isLeaf(ByteBuffer p) {
+        return p.get(TYPE) == LEAF;
+    }
+
+    private static int count(ByteBuffer p) {
+        return p.getInt(COUNT);
+    }
+
+    private boolean isFull(ByteBuffer p) {
+        return count(p) == (isLeaf(p) ? leafCapacity : internalCapacity);
+    }
+
+    private int entryOffset(int i) {
+        return PAGE_HEADER + i * (keyWidth + valueWidth);
+    }
+
+    private int keyOffset(ByteBuffer p, int i) {
+        return isLeaf(p) ? entryOffset(i) : internalKeys + i * keyWidth;
+    }
+
+    private static int child(ByteBuffer p, int i) {
+        return p.getInt(PAGE_HEADER + 8 * i);
+    }
+
+    /**
+     * @return the number of entries under the i-th child of an internal page
+     */
+    private static int childCount(ByteBuffer p, int i) {
+        return p.getInt(PAGE_HEADER + 8 * i + 4);
+    }
+
+    private static void setChild(ByteBuffer p, int i, int page, int count) {
+        p.putInt(PAGE_HEADER + 8 * i, page);
+        p.putInt(PAGE_HEADER + 8 * i + 4, count);
+    }
+
+    private K key(ByteBuffer p, int i) {
+        p.position(keyOffset(p, i));
+        return keyCodec.decode(p);
+    }
+
+    private V value(ByteBuffer p, int i) {
+        p.position(entryOffset(i) + keyWidth);
+        return valueCodec.decode(p);
+    }
+
+    private int compareTo(K k, ByteBuffer p, int i) {
+        p.position(keyOffset(p, i));
+        return keyCodec.compareTo(k, p);
+    }
+
+    /**
+     * @return the index of k in a leaf, or (-(insertion point) - 1), as Arrays.binarySearch
+     */
+    private int search(ByteBuffer leaf, K k) {
+        int lo = 0;
+        int hi = count(leaf) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareTo(k, leaf, mid);
+            if (cmp > 0) {
+                lo = mid + 1;
+            } else if (cmp < 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * @return the index of the child of an internal page whose subtree may hold k:
+     *         the number of separator keys less than or equal to k
+     */
+    private int childIndex(ByteBuffer p, K k) {
+        int lo = 0;
+        int hi = count(p);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareTo(k, p, mid) >= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return the number of entries in the subtree rooted at the given page
+     */
+    private static int subtreeCount(ByteBuffer p) {
+        if (isLeaf(p)) {
+            return count(p);
+        }
+        int total = 0;
+        for (int i = 0; i <= count(p); i++) {
+            total += childCount(p, i);
+        }
+        return total;
+    }
+
+    /*
+     * The map operations
+     */
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the leaf whose key range includes k
+     */
+    private int findLeaf(K k) {
+        int page = root;
+        ByteBuffer p = read(page);
+        while (!isLeaf(p)) {
+            page = child(p, childIndex(p, k));
+            p = read(page);
+        }
+        return page;
+    }
+
+    @Override
+    public V get(K k) {
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        ByteBuffer leaf = read(findLeaf(k));
+        int i = search(leaf, k);
+        return (i >= 0) ? value(leaf, i) : null;
+    }
+
+    @Override
+    public V getOrDefault(K k, V defaultValue) {
+        V value = get(k);
+        return (value == null) ? defaultValue : value;
+    }
+
+    /**
+     * Insert the given key-value pair into the map; if the key already
+     * exists in the map, its value is overwritten.
+     *
+     * @param k the (non-null) key to insert
+     * @param v the (non-null) value to associate with the key
+     * @throws NullPointerException if k or v is null
+     * @throws UncheckedIOException if the page cache is full, and flushing it fails
+     */
+    @Override
+    public void put(K k, V v) {
+        if (k == null || v == null) {
+            throw new NullPointerException();
+        }
+        if (isFull(read(root))) {
+            int oldRoot = root;
+            root = allocate(INTERNAL);
+            setChild(writable(root), 0, oldRoot, size);
+            splitChild(root, 0);
+        }
+        if (insert(root, k, v)) {
+            size++;
+            modCount++;
+        }
+        flushIfFull();
+    }
+
+    /**
+     * Split the full i-th child of the given (non-full) internal page in two.
+     * A leaf's upper half moves to a new leaf, linked after it, and the new
+     * leaf's first key is copied up as the separator; an internal page's
+     * middle key moves up, and the keys after it move to a new page.
+     */
+    private void splitChild(int parent, int i) {
+        modCount++;
+        ByteBuffer x = writable(parent);
+        int left = child(x, i);
+        ByteBuffer y = writable(left);
+        boolean leaf = isLeaf(y);
+        int right = allocate(leaf ? LEAF : INTERNAL);
+        ByteBuffer z = writable(right);
+        byte[] ya = y.array();
+        byte[] za = z.array();
+        int n = count(y);
+        int m = n / 2;
+        byte[] separator = new byte[keyWidth];
+
+        if (leaf) {
+            System.arraycopy(ya, entryOffset(m), za, entryOffset(0), entryOffset(n) - entryOffset(m));
+            z.putInt(COUNT, n - m);
+            y.putInt(COUNT, m);
+            z.putInt(NEXT, y.getInt(NEXT));
+            y.putInt(NEXT, right);
+            System.arraycopy(za, entryOffset(0), separator, 0, keyWidth);
+        } else {
+            System.arraycopy(ya, internalKeys + keyWidth * m, separator, 0, keyWidth);
+            System.arraycopy(ya, internalKeys + keyWidth * (m + 1), za, internalKeys, keyWidth * (n - m - 1));
+            System.arraycopy(ya, PAGE_HEADER + 8 * (m + 1), za, PAGE_HEADER, 8 * (n - m));
+            z.putInt(COUNT, n - m - 1);
+            y.putInt(COUNT, m);
+        }
+
+        byte[] xa = x.array();
+        int xn = count(x);
+        System.arraycopy(xa, internalKeys + keyWidth * i, xa, internalKeys + keyWidth * (i + 1), keyWidth * (xn - i));
+        System.arraycopy(xa, PAGE_HEADER + 8 * (i + 1), xa, PAGE_HEADER + 8 * (i + 2), 8 * (xn - i));
+        System.arraycopy(separator, 0, xa, internalKeys + keyWidth * i, keyWidth);
+        setChild(x, i, left, subtreeCount(y));
+        setChild(x, i + 1, right, subtreeCount(z));
+        x.putInt(COUNT, xn + 1);
+    }
+
+    /**
+     * The recursive helper method for put(): splitting full pages on the way
+     * down, so there is always room for a split below.
+     * @param page a non-full page
+     * @return true iff k was added (rather than its value overwritten)
+     */
+    private boolean insert(int page, K k, V v) {
+        ByteBuffer p = read(page);
+        if (isLeaf(p)) {
+            int i = search(p, k);
+            boolean added = i < 0;
+            p = writable(page);
+            if (added) {
+                i = -i - 1;
+                int n = count(p);
+                byte[] a = p.array();
+                System.arraycopy(a, entryOffset(i), a, entryOffset(i + 1), entryOffset(n) - entryOffset(i));
+                p.putInt(COUNT, n + 1);
+                p.position(entryOffset(i));
+                keyCodec.encode(k, p);
+            }
+            p.position(entryOffset(i) + keyWidth);
+            valueCodec.encode(v, p);
+            return added;
+        }
+        int i = childIndex(p, k);
+        if (isFull(read(child(p, i)))) {
+            splitChild(page, i);
+            p = read(page);
+            if (compareTo(k, p, i) >= 0) {
+                i++;
+            }
+        }
+        boolean added = insert(child(p, i), k, v);
+        if (added) {
+            p = writable(page);
+            setChild(p, i, child(p, i), childCount(p, i) + 1);
+        }
+        return added;
+    }
+
+    /**
+     * Remove the key from the map (if present) returning the previously associated
+     * value (or null, if the key was not present).
+     *
+     * @param k the key to remove
+     * @return the value associated with k, or null if no such key was in the map
+     * @throws UncheckedIOException if the page cache is full, and flushing it fails
+     */
+    @Override
+    public V remove(K k) {
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        V value = delete(root, k);
+        if (value != null) {
+            size--;
+            modCount++;
+            flushIfFull();
+        }
+        return value;
+    }
+
+    /**
+     * The recursive helper method for remove(). Pages are never merged.
+     * @return the value that was associated with k, or null if k was not in the subtree
+     */
+    private V delete(int page, K k) {
+        ByteBuffer p = read(page);
+        if (isLeaf(p)) {
+            int i = search(p, k);
+            if (i < 0) {
+                return null;
+            }
+            V value = value(p, i);
+            p = writable(page);
+            int n = count(p);
+            byte[] a = p.array();
+            System.arraycopy(a, entryOffset(i + 1), a, entryOffset(i), entryOffset(n) - entryOffset(i + 1));
+            p.putInt(COUNT, n - 1);
+            return value;
+        }
+        int i = childIndex(p, k);
+        V value = delete(child(p, i), k);
+        if (value != null) {
+            p = writable(page);
+            setChild(p, i, child(p, i), childCount(p, i) - 1);
+        }
+        return value;
+    }
+
+    @Override
+    public Set<K> keys() {
+        Set<K> keySet = new HashSet<>();
+        Iterator<K> it = keyIterator();
+        while (it.hasNext()) {
+            keySet.add(it.next());
+        }
+        return keySet;
+    }
+
+    @Override
+    public K select(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("i: " + i + ", size: " + size);
+        }
+        ByteBuffer p = read(root);
+        while (!isLeaf(p)) {
+            int j = 0;
+            while (i >= childCount(p, j)) {
+                i -= childCount(p, j);
+                j++;
+            }
+            p = read(child(p, j));
+        }
+        return key(p, i);
+    }
+
+    @Override
+    public int rank(K k) {
+        int rank = 0;
+        ByteBuffer p = read(root);
+        while (!isLeaf(p)) {
+            int i = childIndex(p, k);
+            for (int j = 0; j < i; j++) {
+                rank += childCount(p, j);
+            }
+            p = read(child(p, i));
+        }
+        int i = search(p, k);
+        return rank + ((i >= 0) ? i : -i - 1);
+    }
+
+    @Override
+    public int countInRange(K lo, K hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * Return an iterator over the keys of the map in ascending order, which
+     * fails fast on concurrent modification. It does not support remove().
+     *
+     * @return an iterator over the keys of the map
+     */
+    public Iterator<K> keyIterator() {
+        return keyIterator(null, null);
+    }
+
+    /**
+     * Return an iterator over the keys k of the map such that lo <= k < hi,
+     * in ascending order. The scan descends the tree once, to the leaf holding
+     * lo, and then follows the links between the leaves.
+     *
+     * @param lo the inclusive lower bound, or null for no lower bound
+     * @param hi the exclusive upper bound, or null for no upper bound
+     * @return an iterator over the keys of the map in the range [lo, hi)
+     */
+    public Iterator<K> keyIterator(K lo, K hi) {
+        return new Iterator<K>() {
+            private int leaf;
+            private int index;
+            private K next;
+            private int expectedModCount = modCount;
+
+            {
+                if (lo == null) {
+                    leaf = firstLeaf;
+                    index = 0;
+                } else {
+                    leaf = findLeaf(lo);
+                    int i = search(read(leaf), lo);
+                    index = (i >= 0) ? i : -i - 1;
+                }
+                advance();
+            }
+
+            private void advance() {
+                ByteBuffer p = read(leaf);
+                while (index >= count(p)) {
+                    leaf = p.getInt(NEXT);
+                    index = 0;
+                    if (leaf == NONE) {
+                        next = null;
+                        return;
+                    }
+                    p = read(leaf);
+                }
+                next = key(p, index);
+                if (hi != null && next.compareTo(hi) >= 0) {
+                    next = null;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public K next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                K k = next;
+                index++;
+                advance();
+                return k;
+            }
+        };
+    }
+}
@@ -1,32 +1,327 @@
 package maps;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Set;
 import java.util.HashSet;
-import trees.AVLTree;
-import trees.Node;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
-public class SimpleTreeMap<K extends Comparable<K>, V> implements SimpleOrderedMap<K, V> {
+import codecs.Codec;
+import codecs.SnapshotReader;
+import codecs.SnapshotWriter;
 
-    private final AVLTree<SimpleOrderedMapEntry<K, V>> tree;
+/**
+ * A SimpleNavigableMap implemented as an AVL tree.
+ * 
+ * Rather than storing SimpleOrderedMapEntry values in a trees.AVLTree, the map
+ * keeps its own tree of Entry nodes, each holding a key, its value, and the
+ * cached height and subtree size used for balancing and order statistics. So
+ * each mapping costs a single object, and lookups compare the key once per
+ * level without allocating a probe entry.
+ */
+public class SimpleTreeMap<K extends Comparable<K>, V> implements SimpleNavigableMap<K, V> {
+
+    /**
+     * A node in the map's tree. Entries are handed out directly by entrySet(),
+     * so iterating over the entries allocates nothing per entry.
+     */
+    private static final class Entry<K, V> implements Map.Entry<K, V> {
+        final K key;
+        V value;
+        Entry<K, V> left;
+        Entry<K, V> right;
+        Entry<K, V> parent;
+        int height; // cached height of the subtree rooted here; a leaf has height 0
+        int size = 1; // cached number of entries in the subtree rooted here
+
+        Entry(K key, V value, Entry<K, V> parent) {
+            this.key = key;
+            this.value = value;
+            this.parent = parent;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private Entry<K, V> root;
+    private int size;
+    private int modCount; // number of structural modifications, so iterators can fail fast
 
     public SimpleTreeMap() {
-        tree = new AVLTree<>();
+    }
+
+    /**
+     * Build a new map directly from n entries supplied in strictly increasing
+     * key order.
+     * 
+     * Rather than calling put() once per entry, the nodes are linked into a
+     * perfectly balanced shape, with correct heights, sizes and parent pointers,
+     * in a single O(n) pass over the entries.
+     * 
+     * @param entries an iterator yielding at least n entries in strictly increasing key order
+     * @param n the number of entries to take from entries
+     * @return a new map containing the first n entries
+     * @throws IllegalArgumentException if entries has fewer than n entries, or if
+     *         the keys are not strictly increasing
+     */
+    public static <K extends Comparable<K>, V> SimpleTreeMap<K, V> fromSorted(
+            Iterator<SimpleOrderedMapEntry<K, V>> entries, int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n: " + n);
+        }
+        SimpleTreeMap<K, V> m = new SimpleTreeMap<>();
+        m.root = m.buildBalanced(entries, n, new Entry<>(null, null, null));
+        m.size = n;
+        m.modCount++;
+        return m;
+    }
+
+    /**
+     * Build a new map directly from parallel arrays of keys, in strictly
+     * increasing order, and their values, in O(n) time.
+     * 
+     * @param keys the keys, in strictly increasing order
+     * @param values the values; values[i] is associated with keys[i]
+     * @return a new map containing the given key-value pairs
+     * @throws IllegalArgumentException if the arrays differ in length, or if
+     *         the keys are not strictly increasing
+     */
+    public static <K extends Comparable<K>, V> SimpleTreeMap<K, V> fromSorted(K[] keys, V[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException("keys.length: " + keys.length + ", values.length: " + values.length);
+        }
+        Iterator<SimpleOrderedMapEntry<K, V>> entries = new Iterator<SimpleOrderedMapEntry<K, V>>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < keys.length;
+            }
+
+            @Override
+            public SimpleOrderedMapEntry<K, V> next() {
+                SimpleOrderedMapEntry<K, V> entry = new SimpleOrderedMapEntry<>(keys[i], values[i]);
+                i++;
+                return entry;
+            }
+        };
+        return fromSorted(entries, keys.length);
+    }
+
+    /**
+     * Write the map's key-value pairs, in key order, to a snapshot file.
+     * 
+     * @param path the file to (over)write
+     * @param keyCodec the codec for the keys
+     * @param valueCodec the codec for the values (null values are recorded as such)
+     * @throws IOException if the file cannot be written
+     * @see SnapshotWriter
+     */
+    public void save(Path path, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(path, 2, size)) {
+            for (Entry<K, V> e = firstEntry(); e != null; e = successor(e)) {
+                out.write(e.key, keyCodec, e.value, valueCodec);
+            }
+        }
+    }
+
+    /**
+     * Load a map from a snapshot file written by save(), in O(n) time: the
+     * entries are decoded as they are streamed from the file straight into
+     * fromSorted().
+     * 
+     * @param path the snapshot file
+     * @param keyCodec the codec for the keys
+     * @param valueCodec the codec for the values
+     * @return a new map containing the key-value pairs in the snapshot
+     * @throws IOException if the file cannot be read, or is not a valid snapshot of a map
+     */
+    public static <K extends Comparable<K>, V> SimpleTreeMap<K, V> load(Path path, Codec<K> keyCodec,
+            Codec<V> valueCodec) throws IOException {
+        try (SnapshotReader in = new SnapshotReader(path)) {
+            if (in.fields() != 2 || in.count() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not a snapshot of a map");
+            }
+            Iterator<SimpleOrderedMapEntry<K, V>> entries = new Iterator<SimpleOrderedMapEntry<K, V>>() {
+                @Override
+                public boolean hasNext() {
+                    return in.hasNext();
+                }
+
+                @Override
+                public SimpleOrderedMapEntry<K, V> next() {
+                    try {
+                        K k = in.read(keyCodec);
+                        V v = in.read(valueCodec);
+                        in.endEntry();
+                        return new SimpleOrderedMapEntry<>(k, v);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            try {
+                return fromSorted(entries, (int) in.count());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * The recursive helper method for fromSorted(): builds a balanced subtree
+     * from the next n entries, consuming them in order.
+     * @param entries
+     * @param n the number of entries in the subtree
+     * @param last holds (in its value field) the last key consumed, for checking the order
+     * @return the root of the new subtree, or null if n is 0
+     */
+    private Entry<K, V> buildBalanced(Iterator<SimpleOrderedMapEntry<K, V>> entries, int n, Entry<K, K> last) {
+        if (n == 0) {
+            return null;
+        }
+        int leftSize = (n - 1) / 2;
+        Entry<K, V> left = buildBalanced(entries, leftSize, last);
+
+        if (!entries.hasNext()) {
+            throw new IllegalArgumentException("fewer entries than expected");
+        }
+        SimpleOrderedMapEntry<K, V> e = entries.next();
+        if (last.value != null && last.value.compareTo(e.k) >= 0) {
+            throw new IllegalArgumentException("keys are not strictly increasing: " + last.value + ", " + e.k);
+        }
+        last.value = e.k;
+
+        Entry<K, V> node = new Entry<>(e.k, e.v, null);
+        Entry<K, V> right = buildBalanced(entries, n - leftSize - 1, last);
+        node.left = left;
+        node.right = right;
+        if (left != null) {
+            left.parent = node;
+        }
+        if (right != null) {
+            right.parent = node;
+        }
+        update(node);
+        return node;
     }
 
     @Override
     public int size() {
-        return tree.size();
+        return size;
+    }
+
+    /**
+     * Return the entry for the key k, or null if k is not in the map.
+     * 
+     * Compares k once per level, and allocates nothing.
+     */
+    private Entry<K, V> getEntry(K k) {
+        Entry<K, V> n = root;
+        while (n != null) {
+            int cmp = k.compareTo(n.key);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                n = n.right;
+            } else {
+                return n;
+            }
+        }
+        return null;
     }
 
     @Override
     public void put(K k, V v) {
-        tree.add(new SimpleOrderedMapEntry<>(k, v));
+        if (k == null) {
+            throw new NullPointerException();
+        }
+        Entry<K, V> n = root;
+        if (n == null) {
+            root = new Entry<>(k, v, null);
+            size = 1;
+            modCount++;
+            return;
+        }
+        Entry<K, V> added;
+        while (true) {
+            int cmp = k.compareTo(n.key);
+            if (cmp < 0) {
+                if (n.left == null) {
+                    added = n.left = new Entry<>(k, v, n);
+                    break;
+                }
+                n = n.left;
+            } else if (cmp > 0) {
+                if (n.right == null) {
+                    added = n.right = new Entry<>(k, v, n);
+                    break;
+                }
+                n = n.right;
+            } else {
+                n.value = v;
+                return;
+            }
+        }
+        size++;
+        modCount++;
+        insertionCheck(added);
     }
 
     @Override
     public V get(K k) {
-        SimpleOrderedMapEntry<K, V> entry = tree.get(new SimpleOrderedMapEntry<>(k, null));
-        return entry == null ? null : entry.v;
+        Entry<K, V> entry = getEntry(k);
+        return (entry == null) ? null : entry.value;
     }
 
     @Override
@@ -37,17 +332,1256 @@ public class SimpleTreeMap<K extends Comparable<K>, V> implements SimpleOrderedM
 
     @Override
     public V remove(K k) {
-        SimpleOrderedMapEntry<K, V> removed = tree.remove(new SimpleOrderedMapEntry<>(k, null));
-        return (removed == null) ? null : removed.v;
+        Entry<K, V> entry = getEntry(k);
+        if (entry == null) {
+            return null;
+        }
+        V value = entry.value;
+        delete(entry);
+        return value;
+    }
+
+    /**
+     * Insert every key-value pair in the batch.
+     * 
+     * The batch is sorted first, unless it is already a SortedMap in natural
+     * key order. A batch that is large relative to the map is then merged with
+     * the map's entries in one linear pass and the tree relinked into a
+     * perfectly balanced shape, with no rotations at all. A smaller batch is
+     * inserted in increasing key order, each search starting from the previous
+     * insertion (see fingerFor()) rather than from the root, so keys landing
+     * close together cost a few comparisons each instead of a full descent.
+     * 
+     * Existing entries are kept either way, so entries already handed out by
+     * entrySet() stay live. If the batch has a null key the map is unchanged.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> batch) {
+        List<Entry<K, V>> list = new ArrayList<>(batch.size());
+        for (Map.Entry<? extends K, ? extends V> e : batch.entrySet()) {
+            if (e.getKey() == null) {
+                throw new NullPointerException();
+            }
+            list.add(new Entry<>(e.getKey(), e.getValue(), null));
+        }
+        @SuppressWarnings("unchecked")
+        Entry<K, V>[] sorted = list.toArray(new Entry[list.size()]);
+        int m = sorted.length;
+        if (!(batch instanceof SortedMap && ((SortedMap<?, ?>) batch).comparator() == null)) {
+            m = sortBatch(sorted);
+        }
+        if (m == 0) {
+            return;
+        }
+        if (m >= size / REBUILD_FRACTION) {
+            mergeAndRebuild(sorted, m);
+        } else {
+            fingerInsert(sorted, m);
+        }
+    }
+
+    /**
+     * Batches at least 1/REBUILD_FRACTION the size of the map are merged by
+     * rebuilding the whole tree, which costs O(n + m) rather than O(m log n).
+     */
+    private static final int REBUILD_FRACTION = 8;
+
+    /**
+     * Sort the batch by key and drop all but the last of any run of equal
+     * keys, as successive put()s would.
+     * @return the number of distinct keys, now at the front of batch
+     */
+    private static <K extends Comparable<K>, V> int sortBatch(Entry<K, V>[] batch) {
+        // a stable sort, so "last" means last in the batch's iteration order
+        Arrays.sort(batch, (a, b) -> a.key.compareTo(b.key));
+        int m = 0;
+        for (int i = 0; i < batch.length; i++) {
+            if (m > 0 && batch[m - 1].key.compareTo(batch[i].key) == 0) {
+                batch[m - 1] = batch[i];
+            } else {
+                batch[m++] = batch[i];
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Merge the first m entries of batch, in strictly increasing key order,
+     * with the tree's entries, then relink the result as a balanced tree.
+     */
+    private void mergeAndRebuild(Entry<K, V>[] batch, int m) {
+        @SuppressWarnings("unchecked")
+        Entry<K, V>[] merged = new Entry[size + m];
+        int n = 0;
+        Entry<K, V> e = firstEntry();
+        for (int j = 0; j < m; j++) {
+            Entry<K, V> b = batch[j];
+            int cmp = 1;
+            while (e != null && (cmp = e.key.compareTo(b.key)) < 0) {
+                merged[n++] = e;
+                e = successor(e);
+            }
+            if (e != null && cmp == 0) {
+                e.value = b.value;
+                merged[n++] = e;
+                e = successor(e);
+            } else {
+                merged[n++] = b;
+            }
+        }
+        for (; e != null; e = successor(e)) {
+            merged[n++] = e;
+        }
+        root = link(merged, 0, n, null);
+        size = n;
+        modCount++;
+    }
+
+    /**
+     * Link entries[lo, hi), in increasing key order, into a balanced subtree
+     * of the same shape buildBalanced() makes, under the given parent.
+     * @return the root of the subtree
+     */
+    private static <K, V> Entry<K, V> link(Entry<K, V>[] entries, int lo, int hi, Entry<K, V> parent) {
+        if (lo >= hi) {
+            return null;
+        }
+        int mid = lo + (hi - lo - 1) / 2;
+        Entry<K, V> node = entries[mid];
+        node.parent = parent;
+        node.left = link(entries, lo, mid, node);
+        node.right = link(entries, mid + 1, hi, node);
+        update(node);
+        return node;
+    }
+
+    /**
+     * Insert the first m entries of batch, in strictly increasing key order,
+     * into the non-empty tree one at a time, starting each search from the
+     * previous one.
+     */
+    private void fingerInsert(Entry<K, V>[] batch, int m) {
+        Entry<K, V> finger = null;
+        for (int j = 0; j < m; j++) {
+            Entry<K, V> b = batch[j];
+            Entry<K, V> n = (finger == null) ? root : fingerFor(finger, b.key);
+            int cmp;
+            while (true) {
+                cmp = b.key.compareTo(n.key);
+                Entry<K, V> next = (cmp < 0) ? n.left : n.right;
+                if (cmp == 0 || next == null) {
+                    break;
+                }
+                n = next;
+            }
+            if (cmp == 0) {
+                n.value = b.value;
+                finger = n;
+                continue;
+            }
+            if (cmp < 0) {
+                n.left = b;
+            } else {
+                n.right = b;
+            }
+            b.parent = n;
+            size++;
+            modCount++;
+            insertionCheck(b);
+            finger = b;
+        }
+    }
+
+    /**
+     * Return the lowest ancestor of finger (or finger itself) whose subtree's
+     * key range includes k, given that k is greater than finger's key.
+     * 
+     * A subtree's keys are bounded above by the key of the nearest ancestor it
+     * hangs to the left of, so only those ancestors are compared against k;
+     * right-child links are followed without comparing. When k is near
+     * finger's key, the search stops a few levels up instead of at the root.
+     */
+    private static <K extends Comparable<K>, V> Entry<K, V> fingerFor(Entry<K, V> finger, K k) {
+        Entry<K, V> n = finger;
+        while (true) {
+            Entry<K, V> c = n;
+            Entry<K, V> p = n.parent;
+            while (p != null && c == p.right) {
+                c = p;
+                p = p.parent;
+            }
+            // p is n's upper bound, or null if n's subtree is unbounded above
+            if (p == null || k.compareTo(p.key) < 0) {
+                return n;
+            }
+            n = p;
+        }
+    }
+
+    /**
+     * Remove every key in the batch from the map.
+     * 
+     * A batch that is large relative to the map is sorted and merged against
+     * the map's entries in one linear pass, and the survivors are relinked
+     * into a balanced tree, with no rotations at all. Smaller batches are
+     * removed one key at a time.
+     * 
+     * @return the number of keys removed from the map
+     */
+    @Override
+    public int removeAll(Collection<? extends K> keys) {
+        if (size == 0 || keys.size() < size / REBUILD_FRACTION) {
+            return SimpleNavigableMap.super.removeAll(keys);
+        }
+        @SuppressWarnings("unchecked")
+        K[] sorted = (K[]) keys.toArray(new Comparable[keys.size()]);
+        for (K k : sorted) {
+            if (k == null) {
+                throw new NullPointerException();
+            }
+        }
+        Arrays.sort(sorted);
+
+        // survivors go at the front of entries, removed entries at the back
+        @SuppressWarnings("unchecked")
+        Entry<K, V>[] entries = new Entry[size];
+        int n = 0;
+        int removed = 0;
+        Entry<K, V> e = firstEntry();
+        for (K k : sorted) {
+            int cmp = 1;
+            while (e != null && (cmp = e.key.compareTo(k)) < 0) {
+                entries[n++] = e;
+                e = successor(e);
+            }
+            if (e == null) {
+                break;
+            }
+            if (cmp == 0) {
+                entries[entries.length - ++removed] = e;
+                e = successor(e);
+            }
+        }
+        if (removed == 0) {
+            return 0;
+        }
+        for (; e != null; e = successor(e)) {
+            entries[n++] = e;
+        }
+        for (int i = n; i < entries.length; i++) {
+            Entry<K, V> r = entries[i];
+            r.left = r.right = r.parent = null;
+        }
+        root = link(entries, 0, n, null);
+        size = n;
+        modCount++;
+        return removed;
     }
 
     @Override
     public Set<K> keys() {
         Set<K> keySet = new HashSet<>();
-        for (SimpleOrderedMapEntry<K, V> entry : tree) {
-            keySet.add(entry.k);
+        for (Entry<K, V> e = firstEntry(); e != null; e = successor(e)) {
+            keySet.add(e.key);
         }
         return keySet;
-    }    
-    
+    }
+
+    @Override
+    public K select(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("i: " + i + ", size: " + size);
+        }
+        return entryAt(i).key;
+    }
+
+    /**
+     * Return the entry with the i-th smallest key, for i in [0, size).
+     */
+    private Entry<K, V> entryAt(int i) {
+        Entry<K, V> n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (i < leftSize) {
+                n = n.left;
+            } else if (i > leftSize) {
+                i -= leftSize + 1;
+                n = n.right;
+            } else {
+                return n;
+            }
+        }
+    }
+
+    @Override
+    public int rank(K k) {
+        int rank = 0;
+        Entry<K, V> n = root;
+        while (n != null) {
+            int cmp = k.compareTo(n.key);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                rank += size(n.left) + 1;
+                n = n.right;
+            } else {
+                return rank + size(n.left);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * No AVL tree that fits in an int-sized map is taller than this.
+     */
+    private static final int MAX_HEIGHT = 64;
+
+    /**
+     * A version of get() for optimistic readers that run without a lock while
+     * a writer may be changing the tree (see ConcurrentSimpleTreeMap).
+     * 
+     * A concurrent rotation can briefly make the links form a cycle, so the
+     * walk gives up after MAX_HEIGHT steps rather than risk looping forever.
+     * The result is meaningless unless the caller then confirms that no write
+     * overlapped the call.
+     */
+    V getOptimistic(K k) {
+        Entry<K, V> n = root;
+        for (int steps = 0; n != null && steps < MAX_HEIGHT; steps++) {
+            int cmp = k.compareTo(n.key);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                n = n.right;
+            } else {
+                return n.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A version of rank() for optimistic readers; see getOptimistic().
+     */
+    int rankOptimistic(K k) {
+        int rank = 0;
+        Entry<K, V> n = root;
+        for (int steps = 0; n != null && steps < MAX_HEIGHT; steps++) {
+            int cmp = k.compareTo(n.key);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                Entry<K, V> l = n.left;
+                rank += ((l == null) ? 0 : l.size) + 1;
+                n = n.right;
+            } else {
+                Entry<K, V> l = n.left;
+                return rank + ((l == null) ? 0 : l.size);
+            }
+        }
+        return rank;
+    }
+
+    @Override
+    public int countInRange(K lo, K hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        return rank(hi) - rank(lo);
+    }
+
+    private static <K, V> K key(Entry<K, V> entry) {
+        return (entry == null) ? null : entry.key;
+    }
+
+    @Override
+    public K firstKey() {
+        return key(firstEntry());
+    }
+
+    @Override
+    public K lastKey() {
+        Entry<K, V> n = root;
+        if (n == null) {
+            return null;
+        }
+        while (n.right != null) {
+            n = n.right;
+        }
+        return n.key;
+    }
+
+    @Override
+    public K floorKey(K k) {
+        return key(floorEntry(k, true));
+    }
+
+    @Override
+    public K ceilingKey(K k) {
+        return key(ceilingEntry(k, true));
+    }
+
+    @Override
+    public K lowerKey(K k) {
+        return key(floorEntry(k, false));
+    }
+
+    @Override
+    public K higherKey(K k) {
+        return key(ceilingEntry(k, false));
+    }
+
+    /**
+     * @return the entry with the smallest key, or null if the map is empty
+     */
+    private Entry<K, V> firstEntry() {
+        Entry<K, V> n = root;
+        if (n == null) {
+            return null;
+        }
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n;
+    }
+
+    /**
+     * Return the entry with the largest key less than k (or equal to k, if
+     * inclusive), or null if there is none, in O(log n) time.
+     */
+    private Entry<K, V> floorEntry(K k, boolean inclusive) {
+        Entry<K, V> best = null;
+        Entry<K, V> n = root;
+        while (n != null) {
+            int cmp = k.compareTo(n.key);
+            if (cmp == 0 && inclusive) {
+                return n;
+            } else if (cmp > 0) {
+                best = n;
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the entry with the smallest key greater than k (or equal to k, if
+     * inclusive), or null if there is none, in O(log n) time.
+     */
+    private Entry<K, V> ceilingEntry(K k, boolean inclusive) {
+        Entry<K, V> best = null;
+        Entry<K, V> n = root;
+        while (n != null) {
+            int cmp = k.compareTo(n.key);
+            if (cmp == 0 && inclusive) {
+                return n;
+            } else if (cmp < 0) {
+                best = n;
+                n = n.left;
+            } else {
+                n = n.right;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the in-order successor of n, or null if n holds the largest key.
+     * @param n a (non-null) entry
+     * @return the entry following n in an in-order traversal
+     */
+    private static <K, V> Entry<K, V> successor(Entry<K, V> n) {
+        if (n.right != null) {
+            n = n.right;
+            while (n.left != null) {
+                n = n.left;
+            }
+            return n;
+        }
+        Entry<K, V> p = n.parent;
+        while (p != null && n == p.right) {
+            n = p;
+            p = p.parent;
+        }
+        return p;
+    }
+
+    @Override
+    public Iterator<K> keyIterator() {
+        return keyIterator(null, null);
+    }
+
+    /**
+     * Return an iterator over the keys k of the map such that lo <= k < hi, in
+     * ascending order; a null bound leaves that end of the range unbounded.
+     */
+    private Iterator<K> keyIterator(K lo, K hi) {
+        return new TreeIterator<K>(lo, hi) {
+            @Override
+            public K next() {
+                return nextEntry().key;
+            }
+        };
+    }
+
+    /**
+     * A lazy in-order iterator over the entries k of the map such that
+     * lo <= k < hi, where a null bound is unbounded. It walks the tree through
+     * its parent pointers, supports remove(), and fails fast on concurrent
+     * modification. Subclasses choose what part of each entry to return.
+     */
+    private abstract class TreeIterator<T> implements Iterator<T> {
+        Entry<K, V> next;
+        Entry<K, V> lastReturned;
+        final K fence; // exclusive upper bound of the iteration, or null
+        int expectedModCount = modCount;
+
+        TreeIterator(K lo, K hi) {
+            this.next = (lo == null) ? firstEntry() : ceilingEntry(lo, true);
+            this.fence = hi;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null && (fence == null || next.key.compareTo(fence) < 0);
+        }
+
+        Entry<K, V> nextEntry() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            lastReturned = next;
+            next = successor(next);
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // delete() relinks entries rather than moving keys between them,
+            // so next is still the right entry to visit
+            delete(lastReturned);
+            expectedModCount = modCount;
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * A spliterator over the entries k of the map such that lo <= k < hi,
+     * where a null bound is unbounded. Like AVLTree's, it covers a range of
+     * ranks and splits at the middle rank, so parallel streams divide the
+     * tree into halves of exactly known size without copying it. It fails
+     * fast on concurrent modification. part chooses what part of each entry
+     * to return, and comparator, if the spliterator is SORTED, the order of
+     * those parts (null for their natural order).
+     */
+    private final class TreeSpliterator<T> implements Spliterator<T> {
+        final Function<Entry<K, V>, T> part;
+        final int characteristics;
+        final Comparator<? super T> comparator;
+        int index; // rank of the next entry
+        final int fence; // rank after the last entry
+        Entry<K, V> next; // the entry of rank index, or null if not found yet
+        final int expectedModCount;
+
+        TreeSpliterator(K lo, K hi, Function<Entry<K, V>, T> part, int characteristics,
+                Comparator<? super T> comparator) {
+            this(part, characteristics, comparator, (lo == null) ? 0 : rank(lo), (hi == null) ? size : rank(hi),
+                    modCount);
+        }
+
+        private TreeSpliterator(Function<Entry<K, V>, T> part, int characteristics, Comparator<? super T> comparator,
+                int index, int fence, int expectedModCount) {
+            this.part = part;
+            this.characteristics = characteristics;
+            this.comparator = comparator;
+            this.index = index;
+            this.fence = Math.max(index, fence);
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            TreeSpliterator<T> prefix = new TreeSpliterator<>(part, characteristics, comparator, index, mid,
+                    expectedModCount);
+            prefix.next = next;
+            index = mid;
+            next = null;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            if (index >= fence) {
+                return false;
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Entry<K, V> n = (next == null) ? entryAt(index) : next;
+            next = successor(n);
+            index++;
+            action.accept(part.apply(n));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            if (index >= fence) {
+                return;
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Entry<K, V> n = (next == null) ? entryAt(index) : next;
+            int remaining = fence - index;
+            index = fence;
+            next = null;
+            for (; remaining > 0; remaining--) {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                action.accept(part.apply(n));
+                n = successor(n);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            if (!hasCharacteristics(SORTED)) {
+                throw new IllegalStateException();
+            }
+            return comparator;
+        }
+    }
+
+    /**
+     * Return true iff lo <= k < hi, where a null bound is unbounded.
+     */
+    private static <K extends Comparable<K>> boolean inRange(K k, K lo, K hi) {
+        return (lo == null || k.compareTo(lo) >= 0) && (hi == null || k.compareTo(hi) < 0);
+    }
+
+    /**
+     * Return the number of keys k such that lo <= k < hi, where a null bound
+     * is unbounded, in O(log n) time.
+     */
+    private int rangeSize(K lo, K hi) {
+        int loRank = (lo == null) ? 0 : rank(lo);
+        int hiRank = (hi == null) ? size : rank(hi);
+        return Math.max(0, hiRank - loRank);
+    }
+
+    /**
+     * Return the entry for the object o if it is a key in the range [lo, hi),
+     * or null otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> getEntryInRange(Object o, K lo, K hi) {
+        if (o == null || root == null) {
+            return null;
+        }
+        try {
+            K k = (K) o;
+            if (!inRange(k, lo, hi)) {
+                return null;
+            }
+            return getEntry(k);
+        } catch (ClassCastException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new KeySet(null, null);
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new Values(null, null);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet(null, null);
+    }
+
+    /**
+     * A live, sorted view of the keys k of the map such that lo <= k < hi,
+     * where a null bound is unbounded. size() is O(1) for the whole map and
+     * O(log n) for a range, contains() is O(log n), and iteration is lazy.
+     */
+    private class KeySet extends AbstractSet<K> {
+        final K lo;
+        final K hi;
+
+        KeySet(K lo, K hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        public int size() {
+            return (lo == null && hi == null) ? size : rangeSize(lo, hi);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return getEntryInRange(o, lo, hi) != null;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            Entry<K, V> e = getEntryInRange(o, lo, hi);
+            if (e == null) {
+                return false;
+            }
+            delete(e);
+            return true;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return keyIterator(lo, hi);
+        }
+
+        @Override
+        public Spliterator<K> spliterator() {
+            return new TreeSpliterator<>(lo, hi, e -> e.key, Spliterator.ORDERED | Spliterator.SORTED
+                    | Spliterator.DISTINCT | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL, null);
+        }
+    }
+
+    /**
+     * A live view of the values of the map whose keys k are such that
+     * lo <= k < hi, in ascending order of their keys.
+     */
+    private class Values extends AbstractCollection<V> {
+        final K lo;
+        final K hi;
+
+        Values(K lo, K hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        public int size() {
+            return (lo == null && hi == null) ? size : rangeSize(lo, hi);
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new TreeIterator<V>(lo, hi) {
+                @Override
+                public V next() {
+                    return nextEntry().value;
+                }
+            };
+        }
+
+        @Override
+        public Spliterator<V> spliterator() {
+            return new TreeSpliterator<>(lo, hi, e -> e.value,
+                    Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED, null);
+        }
+    }
+
+    /**
+     * A live, sorted view of the entries of the map whose keys k are such that
+     * lo <= k < hi. The entries returned are the map's own nodes, so
+     * setValue() writes through to the map.
+     */
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        final K lo;
+        final K hi;
+
+        EntrySet(K lo, K hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        public int size() {
+            return (lo == null && hi == null) ? size : rangeSize(lo, hi);
+        }
+
+        /**
+         * Return the map's entry matching o's key and value, or null.
+         */
+        private Entry<K, V> find(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return null;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Entry<K, V> entry = getEntryInRange(e.getKey(), lo, hi);
+            return (entry != null && Objects.equals(entry.value, e.getValue())) ? entry : null;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return find(o) != null;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            Entry<K, V> entry = find(o);
+            if (entry == null) {
+                return false;
+            }
+            delete(entry);
+            return true;
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new TreeIterator<Map.Entry<K, V>>(lo, hi) {
+                @Override
+                public Map.Entry<K, V> next() {
+                    return nextEntry();
+                }
+            };
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new TreeSpliterator<>(lo, hi, e -> e, Spliterator.ORDERED | Spliterator.SORTED
+                    | Spliterator.DISTINCT | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL,
+                    Map.Entry.comparingByKey());
+        }
+    }
+
+    private static int height(Entry<?, ?> n) {
+        return (n == null) ? -1 : n.height;
+    }
+
+    private static int size(Entry<?, ?> n) {
+        return (n == null) ? 0 : n.size;
+    }
+
+    /**
+     * Recompute the cached height and size of n from those of its children.
+     */
+    private static void update(Entry<?, ?> n) {
+        n.height = 1 + Math.max(height(n.left), height(n.right));
+        n.size = 1 + size(n.left) + size(n.right);
+    }
+
+    private static int balance(Entry<?, ?> n) {
+        return height(n.left) - height(n.right);
+    }
+
+    /**
+     * Remove the entry n from the tree.
+     * 
+     * Entry keys are final, so when n has two children its in-order successor
+     * is unlinked and then relinked in n's place, rather than copying the
+     * successor's key into n.
+     * @param n an entry in this tree
+     */
+    private void delete(Entry<K, V> n) {
+        size--;
+        modCount++;
+
+        if (n.left != null && n.right != null) {
+            Entry<K, V> s = n.right;
+            while (s.left != null) {
+                s = s.left;
+            }
+            // splice s out of its position (it has no left child) ...
+            Entry<K, V> fixFrom = (s.parent == n) ? s : s.parent;
+            if (s.parent != n) {
+                s.parent.left = s.right;
+                if (s.right != null) {
+                    s.right.parent = s.parent;
+                }
+                s.right = n.right;
+                s.right.parent = s;
+            }
+            // ... and put it where n was
+            s.left = n.left;
+            s.left.parent = s;
+            replace(n, s);
+            deletionCheck(fixFrom);
+        } else {
+            Entry<K, V> child = (n.left != null) ? n.left : n.right;
+            Entry<K, V> parent = n.parent;
+            replace(n, child);
+            if (parent != null) {
+                deletionCheck(parent);
+            }
+        }
+        n.left = n.right = n.parent = null;
+    }
+
+    /**
+     * Put replacement (which may be null) in n's place under n's parent.
+     */
+    private void replace(Entry<K, V> n, Entry<K, V> replacement) {
+        Entry<K, V> p = n.parent;
+        if (p == null) {
+            root = replacement;
+        } else if (p.left == n) {
+            p.left = replacement;
+        } else {
+            p.right = replacement;
+        }
+        if (replacement != null) {
+            replacement.parent = p;
+        }
+    }
+
+    /**
+     * Restore the AVL property after the insertion of node, refreshing cached
+     * heights and sizes on the way up. As in AVLTree, at most one (single or
+     * double) rotation is needed, after which only sizes change.
+     */
+    private void insertionCheck(Entry<K, V> node) {
+        Entry<K, V> n = node.parent;
+        boolean done = false;
+        while (n != null) {
+            if (done) {
+                n.size++;
+            } else {
+                int oldHeight = n.height;
+                update(n);
+                int bf = balance(n);
+                if (bf > 1 || bf < -1) {
+                    n = rebalance(n);
+                    done = true;
+                } else if (n.height == oldHeight) {
+                    done = true;
+                }
+            }
+            n = n.parent;
+        }
+    }
+
+    /**
+     * Restore the AVL property after a deletion below node, all the way up to
+     * the root.
+     */
+    private void deletionCheck(Entry<K, V> node) {
+        Entry<K, V> n = node;
+        while (n != null) {
+            update(n);
+            int bf = balance(n);
+            if (bf > 1 || bf < -1) {
+                n = rebalance(n);
+            }
+            n = n.parent;
+        }
+    }
+
+    /**
+     * Restore the AVL property at n, whose balance factor is +2 or -2.
+     * @return the entry now at the root of n's former subtree
+     */
+    private Entry<K, V> rebalance(Entry<K, V> n) {
+        if (balance(n) > 0) {
+            if (balance(n.left) < 0) {
+                rotateLeft(n.left);
+            }
+            return rotateRight(n);
+        } else {
+            if (balance(n.right) > 0) {
+                rotateRight(n.right);
+            }
+            return rotateLeft(n);
+        }
+    }
+
+    private Entry<K, V> rotateRight(Entry<K, V> b) {
+        Entry<K, V> a = b.left;
+        b.left = a.right;
+        if (a.right != null) {
+            a.right.parent = b;
+        }
+        replace(b, a);
+        a.right = b;
+        b.parent = a;
+        update(b);
+        update(a);
+        return a;
+    }
+
+    private Entry<K, V> rotateLeft(Entry<K, V> b) {
+        Entry<K, V> c = b.right;
+        b.right = c.left;
+        if (c.left != null) {
+            c.left.parent = b;
+        }
+        replace(b, c);
+        c.left = b;
+        b.parent = c;
+        update(b);
+        update(c);
+        return c;
+    }
+
+    @Override
+    public SimpleNavigableMap<K, V> subMap(K lo, K hi) {
+        if (lo.compareTo(hi) > 0) {
+            throw new IllegalArgumentException("lo: " + lo + " > hi: " + hi);
+        }
+        return new SubMap(lo, hi);
+    }
+
+    @Override
+    public SimpleNavigableMap<K, V> headMap(K hi) {
+        return new SubMap(null, hi);
+    }
+
+    @Override
+    public SimpleNavigableMap<K, V> tailMap(K lo) {
+        return new SubMap(lo, null);
+    }
+
+    /**
+     * A live view of the keys k of the enclosing map such that lo <= k < hi.
+     * A null bound leaves that end of the range unbounded.
+     * 
+     * Nothing is copied: each operation is answered by the enclosing map's
+     * tree, restricted to the range, so size(), rank() and select() stay
+     * O(log n) and iteration is O(log n + k).
+     */
+    private class SubMap implements SimpleNavigableMap<K, V> {
+        final K lo;
+        final K hi;
+
+        SubMap(K lo, K hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        private boolean tooLow(K k) {
+            return lo != null && k.compareTo(lo) < 0;
+        }
+
+        private boolean tooHigh(K k) {
+            return hi != null && k.compareTo(hi) >= 0;
+        }
+
+        private boolean inRange(K k) {
+            return !tooLow(k) && !tooHigh(k);
+        }
+
+        /**
+         * @return the number of keys in the enclosing map below this view
+         */
+        private int loRank() {
+            return (lo == null) ? 0 : SimpleTreeMap.this.rank(lo);
+        }
+
+        /**
+         * @return the number of keys in the enclosing map below the top of this view
+         */
+        private int hiRank() {
+            return (hi == null) ? SimpleTreeMap.this.size() : SimpleTreeMap.this.rank(hi);
+        }
+
+        @Override
+        public int size() {
+            return hiRank() - loRank();
+        }
+
+        @Override
+        public void put(K k, V v) {
+            if (!inRange(k)) {
+                throw new IllegalArgumentException("key out of range: " + k);
+            }
+            SimpleTreeMap.this.put(k, v);
+        }
+
+        @Override
+        public V get(K k) {
+            return inRange(k) ? SimpleTreeMap.this.get(k) : null;
+        }
+
+        @Override
+        public V getOrDefault(K k, V defaultValue) {
+            V value = get(k);
+            return (value == null) ? defaultValue : value;
+        }
+
+        @Override
+        public V remove(K k) {
+            return inRange(k) ? SimpleTreeMap.this.remove(k) : null;
+        }
+
+        @Override
+        public Set<K> keys() {
+            Set<K> keySet = new HashSet<>();
+            Iterator<K> it = keyIterator();
+            while (it.hasNext()) {
+                keySet.add(it.next());
+            }
+            return keySet;
+        }
+
+        @Override
+        public K select(int i) {
+            int size = size();
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("i: " + i + ", size: " + size);
+            }
+            return SimpleTreeMap.this.select(loRank() + i);
+        }
+
+        @Override
+        public int rank(K k) {
+            int loRank = loRank();
+            int rank = SimpleTreeMap.this.rank(k);
+            return Math.min(Math.max(rank, loRank), hiRank()) - loRank;
+        }
+
+        @Override
+        public int countInRange(K from, K to) {
+            if (tooLow(from)) {
+                from = lo;
+            }
+            if (hi != null && to.compareTo(hi) > 0) {
+                to = hi;
+            }
+            return SimpleTreeMap.this.countInRange(from, to);
+        }
+
+        @Override
+        public K firstKey() {
+            K k = (lo == null) ? SimpleTreeMap.this.firstKey() : SimpleTreeMap.this.ceilingKey(lo);
+            return (k == null || tooHigh(k)) ? null : k;
+        }
+
+        @Override
+        public K lastKey() {
+            K k = (hi == null) ? SimpleTreeMap.this.lastKey() : SimpleTreeMap.this.lowerKey(hi);
+            return (k == null || tooLow(k)) ? null : k;
+        }
+
+        @Override
+        public K floorKey(K k) {
+            if (tooLow(k)) {
+                return null;
+            } else if (tooHigh(k)) {
+                return lastKey();
+            }
+            K floor = SimpleTreeMap.this.floorKey(k);
+            return (floor == null || tooLow(floor)) ? null : floor;
+        }
+
+        @Override
+        public K ceilingKey(K k) {
+            if (tooHigh(k)) {
+                return null;
+            } else if (tooLow(k)) {
+                return firstKey();
+            }
+            K ceiling = SimpleTreeMap.this.ceilingKey(k);
+            return (ceiling == null || tooHigh(ceiling)) ? null : ceiling;
+        }
+
+        @Override
+        public K lowerKey(K k) {
+            if (tooLow(k)) {
+                return null;
+            } else if (tooHigh(k)) {
+                return lastKey();
+            }
+            K lower = SimpleTreeMap.this.lowerKey(k);
+            return (lower == null || tooLow(lower)) ? null : lower;
+        }
+
+        @Override
+        public K higherKey(K k) {
+            if (tooHigh(k)) {
+                return null;
+            } else if (tooLow(k)) {
+                return firstKey();
+            }
+            K higher = SimpleTreeMap.this.higherKey(k);
+            return (higher == null || tooHigh(higher)) ? null : higher;
+        }
+
+        @Override
+        public Iterator<K> keyIterator() {
+            return SimpleTreeMap.this.keyIterator(lo, hi);
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return new KeySet(lo, hi);
+        }
+
+        @Override
+        public Collection<V> values() {
+            return new Values(lo, hi);
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new EntrySet(lo, hi);
+        }
+
+        /**
+         * Return a view of the intersection of this view's range with [from, to),
+         * where a null bound is unbounded.
+         */
+        private SimpleNavigableMap<K, V> intersect(K from, K to) {
+            if (from == null || tooLow(from)) {
+                from = lo;
+            }
+            if (to == null || tooHigh(to)) {
+                to = hi;
+            }
+            if (from != null && to != null && from.compareTo(to) > 0) {
+                to = from; // the ranges do not overlap, so the view is empty
+            }
+            return new SubMap(from, to);
+        }
+
+        @Override
+        public SimpleNavigableMap<K, V> subMap(K from, K to) {
+            if (from.compareTo(to) > 0) {
+                throw new IllegalArgumentException("lo: " + from + " > hi: " + to);
+            }
+            return intersect(from, to);
+        }
+
+        @Override
+        public SimpleNavigableMap<K, V> headMap(K to) {
+            return intersect(null, to);
+        }
+
+        @Override
+        public SimpleNavigableMap<K, V> tailMap(K from) {
+            return intersect(from, null);
+        }
+    }
 }
\ No newline at end of file
@@ -3,13 +3,179 @@
  */
 package trees;
 
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import codecs.Codec;
+import codecs.SnapshotReader;
+import codecs.SnapshotWriter;
 
 public class AVLTree<E extends Comparable<E>> implements Iterable<E> {
+    /**
+     * Set operations on subtrees whose combined size is above this threshold
+     * run their two independent halves in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * The value hash enableHashing() uses when no other is given.
+     */
+    private static final ToLongFunction<Object> HASH_CODE = Object::hashCode;
+
     Node<E> root;
     int size;
+    int modCount; // number of structural modifications, so iterators can fail fast
+    AVLTreeMetrics metrics; // null unless metrics are enabled
+    ToLongFunction<? super E> hasher; // null unless the nodes' cached hashes are kept up to date
+
+    /**
+     * Build a new tree directly from n values supplied in strictly increasing order.
+     * 
+     * Rather than calling add() once per value, the nodes are linked into a
+     * perfectly balanced shape, with correct heights, sizes and parent pointers,
+     * in a single O(n) pass over the values. No rebalancing is needed.
+     * 
+     * @param sorted an iterator yielding at least n values in strictly increasing order
+     * @param n the number of values to take from sorted
+     * @return a new AVL tree containing the first n values of sorted
+     * @throws IllegalArgumentException if sorted has fewer than n values, or if
+     *         the values are not strictly increasing
+     */
+    public static <E extends Comparable<E>> AVLTree<E> fromSorted(Iterator<? extends E> sorted, int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n: " + n);
+        }
+        AVLTree<E> tree = new AVLTree<>();
+        tree.root = tree.buildBalanced(sorted, n, new Node<>(null));
+        tree.size = n;
+        tree.modCount++;
+        return tree;
+    }
+
+    /**
+     * Build a new tree directly from an array of values in strictly increasing order.
+     * 
+     * @param sorted the values, in strictly increasing order
+     * @return a new AVL tree containing the values of sorted
+     * @throws IllegalArgumentException if the values are not strictly increasing
+     * @see #fromSorted(Iterator, int)
+     */
+    public static <E extends Comparable<E>> AVLTree<E> fromSorted(E[] sorted) {
+        return fromSorted(Arrays.asList(sorted).iterator(), sorted.length);
+    }
+
+    /**
+     * Write the tree's values, in order, to a snapshot file.
+     * 
+     * @param path the file to (over)write
+     * @param codec the codec for the values
+     * @throws IOException if the file cannot be written
+     * @see SnapshotWriter
+     */
+    public void save(Path path, Codec<E> codec) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(path, 1, size)) {
+            for (E e : this) {
+                out.write(e, codec);
+            }
+        }
+    }
+
+    /**
+     * Load a tree from a snapshot file written by save(), in O(n) time: the
+     * values are decoded as they are streamed from the file straight into
+     * fromSorted().
+     * 
+     * @param path the snapshot file
+     * @param codec the codec for the values
+     * @return a new AVL tree containing the values in the snapshot
+     * @throws IOException if the file cannot be read, or is not a valid snapshot of a tree
+     */
+    public static <E extends Comparable<E>> AVLTree<E> load(Path path, Codec<E> codec) throws IOException {
+        try (SnapshotReader in = new SnapshotReader(path)) {
+            if (in.fields() != 1 || in.count() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not a snapshot of a tree");
+            }
+            Iterator<E> values = new Iterator<E>() {
+                @Override
+                public boolean hasNext() {
+                    return in.hasNext();
+                }
+
+                @Override
+                public E next() {
+                    try {
+                        E e = in.read(codec);
+                        in.endEntry();
+                        return e;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            try {
+                return fromSorted(values, (int) in.count());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * The recursive helper method for fromSorted(): builds a balanced subtree
+     * from the next n values of sorted, consuming them in order.
+     * 
+     * The left subtree gets the lower half (rounded down) of the values, matching
+     * the shape produced by picking the middle element of a sorted list.
+     * @param sorted
+     * @param n the number of values in the subtree
+     * @param last holds (in its data field) the last value consumed, for checking the order
+     * @return the root of the new subtree, or null if n is 0
+     */
+    private Node<E> buildBalanced(Iterator<? extends E> sorted, int n, Node<E> last) {
+        if (n == 0) {
+            return null;
+        }
+        int leftSize = (n - 1) / 2;
+        Node<E> left = buildBalanced(sorted, leftSize, last);
+
+        if (!sorted.hasNext()) {
+            throw new IllegalArgumentException("fewer values than expected");
+        }
+        E e = sorted.next();
+        if (last.data != null && last.data.compareTo(e) >= 0) {
+            throw new IllegalArgumentException("values are not strictly increasing: " + last.data + ", " + e);
+        }
+        last.data = e;
+
+        Node<E> node = new Node<>(e);
+        Node<E> right = buildBalanced(sorted, n - leftSize - 1, last);
+        node.left = left;
+        node.right = right;
+        if (left != null) {
+            left.parent = node;
+        }
+        if (right != null) {
+            right.parent = node;
+        }
+        update(node);
+        return node;
+    }
 
     /**
      * Return the size of (number of elements stored in) the tree.
@@ -19,32 +185,96 @@ public class AVLTree<E extends Comparable<E>> implements Iterable<E> {
         return size;
     }
 
+    /**
+     * Start counting the work this tree does, if it isn't already.
+     * 
+     * Without metrics, each operation pays only for checking that they're off.
+     * @return the tree's metrics
+     */
+    public AVLTreeMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new AVLTreeMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Stop counting the work this tree does.
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * @return the tree's metrics, or null if they aren't enabled
+     */
+    public AVLTreeMetrics metrics() {
+        return metrics;
+    }
+
     /**
      * Return the height of a subtree rooted at a given node; empty trees (that is,
      * when the node is null) are defined to have a height of -1.
+     * 
+     * Heights are cached in the nodes, so this is O(1).
      * @param n a node
      * @return the height of the subtree rooted at n
      */
     private int height(Node<E> n) {
-        if (n == null) return -1;
-        return 1 + Math.max(height(n.left), height(n.right));
+        return (n == null) ? -1 : n.height;
     }
 
     /**
-     * Return true iff the node n is a valid AVL tree node, that is, if it
-     * is "balanced" according to the AVL property. In other words, the heights
-     * of its left and right subtrees differ by no more than 1.
-     * @param n
-     * @return
-     */
-    private boolean isAVL(Node<E> n) {
-    if (n == null) return true;
-    int hl = height(n.left);
-    int hr = height(n.right);
-    if (Math.abs(hl - hr) > 1) return false;
-    return isAVL(n.left) && isAVL(n.right);
-}
+     * Return the number of nodes in the subtree rooted at n, in O(1) time.
+     * @param n a node
+     * @return the size of the subtree rooted at n
+     */
+    private int size(Node<E> n) {
+        return (n == null) ? 0 : n.size;
+    }
+
+    /**
+     * Recompute the cached height and size (and hash, if kept) of n from
+     * those of its children.
+     * @param n a (non-null) node
+     */
+    private void update(Node<E> n) {
+        n.height = 1 + Math.max(height(n.left), height(n.right));
+        n.size = 1 + size(n.left) + size(n.right);
+        if (hasher != null) {
+            n.hash = mix(n.data) + hash(n.left) + hash(n.right);
+        }
+    }
+
+    /**
+     * @param n a node
+     * @return the cached hash of the subtree rooted at n
+     */
+    private static long hash(Node<?> n) {
+        return (n == null) ? 0 : n.hash;
+    }
+
+    /**
+     * Spread the hasher's hash of e over 64 bits (with the finalizer of
+     * SplitMix64), so that sums of these hashes rarely collide.
+     */
+    private long mix(E e) {
+        long z = hasher.applyAsLong(e) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 
+    /**
+     * Return the balance factor of n, that is, the height of its left subtree
+     * minus the height of its right subtree. n has the AVL property iff the
+     * balance factor is -1, 0 or 1.
+     * @param n a (non-null) node
+     * @return the balance factor of n
+     */
+    private int balance(Node<E> n) {
+        return height(n.left) - height(n.right);
+    }
 
     /**
      * Return true iff the tree contains the value e.
@@ -52,45 +282,258 @@ public class AVLTree<E extends Comparable<E>> implements Iterable<E> {
      * @return true iff the tree contains the value e
      */
     public boolean contains(E e) {
-        return find(e) != null;
+        AVLTreeMetrics m = metrics;
+        if (m == null) {
+            return find(e) != null;
+        }
+        long start = System.nanoTime();
+        boolean found = find(e) != null;
+        m.recordLookup(System.nanoTime() - start);
+        return found;
+    }
+
+    /**
+     * Walk down from the root to find and return the node containing a value
+     * equals() to e, or null if not found.
+     * @param e
+     * @return the node containing a value equals() to e contained in the tree, or null if no such value is found
+     */
+    private Node<E> find(E e) {
+        if (metrics != null) {
+            return findCounting(e);
+        }
+        Node<E> n = root;
+        while (n != null && !e.equals(n.data)) {
+            n = (e.compareTo(n.data) < 0) ? n.left : n.right;
+        }
+        return n;
+    }
+
+    /**
+     * find(), recording the length of the search path and the number of
+     * comparisons made along it in the tree's metrics.
+     */
+    private Node<E> findCounting(E e) {
+        int visited = 0;
+        int comparisons = 0;
+        Node<E> n = root;
+        while (n != null) {
+            visited++;
+            comparisons++;
+            if (e.equals(n.data)) {
+                break;
+            }
+            comparisons++;
+            n = (e.compareTo(n.data) < 0) ? n.left : n.right;
+        }
+        metrics.recordLookupPath(visited, comparisons);
+        return n;
+    }
+
+    /**
+     * @param e
+     * @return the value equals() to e contained in the tree, or null if no such value is found
+     */
+    public E get(E e) {
+        AVLTreeMetrics m = metrics;
+        if (m == null) {
+            Node<E> n = find(e);
+            return (n == null) ? null : n.data;
+        }
+        long start = System.nanoTime();
+        Node<E> n = find(e);
+        m.recordLookup(System.nanoTime() - start);
+        return (n == null) ? null : n.data;
+    }
+
+    /**
+     * Return the k-th smallest value in the tree, counting from 0.
+     * 
+     * Runs in O(log n) time, using the subtree sizes cached in the nodes.
+     * @param k the rank of the value to return
+     * @return the value with exactly k smaller values in the tree
+     * @throws IndexOutOfBoundsException if k is not in [0, size())
+     */
+    public E select(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("k: " + k + ", size: " + size);
+        }
+        return nodeAt(k).data;
+    }
+
+    /**
+     * @param k a rank in [0, size())
+     * @return the node holding the k-th smallest value in the tree
+     */
+    private Node<E> nodeAt(int k) {
+        Node<E> n = root;
+        while (true) {
+            int leftSize = size(n.left);
+            if (k < leftSize) {
+                n = n.left;
+            } else if (k > leftSize) {
+                k -= leftSize + 1;
+                n = n.right;
+            } else {
+                return n;
+            }
+        }
+    }
+
+    /**
+     * Return the number of values in the tree that are strictly less than e.
+     * e need not be in the tree.
+     * 
+     * Runs in O(log n) time, using the subtree sizes cached in the nodes.
+     * @param e
+     * @return the number of values in the tree less than e
+     */
+    public int rank(E e) {
+        int rank = 0;
+        Node<E> n = root;
+        while (n != null) {
+            int cmp = e.compareTo(n.data);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                rank += size(n.left) + 1;
+                n = n.right;
+            } else {
+                return rank + size(n.left);
+            }
+        }
+        return rank;
     }
 
     /**
-     * Helper method for find().
+     * Return the number of values v in the tree such that lo <= v < hi.
      * 
-     * Recursively walk the BST rooted at n to find and return the node,
-     * containing a value equals() to e, or null if not found.
-     * @return the node containing the value equals to e if it's in the tree rooted at n, null otherwise
+     * Runs in O(log n) time.
+     * @param lo the inclusive lower bound
+     * @param hi the exclusive upper bound
+     * @return the number of values in the tree in the range [lo, hi)
+     */
+    public int countInRange(E lo, E hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * @return the smallest value in the tree, or null if the tree is empty
+     */
+    public E first() {
+        Node<E> n = firstNode();
+        return (n == null) ? null : n.data;
+    }
+
+    /**
+     * @return the node holding the smallest value in the tree, or null if the tree is empty
      */
-    private Node<E> find(E e, Node<E> n) {
+    private Node<E> firstNode() {
+        Node<E> n = root;
         if (n == null) {
             return null;
-        } else if (e.equals(n.data)) {
-            return n;
-        } else if (e.compareTo(n.data) < 0) { // left
-            return find(e, n.left);
-        } else {  // right
-            return find(e, n.right);
         }
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n;
+    }
+
+    /**
+     * @return the largest value in the tree, or null if the tree is empty
+     */
+    public E last() {
+        Node<E> n = root;
+        if (n == null) {
+            return null;
+        }
+        while (n.right != null) {
+            n = n.right;
+        }
+        return n.data;
     }
-    
+
     /**
      * @param e
-     * @return the node containing a value equals() to e contained in the tree, or null if no such value is found
+     * @return the largest value in the tree less than or equal to e, or null if there is none
      */
-    private Node<E> find(E e) {
-        return find(e, root);
+    public E floor(E e) {
+        Node<E> n = floorNode(e, true);
+        return (n == null) ? null : n.data;
     }
 
     /**
      * @param e
-     * @return the value equals() to e contained in the tree, or null if no such value is found
+     * @return the largest value in the tree strictly less than e, or null if there is none
      */
-    public E get(E e) {
-        Node<E> n = find(e);
+    public E lower(E e) {
+        Node<E> n = floorNode(e, false);
+        return (n == null) ? null : n.data;
+    }
+
+    /**
+     * @param e
+     * @return the smallest value in the tree greater than or equal to e, or null if there is none
+     */
+    public E ceiling(E e) {
+        Node<E> n = ceilingNode(e, true);
+        return (n == null) ? null : n.data;
+    }
+
+    /**
+     * @param e
+     * @return the smallest value in the tree strictly greater than e, or null if there is none
+     */
+    public E higher(E e) {
+        Node<E> n = ceilingNode(e, false);
         return (n == null) ? null : n.data;
     }
 
+    /**
+     * Return the node holding the largest value less than e (or equal to e,
+     * if inclusive), or null if there is none, in O(log n) time.
+     */
+    private Node<E> floorNode(E e, boolean inclusive) {
+        Node<E> best = null;
+        Node<E> n = root;
+        while (n != null) {
+            int cmp = e.compareTo(n.data);
+            if (cmp == 0 && inclusive) {
+                return n;
+            } else if (cmp > 0) {
+                best = n;
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the node holding the smallest value greater than e (or equal to e,
+     * if inclusive), or null if there is none, in O(log n) time.
+     */
+    private Node<E> ceilingNode(E e, boolean inclusive) {
+        Node<E> best = null;
+        Node<E> n = root;
+        while (n != null) {
+            int cmp = e.compareTo(n.data);
+            if (cmp == 0 && inclusive) {
+                return n;
+            } else if (cmp < 0) {
+                best = n;
+                n = n.left;
+            } else {
+                n = n.right;
+            }
+        }
+        return best;
+    }
+
     /**
      * Add e to the tree.
      * 
@@ -98,39 +541,54 @@ public class AVLTree<E extends Comparable<E>> implements Iterable<E> {
      * @param e
      */
     public void add(E e) {
-        if (root == null) {
-            root = new Node<>(e);
-            size = 1;
+        AVLTreeMetrics m = metrics;
+        if (m == null) {
+            insert(e);
             return;
         }
-        add(e, root);
+        long start = System.nanoTime();
+        insert(e);
+        m.recordAdd(System.nanoTime() - start);
     }
 
     /**
-     * The recursive helper method for add(E e).
+     * Walk down from the root to where e belongs, and either overwrite the
+     * value there or hang a new leaf holding e, then rebalance.
      * @param e
-     * @param node
-     */
-    private void add(E e, Node<E> node) {
-        if (e.equals(node.data)) {
-            node.data = e;
-        }  else if (e.compareTo(node.data) < 0) {
-            if (node.left == null) {
-                node.left = new Node<>(e, node);
-                size++;
-                insertionCheck(node.left);
-                return;
-            } else {
-                add(e, node.left);
+     */
+    private void insert(E e) {
+        if (root == null) {
+            root = new Node<>(e);
+            if (hasher != null) {
+                root.hash = mix(e);
             }
-        } else {
-            if (node.right == null) {
-                node.right = new Node<>(e, node);
-                size++;
-                insertionCheck(node.right);
+            size = 1;
+            modCount++;
+            return;
+        }
+        Node<E> node = root;
+        while (true) {
+            if (e.equals(node.data)) {
+                node.data = e;
                 return;
+            } else if (e.compareTo(node.data) < 0) {
+                if (node.left == null) {
+                    node.left = new Node<>(e, node);
+                    size++;
+                    modCount++;
+                    insertionCheck(node.left);
+                    return;
+                }
+                node = node.left;
             } else {
-                add(e, node.right);
+                if (node.right == null) {
+                    node.right = new Node<>(e, node);
+                    size++;
+                    modCount++;
+                    insertionCheck(node.right);
+                    return;
+                }
+                node = node.right;
             }
         }
     }
@@ -139,46 +597,35 @@ public class AVLTree<E extends Comparable<E>> implements Iterable<E> {
      * Check that the AVL property has not been broken after node's insertion.
      * If it has, then perform the rotation needed to restore it.
      *
-     * Works by traversting "up" through the parent pointers, keeping track of whether
-     * each node is the left or right (L or R) child, so that when a node with an
-     * invalid balance factor (that is !isAVL()) is found, the correct rotations can
-     * be performed to fix the tree.
+     * Works by traversing "up" through the parent pointers, refreshing each
+     * ancestor's cached height and size. Once an ancestor's height is unchanged,
+     * or after the first rotation (which restores the subtree to its
+     * pre-insertion height), no height above it can change, so the rest of the
+     * walk only has to count the new node in each ancestor's size.
      *
-     * @param node
+     * @param node the newly inserted (leaf) node
      */
     private void insertionCheck(Node<E> node) {
-        Node<E> n = node;
-        String path = "";
-        while (true) {
-            if (!isAVL(n)) {
-                // rotate (and be done, if this is insertion)
-                String rot = path.substring(0, 2);
-                if (rot.equals("LL")) {
-                    rotateRight(n);
-                } else if (rot.equals("RR")) {
-                    rotateLeft(n);
-                } else if (rot.equals("LR")) {
-                    rotateLeft(n.left);
-                    rotateRight(n);
-                } else if (rot.equals("RL")) {
-                    rotateRight(n.right);
-                    rotateLeft(n);
-                } else {
-                    // should never get here!
-                    throw new IllegalStateException();
-                }
-                break; // if insertion, you're done after one fix
-            } else if (n != root) {
-                if (n == n.parent.left) {
-                    path = "L" + path;
-                } else {
-                    path = "R" + path;
+        long added = (hasher != null) ? mix(node.data) : 0; // (node may be rotated upward, changing its hash)
+        node.hash = added;
+        Node<E> n = node.parent;
+        boolean done = false;
+        while (n != null) {
+            if (done) {
+                n.size++;
+                n.hash += added;
+            } else {
+                int oldHeight = n.height;
+                update(n);
+                int bf = balance(n);
+                if (bf > 1 || bf < -1) {
+                    n = rebalance(n);
+                    done = true; // if insertion, you're done after one fix
+                } else if (n.height == oldHeight) {
+                    done = true;
                 }
-                n = n.parent;
-            } else { // n was the root
-                // and so we're done
-                break;
             }
+            n = n.parent;
         }
     }
 
@@ -189,13 +636,30 @@ public class AVLTree<E extends Comparable<E>> implements Iterable<E> {
      * @param e the value to remove
      */
     public E remove(E e) {
-        Node<E> node = find(e);
-        if (node == null) {
-            return null;
+        AVLTreeMetrics m = metrics;
+        if (m == null) {
+            Node<E> node = find(e);
+            return (node == null) ? null : delete(node);
         }
+        long start = System.nanoTime();
+        Node<E> node = find(e);
+        E removed = (node == null) ? null : delete(node);
+        m.recordRemove(System.nanoTime() - start);
+        return removed;
+    }
 
+    /**
+     * Remove the given node's value from the tree, returning it.
+     * 
+     * If node has two children, node itself stays in the tree and takes over
+     * its in-order successor's value; the successor's node is removed instead.
+     * @param node a node in this tree
+     * @return the value removed
+     */
+    private E delete(Node<E> node) {
         E data = node.data;
         size--;
+        modCount++;
 
         // Case 1: Node has 0 or 1 child
         if (node.left == null || node.right == null) {
@@ -273,66 +737,64 @@ public class AVLTree<E extends Comparable<E>> implements Iterable<E> {
      * If it has, then perform the rotation needed to restore it.
      *
      * Unlike insertionCheck, this method continues checking up to the root
-     * because deletion can cause multiple imbalances along the path. Here,
-     * we demonstrate the alternate method of determining imbalance, by checking
-     * the left and right subtrees of a node with an imbalance, rather than tracking
-     * the path.
+     * because deletion can cause multiple imbalances along the path.
      *
-     * @param node
+     * @param node the parent of the node that was spliced out
      */
     private void deletionCheck(Node<E> node) {
         Node<E> n = node;
         while (n != null) {
-            if (!isAVL(n)) {
-                // Store the parent before rotation (rotation will change n's parent)
-                Node<E> parent = n.parent;
-
-                // Determine which case we're in based on heights, not path
-                int leftHeight = height(n.left);
-                int rightHeight = height(n.right);
-
-                if (leftHeight > rightHeight) {
-                    // Left subtree is taller - LL or LR case
-                    int leftLeftHeight = height(n.left.left);
-                    int leftRightHeight = height(n.left.right);
-
-                    if (leftLeftHeight >= leftRightHeight) {
-                        // LL case
-                        rotateRight(n);
-                    } else {
-                        // LR case
-                        rotateLeft(n.left);
-                        rotateRight(n);
-                    }
-                } else {
-                    // Right subtree is taller - RR or RL case
-                    int rightLeftHeight = height(n.right.left);
-                    int rightRightHeight = height(n.right.right);
-
-                    if (rightRightHeight >= rightLeftHeight) {
-                        // RR case
-                        rotateLeft(n);
-                    } else {
-                        // RL case
-                        rotateRight(n.right);
-                        rotateLeft(n);
-                    }
-                }
+            update(n);
+            int bf = balance(n);
+            if (bf > 1 || bf < -1) {
+                // rotation will change n's parent, so continue from the new subtree root
+                n = rebalance(n);
+            }
+            n = n.parent;
+        }
+    }
 
-                // After rotation, continue checking from the parent
-                n = parent;
-            } else {
-                // Node is balanced, move up to parent
-                n = n.parent;
+    /**
+     * Restore the AVL property at n, whose balance factor is +2 or -2 and whose
+     * children have correct cached heights.
+     *
+     * Determines which case we're in from the children's balance factors, rather
+     * than by tracking the path.
+     *
+     * @param n the unbalanced node
+     * @return the node now at the root of n's former subtree
+     */
+    private Node<E> rebalance(Node<E> n) {
+        if (balance(n) > 0) {
+            // Left subtree is taller - LL or LR case
+            boolean isDouble = balance(n.left) < 0;
+            if (isDouble) {
+                rotateLeft(n.left);
+            }
+            if (metrics != null) {
+                metrics.recordRotation(isDouble);
+            }
+            return rotateRight(n);
+        } else {
+            // Right subtree is taller - RR or RL case
+            boolean isDouble = balance(n.right) > 0;
+            if (isDouble) {
+                rotateRight(n.right);
+            }
+            if (metrics != null) {
+                metrics.recordRotation(isDouble);
             }
+            return rotateLeft(n);
         }
     }
 
     /**
-     * Perform a right rotation around n.
+     * Perform a right rotation around n, updating the cached heights and sizes of the
+     * two nodes that move.
      * @param n
+     * @return the new root of the rotated subtree
      */
-    private void rotateRight(Node<E> n) {
+    private Node<E> rotateRight(Node<E> n) {
         Node<E> A, B, T1, T2, T3, p; // p is B's parent ; note we never use T1 or T3!
 
         B = n;
@@ -364,13 +826,20 @@ public class AVLTree<E extends Comparable<E>> implements Iterable<E> {
         if (T2 != null) {
             T2.parent = B;
         }
+
+        // B is now below A, so it must be updated first
+        update(B);
+        update(A);
+        return A;
     }
 
     /**
-     * Perform a left rotation around n.
+     * Perform a left rotation around n, updating the cached heights and sizes of the
+     * two nodes that move.
      * @param n
+     * @return the new root of the rotated subtree
      */
-    private void rotateLeft(Node<E> n) {
+    private Node<E> rotateLeft(Node<E> n) {
         Node<E> B, C, T2, p;
 
         B = n;
@@ -397,19 +866,855 @@ public class AVLTree<E extends Comparable<E>> implements Iterable<E> {
         if (T2 != null) {
             T2.parent = B;
         }
+
+        update(B);
+        update(C);
+        return C;
     }
 
-    @Override
-    public Iterator<E> iterator() {
-        List<E> values = new ArrayList<>();
-        inOrder(root, values);
-        return values.iterator();
+    /**
+     * Make l and r the children of node, and refresh node's cached fields. node
+     * is left detached (with a null parent) for its caller to link in.
+     * @return node
+     */
+    private Node<E> attach(Node<E> l, Node<E> node, Node<E> r) {
+        node.left = l;
+        node.right = r;
+        node.parent = null;
+        if (l != null) {
+            l.parent = node;
+        }
+        if (r != null) {
+            r.parent = node;
+        }
+        update(node);
+        return node;
     }
 
-    private void inOrder(Node<E> node, List<E> result) {
-        if (node == null) return;
-        inOrder(node.left, result);
-        result.add(node.data);
-        inOrder(node.right, result);
+    /**
+     * Left rotation of a detached subtree.
+     * @return the new (detached) root of the subtree
+     */
+    private Node<E> rotateLeftDetached(Node<E> n) {
+        Node<E> c = n.right;
+        attach(n.left, n, c.left);
+        return attach(n, c, c.right);
+    }
+
+    /**
+     * Right rotation of a detached subtree.
+     * @return the new (detached) root of the subtree
+     */
+    private Node<E> rotateRightDetached(Node<E> n) {
+        Node<E> a = n.left;
+        attach(a.right, n, n.right);
+        return attach(a.left, a, n);
     }
-}
\ No newline at end of file
+
+    /**
+     * Join the subtrees l and r, whose heights may differ arbitrarily, using
+     * pivot as the node between them. Every value in l must be less than
+     * pivot's, and every value in r greater.
+     * 
+     * Runs in O(|height(l) - height(r)| + 1) time, and allocates nothing.
+     * @return the root of the joined (detached) subtree
+     */
+    private Node<E> join(Node<E> l, Node<E> pivot, Node<E> r) {
+        if (height(l) > height(r) + 1) {
+            return joinRight(l, pivot, r);
+        } else if (height(r) > height(l) + 1) {
+            return joinLeft(l, pivot, r);
+        } else {
+            return attach(l, pivot, r);
+        }
+    }
+
+    /**
+     * Helper for join() when l is the taller tree: walk down l's right spine
+     * until a subtree about as tall as r is found, attach there, and rebalance
+     * on the way back up.
+     */
+    private Node<E> joinRight(Node<E> l, Node<E> pivot, Node<E> r) {
+        Node<E> ll = l.left;
+        Node<E> c = l.right;
+        if (height(c) <= height(r) + 1) {
+            Node<E> t = attach(c, pivot, r);
+            if (height(t) <= height(ll) + 1) {
+                return attach(ll, l, t);
+            }
+            return rotateLeftDetached(attach(ll, l, rotateRightDetached(t)));
+        }
+        Node<E> t = joinRight(c, pivot, r);
+        attach(ll, l, t);
+        if (height(t) <= height(ll) + 1) {
+            return l;
+        }
+        return rotateLeftDetached(l);
+    }
+
+    /**
+     * Mirror image of joinRight(), for when r is the taller tree.
+     */
+    private Node<E> joinLeft(Node<E> l, Node<E> pivot, Node<E> r) {
+        Node<E> rr = r.right;
+        Node<E> c = r.left;
+        if (height(c) <= height(l) + 1) {
+            Node<E> t = attach(l, pivot, c);
+            if (height(t) <= height(rr) + 1) {
+                return attach(t, r, rr);
+            }
+            return rotateRightDetached(attach(rotateLeftDetached(t), r, rr));
+        }
+        Node<E> t = joinLeft(l, pivot, c);
+        attach(t, r, rr);
+        if (height(t) <= height(rr) + 1) {
+            return r;
+        }
+        return rotateRightDetached(r);
+    }
+
+    /**
+     * Join the subtrees l and r without a pivot, by taking the largest node
+     * of l out to use as one.
+     */
+    private Node<E> join2(Node<E> l, Node<E> r) {
+        if (l == null) {
+            return r;
+        }
+        Split<E> s = new Split<>();
+        splitLast(l, s);
+        return join(s.left, s.middle, r);
+    }
+
+    /**
+     * Detach the largest node of the subtree t; on return, s.left holds the
+     * remaining subtree and s.middle the detached node.
+     */
+    private void splitLast(Node<E> t, Split<E> s) {
+        if (t.right == null) {
+            s.left = t.left;
+            if (s.left != null) {
+                s.left.parent = null;
+            }
+            s.middle = attach(null, t, null);
+            return;
+        }
+        splitLast(t.right, s);
+        s.left = join(t.left, t, s.left);
+    }
+
+    /**
+     * The result of splitting a subtree around a value: the subtree of smaller
+     * values, the node holding the value itself (or null), and the subtree of
+     * larger values.
+     */
+    private static class Split<E> {
+        Node<E> left;
+        Node<E> middle;
+        Node<E> right;
+    }
+
+    /**
+     * Split the subtree t around e, writing the pieces into s. The nodes of
+     * t are reused, and t no longer exists as a subtree afterwards.
+     * 
+     * Runs in O(height(t)) time, since the joins on the way back up telescope.
+     */
+    private void split(Node<E> t, E e, Split<E> s) {
+        if (t == null) {
+            s.left = s.middle = s.right = null;
+            return;
+        }
+        Node<E> l = t.left;
+        Node<E> r = t.right;
+        if (l != null) {
+            l.parent = null;
+        }
+        if (r != null) {
+            r.parent = null;
+        }
+        int cmp = e.compareTo(t.data);
+        if (cmp == 0) {
+            s.left = l;
+            s.middle = attach(null, t, null);
+            s.right = r;
+        } else if (cmp < 0) {
+            split(l, e, s);
+            s.right = join(s.right, t, r);
+        } else {
+            split(r, e, s);
+            s.left = join(l, t, s.left);
+        }
+    }
+
+    /**
+     * Return a copy of the subtree rooted at n, including its cached fields.
+     */
+    private Node<E> copy(Node<E> n) {
+        if (n == null) {
+            return null;
+        }
+        Node<E> c = new Node<>(n.data);
+        c.left = copy(n.left);
+        c.right = copy(n.right);
+        if (c.left != null) {
+            c.left.parent = c;
+        }
+        if (c.right != null) {
+            c.right.parent = c;
+        }
+        c.height = n.height;
+        c.size = n.size;
+        if (hasher != null) {
+            c.hash = mix(c.data) + hash(c.left) + hash(c.right);
+        }
+        return c;
+    }
+
+    /**
+     * Replace the contents of this tree with the (detached) subtree t.
+     */
+    private void setRoot(Node<E> t) {
+        root = t;
+        size = size(t);
+        modCount++;
+    }
+
+    /**
+     * Join two trees around a pivot value. Every value in left must be less
+     * than pivot, and every value in right must be greater than pivot.
+     * 
+     * Runs in O(|height(left) - height(right)| + 1) time. The nodes of left and
+     * right are reused, and both trees are left empty.
+     * @param left
+     * @param pivot
+     * @param right
+     * @return a new tree holding the values of left, pivot and the values of right
+     * @throws IllegalArgumentException if the values are not ordered as required
+     */
+    public static <E extends Comparable<E>> AVLTree<E> join(AVLTree<E> left, E pivot, AVLTree<E> right) {
+        if ((left.root != null && left.select(left.size - 1).compareTo(pivot) >= 0)
+                || (right.root != null && right.select(0).compareTo(pivot) <= 0)) {
+            throw new IllegalArgumentException("values are not ordered around the pivot " + pivot);
+        }
+        AVLTree<E> tree = new AVLTree<>();
+        tree.hasher = (left.hasher == right.hasher) ? left.hasher : null;
+        tree.setRoot(tree.join(left.root, new Node<>(pivot), right.root));
+        left.setRoot(null);
+        right.setRoot(null);
+        return tree;
+    }
+
+    /**
+     * Split this tree around e. Afterwards, this tree holds only the values
+     * less than e, and the returned tree holds the values greater than or
+     * equal to e.
+     * 
+     * Runs in O(log n) time; nodes are moved, not copied.
+     * @param e
+     * @return a new tree holding the values of this tree that are greater than or equal to e
+     */
+    public AVLTree<E> split(E e) {
+        Split<E> s = new Split<>();
+        split(root, e, s);
+        AVLTree<E> upper = new AVLTree<>();
+        upper.hasher = hasher;
+        upper.setRoot(s.middle == null ? s.right : join(null, s.middle, s.right));
+        setRoot(s.left);
+        return upper;
+    }
+
+    /**
+     * Add every value of other to this tree (set union). Where both trees hold
+     * equal values, the value already in this tree is kept.
+     * 
+     * Works by splitting and joining subtrees rather than adding values one at
+     * a time, so merging m values into a tree of n >= m values costs
+     * O(m log(n/m + 1)), plus O(m) to copy other, which is left unchanged.
+     * Large merges run their independent subproblems in parallel.
+     * @param other
+     */
+    public void addAll(AVLTree<E> other) {
+        setRoot(union(root, copy(other.root)));
+    }
+
+    /**
+     * Remove every value from this tree that is not in other (set intersection).
+     * 
+     * Costs O(m log(n/m + 1)), plus O(m) to copy other, which is left unchanged.
+     * @param other
+     * @see #addAll(AVLTree)
+     */
+    public void retainAll(AVLTree<E> other) {
+        setRoot(intersection(root, copy(other.root)));
+    }
+
+    /**
+     * Remove every value in other from this tree (set difference).
+     * 
+     * Costs O(m log(n/m + 1)), plus O(m) to copy other, which is left unchanged.
+     * @param other
+     * @see #addAll(AVLTree)
+     */
+    public void removeAll(AVLTree<E> other) {
+        setRoot(difference(root, copy(other.root)));
+    }
+
+    /**
+     * Start keeping a hash of each subtree's values in its root node, using
+     * the values' hash codes, if the tree doesn't already keep hashes.
+     * 
+     * hashCode() has only 32 bits, and values with equal hash codes (such as
+     * "Aa" and "BB") can't be told apart by their hashes; trees that should
+     * be compared by hash alone should use enableHashing(ToLongFunction).
+     * @see #enableHashing(ToLongFunction)
+     */
+    public void enableHashing() {
+        if (hasher == null) {
+            enableHashing(HASH_CODE);
+        }
+    }
+
+    /**
+     * Start keeping a hash of each subtree's values in its root node, so that
+     * contentEquals() and diff() can skip over the parts of two trees that
+     * hold the same values.
+     * 
+     * A subtree's hash is the sum of a 64-bit mix of its values' hashes, as
+     * computed by hasher. A sum does not depend on the tree's shape, so two
+     * trees holding the same values have the same hashes whatever order the
+     * values were added in. The hashes are kept the way the sizes are, in
+     * O(1) per node already visited by each change; enabling them (or
+     * changing the hasher) costs one O(n) pass.
+     * 
+     * Trees are only compared by hash if they use the same hasher object, and
+     * values that hasher maps to the same 64 bits can't be told apart.
+     * @param hasher a function from each value to a 64-bit hash, consistent with equals()
+     */
+    public void enableHashing(ToLongFunction<? super E> hasher) {
+        Objects.requireNonNull(hasher);
+        if (this.hasher == hasher) {
+            return;
+        }
+        this.hasher = hasher;
+        rehash(root);
+    }
+
+    /**
+     * Recompute the hashes of the subtree rooted at n. The recursion is as
+     * deep as the tree is tall.
+     */
+    private void rehash(Node<E> n) {
+        if (n == null) {
+            return;
+        }
+        rehash(n.left);
+        rehash(n.right);
+        n.hash = mix(n.data) + hash(n.left) + hash(n.right);
+    }
+
+    /**
+     * @return true iff this tree keeps subtree hashes
+     * @see #enableHashing()
+     */
+    public boolean isHashing() {
+        return hasher != null;
+    }
+
+    /**
+     * Return a hash of the tree's values that doesn't depend on its shape.
+     * 
+     * Runs in O(1) time.
+     * @return the sum of the mixed hashes of the tree's values
+     * @throws IllegalStateException if the tree doesn't keep hashes
+     */
+    public long contentHash() {
+        if (hasher == null) {
+            throw new IllegalStateException("hashing is not enabled");
+        }
+        return hash(root);
+    }
+
+    /**
+     * @return true iff this tree and other keep hashes computed by the same hasher
+     */
+    private boolean sameHasher(AVLTree<E> other) {
+        return hasher != null && hasher == other.hasher;
+    }
+
+    /**
+     * Return true iff this tree and other hold equal values.
+     * 
+     * If both trees keep hashes with the same hasher, trees whose sizes or
+     * content hashes differ are told apart in O(1) time. Trees that might be
+     * equal have their values compared one by one, in O(n) time.
+     * @param other
+     * @return true iff this tree and other hold equal values
+     * @see #probablyContentEquals(AVLTree)
+     */
+    public boolean contentEquals(AVLTree<E> other) {
+        if (size != other.size) {
+            return false;
+        }
+        if (sameHasher(other) && hash(root) != hash(other.root)) {
+            return false;
+        }
+        Iterator<E> it = other.iterator();
+        for (E e : this) {
+            if (!e.equals(it.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return true iff this tree and other have the same size and content
+     * hash, in O(1) time.
+     * 
+     * Trees whose values differ are reported equal only if the hashes of
+     * their values happen to sum to the same 64 bits: vanishingly unlikely
+     * for a well-spread 64-bit hasher, but certain if the trees differ only
+     * by values with equal hashes. Use contentEquals() where that matters.
+     * @param other
+     * @return true iff this tree and other (very probably) hold equal values
+     * @throws IllegalStateException if the trees don't keep hashes with the same hasher
+     */
+    public boolean probablyContentEquals(AVLTree<E> other) {
+        if (!sameHasher(other)) {
+            throw new IllegalStateException("the trees don't keep hashes with the same hasher");
+        }
+        return size == other.size && hash(root) == hash(other.root);
+    }
+
+    /**
+     * The values held by only one of two trees.
+     * @see AVLTree#diff(AVLTree)
+     */
+    public static final class Diff<E> {
+        private final List<E> onlyInThis = new ArrayList<>();
+        private final List<E> onlyInOther = new ArrayList<>();
+
+        /**
+         * @return the values held by the tree diff() was called on, but not by
+         *         the other tree, in ascending order
+         */
+        public List<E> onlyInThis() {
+            return onlyInThis;
+        }
+
+        /**
+         * @return the values held by the other tree, but not by the tree diff()
+         *         was called on, in ascending order
+         */
+        public List<E> onlyInOther() {
+            return onlyInOther;
+        }
+
+        /**
+         * @return true iff the trees hold equal values
+         */
+        public boolean isEmpty() {
+            return onlyInThis.isEmpty() && onlyInOther.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Diff [onlyInThis=" + onlyInThis + ", onlyInOther=" + onlyInOther + "]";
+        }
+    }
+
+    /**
+     * Return the values held by only one of this tree and other.
+     * 
+     * Walks down this tree, comparing each subtree's hash with the hash of
+     * the values in other in the same range of values (found in O(log n)
+     * time), and skips every subtree whose hashes match. So two trees that
+     * differ in d values are compared in about O(d log^2 n) time, however
+     * differently they're shaped, rather than O(n). (As with
+     * probablyContentEquals(), differences between values with equal hashes
+     * may go unnoticed, so the trees should use a 64-bit hasher.)
+     * @param other
+     * @return the values held by only one of the trees
+     * @throws IllegalStateException if the trees don't keep hashes with the same hasher
+     */
+    public Diff<E> diff(AVLTree<E> other) {
+        if (!sameHasher(other)) {
+            throw new IllegalStateException("the trees don't keep hashes with the same hasher");
+        }
+        Diff<E> diff = new Diff<>();
+        diff(root, null, null, other, diff);
+        return diff;
+    }
+
+    /**
+     * Add the differences between the subtree n, which holds exactly the
+     * values of this tree strictly between lo and hi (null for no bound), and
+     * the values of other in the same range.
+     */
+    private void diff(Node<E> n, E lo, E hi, AVLTree<E> other, Diff<E> diff) {
+        int otherSize = other.prefixSize(hi, false) - other.prefixSize(lo, true);
+        if (size(n) == otherSize && hash(n) == other.prefixHash(hi, false) - other.prefixHash(lo, true)) {
+            return;
+        }
+        if (n == null) {
+            Node<E> m = (lo == null) ? other.firstNode() : other.ceilingNode(lo, false);
+            for (; m != null && (hi == null || m.data.compareTo(hi) < 0); m = successor(m)) {
+                diff.onlyInOther.add(m.data);
+            }
+            return;
+        }
+        if (otherSize == 0) {
+            for (Node<E> m = leftmost(n), end = successor(rightmost(n)); m != end; m = successor(m)) {
+                diff.onlyInThis.add(m.data);
+            }
+            return;
+        }
+        diff(n.left, lo, n.data, other, diff);
+        if (other.find(n.data) == null) {
+            diff.onlyInThis.add(n.data);
+        }
+        diff(n.right, n.data, hi, other, diff);
+    }
+
+    /**
+     * Return the number of values in the tree less than (or equal to, if
+     * inclusive) e; if e is null, the number less than no bound: 0 if
+     * inclusive (for a lower bound), or the size of the tree if not.
+     */
+    private int prefixSize(E e, boolean inclusive) {
+        if (e == null) {
+            return inclusive ? 0 : size;
+        }
+        int count = 0;
+        Node<E> n = root;
+        while (n != null) {
+            int cmp = e.compareTo(n.data);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0 || inclusive) {
+                count += size(n.left) + 1;
+                if (cmp == 0) {
+                    break;
+                }
+                n = n.right;
+            } else {
+                count += size(n.left);
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the sum of the hashes of the values that prefixSize() counts.
+     */
+    private long prefixHash(E e, boolean inclusive) {
+        if (e == null) {
+            return inclusive ? 0 : hash(root);
+        }
+        long sum = 0;
+        Node<E> n = root;
+        while (n != null) {
+            int cmp = e.compareTo(n.data);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0 || inclusive) {
+                sum += hash(n.left) + mix(n.data);
+                if (cmp == 0) {
+                    break;
+                }
+                n = n.right;
+            } else {
+                sum += hash(n.left);
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static <E> Node<E> leftmost(Node<E> n) {
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n;
+    }
+
+    private static <E> Node<E> rightmost(Node<E> n) {
+        while (n.right != null) {
+            n = n.right;
+        }
+        return n;
+    }
+
+    private Node<E> union(Node<E> t1, Node<E> t2) {
+        if (t1 == null) {
+            return t2;
+        } else if (t2 == null) {
+            return t1;
+        }
+        Split<E> s = new Split<>();
+        split(t2, t1.data, s);
+        Node<E> l1 = t1.left, r1 = t1.right, l2 = s.left, r2 = s.right;
+        Node<E>[] halves = both(size(t1) + size(t2),
+                () -> union(l1, l2),
+                () -> union(r1, r2));
+        return join(halves[0], t1, halves[1]);
+    }
+
+    private Node<E> intersection(Node<E> t1, Node<E> t2) {
+        if (t1 == null || t2 == null) {
+            return null;
+        }
+        Split<E> s = new Split<>();
+        split(t2, t1.data, s);
+        Node<E> l1 = t1.left, r1 = t1.right, l2 = s.left, r2 = s.right;
+        Node<E>[] halves = both(size(t1) + size(t2),
+                () -> intersection(l1, l2),
+                () -> intersection(r1, r2));
+        if (s.middle != null) {
+            return join(halves[0], t1, halves[1]);
+        }
+        return join2(halves[0], halves[1]);
+    }
+
+    private Node<E> difference(Node<E> t1, Node<E> t2) {
+        if (t1 == null || t2 == null) {
+            return t1;
+        }
+        Split<E> s = new Split<>();
+        split(t1, t2.data, s);
+        Node<E> l1 = s.left, r1 = s.right, l2 = t2.left, r2 = t2.right;
+        Node<E>[] halves = both(size(t1) + size(t2),
+                () -> difference(l1, l2),
+                () -> difference(r1, r2));
+        return join2(halves[0], halves[1]);
+    }
+
+    /**
+     * Compute two independent subtrees, forking the first onto the common
+     * ForkJoinPool when the work is large enough to be worth it. The
+     * subproblems touch disjoint sets of nodes, so no locking is needed.
+     * @param work the combined size of the subtrees involved
+     * @return the results of left and right, in that order
+     */
+    @SuppressWarnings("unchecked")
+    private Node<E>[] both(int work, Supplier<Node<E>> left, Supplier<Node<E>> right) {
+        Node<E>[] results = new Node[2];
+        if (work > PARALLEL_THRESHOLD) {
+            ForkJoinTask<Node<E>> l = ForkJoinTask.adapt(left::get).fork();
+            results[1] = right.get();
+            results[0] = l.join();
+        } else {
+            results[0] = left.get();
+            results[1] = right.get();
+        }
+        return results;
+    }
+
+    /**
+     * Return the in-order successor of n, or null if n holds the largest value.
+     * @param n a (non-null) node
+     * @return the node following n in an in-order traversal
+     */
+    private static <E> Node<E> successor(Node<E> n) {
+        if (n.right != null) {
+            n = n.right;
+            while (n.left != null) {
+                n = n.left;
+            }
+            return n;
+        }
+        Node<E> p = n.parent;
+        while (p != null && n == p.right) {
+            n = p;
+            p = p.parent;
+        }
+        return p;
+    }
+
+    /**
+     * Return an iterator over the values of the tree in ascending order.
+     * 
+     * The iterator walks the tree through its parent pointers, so it uses
+     * O(1) extra memory and next() runs in O(1) amortized time. It supports
+     * remove(), and fails fast with a ConcurrentModificationException if the
+     * tree is structurally modified other than through the iterator.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new InOrderIterator(firstNode(), null);
+    }
+
+    /**
+     * Return an iterator over the values v of the tree such that from <= v < to,
+     * in ascending order. A null bound leaves that end of the range unbounded.
+     * 
+     * Finding the first value takes O(log n) time; the iterator otherwise
+     * behaves as the one returned by iterator().
+     * @param from the inclusive lower bound of the iteration, or null
+     * @param to the exclusive upper bound of the iteration, or null
+     * @return an iterator over the values of the tree in the range [from, to)
+     */
+    public Iterator<E> iterator(E from, E to) {
+        Node<E> first = (from == null) ? firstNode() : ceilingNode(from, true);
+        return new InOrderIterator(first, to);
+    }
+
+    /**
+     * Return a spliterator over the values of the tree in ascending order.
+     * 
+     * The spliterator covers a range of ranks, and splits it at the middle
+     * rank, so a parallel stream divides the tree into halves (each of
+     * exactly known size) without copying it. Finding the node at which a
+     * part starts takes O(log n) time; from there, values are visited through
+     * the parent pointers, as by the iterator. It fails fast, like the
+     * iterator, if the tree is structurally modified.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new InOrderSpliterator(0, size, modCount);
+    }
+
+    /**
+     * @return a sequential stream of the values of the tree, in ascending order
+     */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream of the values of the tree, in ascending order
+     * @see #spliterator()
+     */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    private class InOrderSpliterator implements Spliterator<E> {
+        int index; // rank of the next value
+        final int fence; // rank after the last value
+        Node<E> next; // the node of rank index, or null if not found yet
+        final int expectedModCount;
+
+        InOrderSpliterator(int index, int fence, int expectedModCount) {
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            InOrderSpliterator prefix = new InOrderSpliterator(index, mid, expectedModCount);
+            prefix.next = next;
+            index = mid;
+            next = null;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if (index >= fence) {
+                return false;
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Node<E> n = (next == null) ? nodeAt(index) : next;
+            next = successor(n);
+            index++;
+            action.accept(n.data);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            if (index >= fence) {
+                return;
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Node<E> n = (next == null) ? nodeAt(index) : next;
+            int remaining = fence - index;
+            index = fence;
+            next = null;
+            for (; remaining > 0; remaining--) {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                action.accept(n.data);
+                n = successor(n);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return null; // natural order
+        }
+    }
+
+    private class InOrderIterator implements Iterator<E> {
+        Node<E> next;
+        Node<E> lastReturned;
+        final E fence; // exclusive upper bound of the iteration, or null
+        int expectedModCount = modCount;
+
+        InOrderIterator(Node<E> first, E fence) {
+            this.next = first;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null && (fence == null || next.data.compareTo(fence) < 0);
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            lastReturned = next;
+            next = successor(next);
+            return lastReturned.data;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // a node with two children is kept and takes its successor's
+            // value, so that node is the one to visit next
+            if (lastReturned.left != null && lastReturned.right != null) {
+                next = lastReturned;
+            }
+            delete(lastReturned);
+            expectedModCount = modCount;
+            lastReturned = null;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters describing the work an AVLTree does: comparisons and search path
+ * lengths per lookup, rotations, and the latencies of add, remove and the
+ * lookups (contains and get).
+ *
+ * A tree only counts while its metrics are enabled (see
+ * AVLTree.enableMetrics()); a tree without metrics does no extra work beyond
+ * one null check per operation. The counters are LongAdders, so they can be
+ * read, through snapshot() or over JMX, while the tree is in use.
+ */
+public final class AVLTreeMetrics implements AVLTreeMetricsMBean {
+    /**
+     * Lookups visiting more nodes than this are counted in the last bucket of
+     * the path length histogram. (No AVL tree with fewer than 2^31 nodes is
+     * this tall.)
+     */
+    static final int MAX_PATH_LENGTH = 64;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder pathLengths = new LongAdder();
+    private final LongAdder[] pathLengthHistogram = new LongAdder[MAX_PATH_LENGTH + 1];
+    private final LongAdder singleRotations = new LongAdder();
+    private final LongAdder doubleRotations = new LongAdder();
+    private final Latency add = new Latency();
+    private final Latency remove = new Latency();
+    private final Latency lookup = new Latency();
+
+    /**
+     * The count, total time and longest time of one kind of operation.
+     */
+    private static final class Latency {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+            max.accumulate(elapsed);
+        }
+
+        double mean() {
+            long c = count.sum();
+            return (c == 0) ? 0 : (double) nanos.sum() / c;
+        }
+
+        void reset() {
+            count.reset();
+            nanos.reset();
+            max.reset();
+        }
+    }
+
+    AVLTreeMetrics() {
+        for (int i = 0; i < pathLengthHistogram.length; i++) {
+            pathLengthHistogram[i] = new LongAdder();
+        }
+    }
+
+    /*
+     * Recording, called by the tree
+     */
+
+    void recordLookupPath(int nodesVisited, int comparisonsMade) {
+        lookups.increment();
+        comparisons.add(comparisonsMade);
+        pathLengths.add(nodesVisited);
+        pathLengthHistogram[Math.min(nodesVisited, MAX_PATH_LENGTH)].increment();
+    }
+
+    void recordRotation(boolean isDouble) {
+        if (isDouble) {
+            doubleRotations.increment();
+        } else {
+            singleRotations.increment();
+        }
+    }
+
+    void recordAdd(long nanos) {
+        add.record(nanos);
+    }
+
+    void recordRemove(long nanos) {
+        remove.record(nanos);
+    }
+
+    void recordLookup(long nanos) {
+        lookup.record(nanos);
+    }
+
+    /*
+     * Reading
+     */
+
+    @Override
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    @Override
+    public double getMeanComparisonsPerLookup() {
+        long l = lookups.sum();
+        return (l == 0) ? 0 : (double) comparisons.sum() / l;
+    }
+
+    @Override
+    public double getMeanPathLength() {
+        long l = lookups.sum();
+        return (l == 0) ? 0 : (double) pathLengths.sum() / l;
+    }
+
+    @Override
+    public long[] getPathLengthHistogram() {
+        long[] h = new long[pathLengthHistogram.length];
+        for (int i = 0; i < h.length; i++) {
+            h[i] = pathLengthHistogram[i].sum();
+        }
+        return h;
+    }
+
+    @Override
+    public long getSingleRotations() {
+        return singleRotations.sum();
+    }
+
+    @Override
+    public long getDoubleRotations() {
+        return doubleRotations.sum();
+    }
+
+    @Override
+    public long getAdds() {
+        return add.count.sum();
+    }
+
+    @Override
+    public long getRemoves() {
+        return remove.count.sum();
+    }
+
+    @Override
+    public double getMeanAddNanos() {
+        return add.mean();
+    }
+
+    @Override
+    public double getMeanRemoveNanos() {
+        return remove.mean();
+    }
+
+    @Override
+    public double getMeanLookupNanos() {
+        return lookup.mean();
+    }
+
+    @Override
+    public long getMaxAddNanos() {
+        return add.max.get();
+    }
+
+    @Override
+    public long getMaxRemoveNanos() {
+        return remove.max.get();
+    }
+
+    @Override
+    public long getMaxLookupNanos() {
+        return lookup.max.get();
+    }
+
+    @Override
+    public void reset() {
+        lookups.reset();
+        comparisons.reset();
+        pathLengths.reset();
+        for (LongAdder a : pathLengthHistogram) {
+            a.reset();
+        }
+        singleRotations.reset();
+        doubleRotations.reset();
+        add.reset();
+        remove.reset();
+        lookup.reset();
+    }
+
+    /**
+     * @return a copy of the counters as they are now
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Register these metrics with the platform MBean server, under the name
+     * trees:type=AVLTree,name=<name>.
+     *
+     * @param name the name distinguishing this tree's metrics from others'
+     * @return the name the metrics were registered under
+     * @throws JMException if the name is invalid or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("trees:type=AVLTree,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Remove metrics registered by register() from the platform MBean server.
+     *
+     * @param objectName the name returned by register()
+     * @throws JMException if nothing is registered under that name
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.unregisterMBean(objectName);
+    }
+
+    /**
+     * An immutable copy of the counters of an AVLTreeMetrics.
+     *
+     * The counters are read one after another while the tree may be changing,
+     * so a snapshot taken during updates may be slightly inconsistent (say,
+     * counting a lookup's comparisons but not the lookup).
+     */
+    public static final class Snapshot {
+        private final long lookups;
+        private final double meanComparisonsPerLookup;
+        private final double meanPathLength;
+        private final long[] pathLengthHistogram;
+        private final long singleRotations;
+        private final long doubleRotations;
+        private final long adds;
+        private final long removes;
+        private final double meanAddNanos;
+        private final double meanRemoveNanos;
+        private final double meanLookupNanos;
+        private final long maxAddNanos;
+        private final long maxRemoveNanos;
+        private final long maxLookupNanos;
+
+        private Snapshot(AVLTreeMetrics m) {
+            lookups = m.getLookups();
+            meanComparisonsPerLookup = m.getMeanComparisonsPerLookup();
+            meanPathLength = m.getMeanPathLength();
+            pathLengthHistogram = m.getPathLengthHistogram();
+            singleRotations = m.getSingleRotations();
+            doubleRotations = m.getDoubleRotations();
+            adds = m.getAdds();
+            removes = m.getRemoves();
+            meanAddNanos = m.getMeanAddNanos();
+            meanRemoveNanos = m.getMeanRemoveNanos();
+            meanLookupNanos = m.getMeanLookupNanos();
+            maxAddNanos = m.getMaxAddNanos();
+            maxRemoveNanos = m.getMaxRemoveNanos();
+            maxLookupNanos = m.getMaxLookupNanos();
+        }
+
+        public long lookups() {
+            return lookups;
+        }
+
+        public double meanComparisonsPerLookup() {
+            return meanComparisonsPerLookup;
+        }
+
+        public double meanPathLength() {
+            return meanPathLength;
+        }
+
+        /**
+         * @return the number of lookups that visited exactly i nodes, at index i
+         */
+        public long[] pathLengthHistogram() {
+            return pathLengthHistogram.clone();
+        }
+
+        public long singleRotations() {
+            return singleRotations;
+        }
+
+        public long doubleRotations() {
+            return doubleRotations;
+        }
+
+        public long adds() {
+            return adds;
+        }
+
+        public long removes() {
+            return removes;
+        }
+
+        public double meanAddNanos() {
+            return meanAddNanos;
+        }
+
+        public double meanRemoveNanos() {
+            return meanRemoveNanos;
+        }
+
+        public double meanLookupNanos() {
+            return meanLookupNanos;
+        }
+
+        public long maxAddNanos() {
+            return maxAddNanos;
+        }
+
+        public long maxRemoveNanos() {
+            return maxRemoveNanos;
+        }
+
+        public long maxLookupNanos() {
+            return maxLookupNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot [lookups=" + lookups + ", meanComparisonsPerLookup=" + meanComparisonsPerLookup
+                    + ", meanPathLength=" + meanPathLength + ", singleRotations=" + singleRotations
+                    + ", doubleRotations=" + doubleRotations + ", adds=" + adds + ", removes=" + removes
+                    + ", meanAddNanos=" + meanAddNanos + ", meanRemoveNanos=" + meanRemoveNanos
+                    + ", meanLookupNanos=" + meanLookupNanos + ", maxAddNanos=" + maxAddNanos
+                    + ", maxRemoveNanos=" + maxRemoveNanos + ", maxLookupNanos=" + maxLookupNanos + "]";
+        }
+    }
+}
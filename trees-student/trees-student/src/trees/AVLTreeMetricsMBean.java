@@ -0,0 +1,60 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+/**
+ * The JMX view of an AVLTreeMetrics.
+ */
+public interface AVLTreeMetricsMBean {
+    /**
+     * @return the number of lookups (by contains, get or remove)
+     */
+    long getLookups();
+
+    /**
+     * @return the mean number of calls to equals() and compareTo() per lookup
+     */
+    double getMeanComparisonsPerLookup();
+
+    /**
+     * @return the mean number of nodes visited per lookup
+     */
+    double getMeanPathLength();
+
+    /**
+     * @return the number of lookups that visited exactly i nodes, at index i
+     */
+    long[] getPathLengthHistogram();
+
+    /**
+     * @return the number of single rotations done to rebalance the tree
+     */
+    long getSingleRotations();
+
+    /**
+     * @return the number of double rotations done to rebalance the tree
+     */
+    long getDoubleRotations();
+
+    long getAdds();
+
+    long getRemoves();
+
+    double getMeanAddNanos();
+
+    double getMeanRemoveNanos();
+
+    double getMeanLookupNanos();
+
+    long getMaxAddNanos();
+
+    long getMaxRemoveNanos();
+
+    long getMaxLookupNanos();
+
+    /**
+     * Set every counter back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.util.Arrays;
+
+/**
+ * The shared structure of the primitive-specialized AVL trees (IntAVLTree,
+ * LongAVLTree, maps.LongObjectTreeMap).
+ *
+ * Rather than one Node object per value, nodes are slots: int indexes into
+ * parallel arrays holding the links, cached heights and cached subtree sizes.
+ * Subclasses keep their keys (and values) in primitive arrays indexed by the
+ * same slots, and search them by reading the link arrays directly; the
+ * balancing itself is SlotAVLTree's.
+ */
+public abstract class ArrayAVLTree extends SlotAVLTree {
+    private static final int INITIAL_CAPACITY = 16;
+
+    protected int[] left;
+    protected int[] right;
+    protected int[] parent;
+    private byte[] height; // an AVL tree of 2^31 nodes is less than 45 levels tall
+    private int[] count; // number of slots in the subtree rooted at each slot
+
+    protected ArrayAVLTree() {
+        this(INITIAL_CAPACITY);
+    }
+
+    protected ArrayAVLTree(int capacity) {
+        capacity = Math.max(capacity, 1);
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        height = new byte[capacity];
+        count = new int[capacity];
+    }
+
+    /**
+     * Grow the subclass's key (and value) arrays to the given capacity.
+     * @param capacity the new length of the arrays
+     */
+    protected abstract void grow(int capacity);
+
+    @Override
+    protected final int capacity() {
+        return left.length;
+    }
+
+    @Override
+    protected final void growCapacity() {
+        int capacity = left.length + (left.length >> 1) + 1;
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        height = Arrays.copyOf(height, capacity);
+        count = Arrays.copyOf(count, capacity);
+        grow(capacity);
+    }
+
+    @Override
+    protected final int left(int n) {
+        return left[n];
+    }
+
+    @Override
+    protected final int right(int n) {
+        return right[n];
+    }
+
+    @Override
+    protected final int parent(int n) {
+        return parent[n];
+    }
+
+    @Override
+    protected final void setLeft(int n, int l) {
+        left[n] = l;
+    }
+
+    @Override
+    protected final void setRight(int n, int r) {
+        right[n] = r;
+    }
+
+    @Override
+    protected final void setParent(int n, int p) {
+        parent[n] = p;
+    }
+
+    @Override
+    protected final int getHeight(int n) {
+        return height[n];
+    }
+
+    @Override
+    protected final void setHeight(int n, int h) {
+        height[n] = (byte) h;
+    }
+
+    @Override
+    protected final int getCount(int n) {
+        return count[n];
+    }
+
+    @Override
+    protected final void setCount(int n, int c) {
+        count[n] = c;
+    }
+}
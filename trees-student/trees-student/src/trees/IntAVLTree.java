@@ -0,0 +1,177 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * An AVL tree of int values, with the same operations as AVLTree&lt;Integer&gt;
+ * but without boxing: values are stored in an int array, compared as ints,
+ * and iterated with a PrimitiveIterator.OfInt.
+ *
+ * @see ArrayAVLTree
+ */
+public class IntAVLTree extends ArrayAVLTree {
+    private int[] keys;
+
+    public IntAVLTree() {
+        keys = new int[left.length];
+    }
+
+    private IntAVLTree(int capacity) {
+        super(capacity);
+        keys = new int[left.length];
+    }
+
+    /**
+     * Build a new tree directly from an array of values in strictly increasing
+     * order, in O(n) time.
+     * @param sorted the values, in strictly increasing order
+     * @return a new tree containing the values of sorted
+     * @throws IllegalArgumentException if the values are not strictly increasing
+     */
+    public static IntAVLTree fromSorted(int[] sorted) {
+        IntAVLTree tree = new IntAVLTree(sorted.length);
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0 && sorted[i - 1] >= sorted[i]) {
+                throw new IllegalArgumentException("values are not strictly increasing: " + sorted[i - 1] + ", " + sorted[i]);
+            }
+            tree.keys[i] = sorted[i];
+        }
+        tree.buildBalanced(sorted.length);
+        return tree;
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+    }
+
+    /**
+     * @param e
+     * @return the slot holding e, or NIL if e is not in the tree
+     */
+    private int find(int e) {
+        int n = root;
+        while (n != NIL) {
+            int k = keys[n];
+            if (e < k) {
+                n = left[n];
+            } else if (e > k) {
+                n = right[n];
+            } else {
+                return n;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Return true iff the tree contains the value e.
+     * @param e
+     * @return true iff the tree contains the value e
+     */
+    public boolean contains(int e) {
+        return find(e) != NIL;
+    }
+
+    /**
+     * Add e to the tree, if it is not already there.
+     * @param e
+     */
+    public void add(int e) {
+        int p = NIL;
+        int n = root;
+        while (n != NIL) {
+            p = n;
+            int k = keys[n];
+            if (e < k) {
+                n = left[n];
+            } else if (e > k) {
+                n = right[n];
+            } else {
+                return;
+            }
+        }
+        int slot = insert(p, p != NIL && e < keys[p]);
+        keys[slot] = e;
+    }
+
+    /**
+     * Remove e from the tree.
+     * @param e the value to remove
+     * @return true iff the tree contained e
+     */
+    public boolean remove(int e) {
+        int n = find(e);
+        if (n == NIL) {
+            return false;
+        }
+        delete(n);
+        return true;
+    }
+
+    /**
+     * Return the k-th smallest value in the tree, counting from 0, in O(log n) time.
+     * @param k the rank of the value to return
+     * @return the value with exactly k smaller values in the tree
+     * @throws IndexOutOfBoundsException if k is not in [0, size())
+     */
+    public int select(int k) {
+        return keys[selectSlot(k)];
+    }
+
+    /**
+     * Return the number of values in the tree that are strictly less than e,
+     * in O(log n) time.
+     * @param e
+     * @return the number of values in the tree less than e
+     */
+    public int rank(int e) {
+        int rank = 0;
+        int n = root;
+        while (n != NIL) {
+            int k = keys[n];
+            if (e < k) {
+                n = left[n];
+            } else if (e > k) {
+                rank += count(left[n]) + 1;
+                n = right[n];
+            } else {
+                return rank + count(left[n]);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Return the number of values v in the tree such that lo <= v < hi, in
+     * O(log n) time.
+     * @param lo the inclusive lower bound
+     * @param hi the exclusive upper bound
+     * @return the number of values in the tree in the range [lo, hi)
+     */
+    public int countInRange(int lo, int hi) {
+        if (lo >= hi) {
+            return 0;
+        }
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * Return an iterator over the values of the tree in ascending order. The
+     * iterator supports remove(), and fails fast on concurrent modification.
+     * @return an iterator over the values of the tree
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        class Iter extends SlotIterator implements PrimitiveIterator.OfInt {
+            @Override
+            public int nextInt() {
+                return keys[nextSlot()];
+            }
+        }
+        return new Iter();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * An AVL tree of long values, with the same operations as AVLTree&lt;Long&gt;
+ * but without boxing: values are stored in a long array, compared as longs,
+ * and iterated with a PrimitiveIterator.OfLong.
+ *
+ * @see ArrayAVLTree
+ */
+public class LongAVLTree extends ArrayAVLTree {
+    private long[] keys;
+
+    public LongAVLTree() {
+        keys = new long[left.length];
+    }
+
+    private LongAVLTree(int capacity) {
+        super(capacity);
+        keys = new long[left.length];
+    }
+
+    /**
+     * Build a new tree directly from an array of values in strictly increasing
+     * order, in O(n) time.
+     * @param sorted the values, in strictly increasing order
+     * @return a new tree containing the values of sorted
+     * @throws IllegalArgumentException if the values are not strictly increasing
+     */
+    public static LongAVLTree fromSorted(long[] sorted) {
+        LongAVLTree tree = new LongAVLTree(sorted.length);
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0 && sorted[i - 1] >= sorted[i]) {
+                throw new IllegalArgumentException("values are not strictly increasing: " + sorted[i - 1] + ", " + sorted[i]);
+            }
+            tree.keys[i] = sorted[i];
+        }
+        tree.buildBalanced(sorted.length);
+        return tree;
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+    }
+
+    /**
+     * @param e
+     * @return the slot holding e, or NIL if e is not in the tree
+     */
+    private int find(long e) {
+        int n = root;
+        while (n != NIL) {
+            long k = keys[n];
+            if (e < k) {
+                n = left[n];
+            } else if (e > k) {
+                n = right[n];
+            } else {
+                return n;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Return true iff the tree contains the value e.
+     * @param e
+     * @return true iff the tree contains the value e
+     */
+    public boolean contains(long e) {
+        return find(e) != NIL;
+    }
+
+    /**
+     * Add e to the tree, if it is not already there.
+     * @param e
+     */
+    public void add(long e) {
+        int p = NIL;
+        int n = root;
+        while (n != NIL) {
+            p = n;
+            long k = keys[n];
+            if (e < k) {
+                n = left[n];
+            } else if (e > k) {
+                n = right[n];
+            } else {
+                return;
+            }
+        }
+        int slot = insert(p, p != NIL && e < keys[p]);
+        keys[slot] = e;
+    }
+
+    /**
+     * Remove e from the tree.
+     * @param e the value to remove
+     * @return true iff the tree contained e
+     */
+    public boolean remove(long e) {
+        int n = find(e);
+        if (n == NIL) {
+            return false;
+        }
+        delete(n);
+        return true;
+    }
+
+    /**
+     * Return the k-th smallest value in the tree, counting from 0, in O(log n) time.
+     * @param k the rank of the value to return
+     * @return the value with exactly k smaller values in the tree
+     * @throws IndexOutOfBoundsException if k is not in [0, size())
+     */
+    public long select(int k) {
+        return keys[selectSlot(k)];
+    }
+
+    /**
+     * Return the number of values in the tree that are strictly less than e,
+     * in O(log n) time.
+     * @param e
+     * @return the number of values in the tree less than e
+     */
+    public int rank(long e) {
+        int rank = 0;
+        int n = root;
+        while (n != NIL) {
+            long k = keys[n];
+            if (e < k) {
+                n = left[n];
+            } else if (e > k) {
+                rank += count(left[n]) + 1;
+                n = right[n];
+            } else {
+                return rank + count(left[n]);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Return the number of values v in the tree such that lo <= v < hi, in
+     * O(log n) time.
+     * @param lo the inclusive lower bound
+     * @param hi the exclusive upper bound
+     * @return the number of values in the tree in the range [lo, hi)
+     */
+    public int countInRange(long lo, long hi) {
+        if (lo >= hi) {
+            return 0;
+        }
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * Return an iterator over the values of the tree in ascending order. The
+     * iterator supports remove(), and fails fast on concurrent modification.
+     * @return an iterator over the values of the tree
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        class Iter extends SlotIterator implements PrimitiveIterator.OfLong {
+            @Override
+            public long nextLong() {
+                return keys[nextSlot()];
+            }
+        }
+        return new Iter();
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import codecs.Codec;
+
+/**
+ * An AVL tree whose nodes live outside the Java heap, in direct ByteBuffers,
+ * with the same operations as AVLTree.
+ *
+ * Each node is a fixed-size record in an arena of chunks, addressed by an int
+ * slot index; its links to its children and parent are slot indexes rather
+ * than references, and its value is stored serialized with a fixed-width
+ * Codec. Freed slots go on a free list and are reused. However many values
+ * the tree holds, the garbage collector only sees one buffer per chunk of
+ * CHUNK_SLOTS nodes.
+ *
+ * Values are decoded whenever they are returned, so get(), select(), and
+ * iteration allocate; searching compares in place through the codec, which
+ * for primitive wrapper codecs does not allocate. All access to the buffers is
+ * by absolute index, so, as with AVLTree, any number of threads may read the
+ * tree at once provided none is modifying it.
+ *
+ * The balancing is SlotAVLTree's; this class only stores each slot's links,
+ * height and count in its record.
+ */
+public class OffHeapAVLTree<E extends Comparable<E>> extends SlotAVLTree implements Iterable<E> {
+    // record layout
+    private static final int LEFT = 0;
+    private static final int RIGHT = 4;
+    private static final int PARENT = 8;
+    private static final int COUNT = 12; // number of nodes in the subtree
+    private static final int HEIGHT = 16;
+    private static final int VALUE = 20;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+    private static final int MAX_CHUNKS = (1 << (31 - CHUNK_SHIFT)) - 1; // so capacity() fits in an int
+
+    private final Codec<E> codec;
+    private final int stride; // bytes per record
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /**
+     * @param codec a codec with a fixed width, used to store the values
+     * @throws IllegalArgumentException if the codec's encoding is variable-length
+     */
+    public OffHeapAVLTree(Codec<E> codec) {
+        if (codec.fixedWidth() <= 0) {
+            throw new IllegalArgumentException("the codec must have a fixed width");
+        }
+        this.codec = codec;
+        this.stride = (VALUE + codec.fixedWidth() + 3) & ~3;
+    }
+
+    /**
+     * Remove every value from the tree, dropping its references to the
+     * chunks. The chunks' off-heap memory is freed when the garbage collector
+     * reclaims the buffers, not by this call.
+     */
+    public void clear() {
+        chunks = new ByteBuffer[0];
+        resetSlots();
+    }
+
+    private ByteBuffer chunk(int n) {
+        return chunks[n >>> CHUNK_SHIFT];
+    }
+
+    private int offset(int n) {
+        return (n & (CHUNK_SLOTS - 1)) * stride;
+    }
+
+    @Override
+    protected int left(int n) {
+        return chunk(n).getInt(offset(n) + LEFT);
+    }
+
+    @Override
+    protected int right(int n) {
+        return chunk(n).getInt(offset(n) + RIGHT);
+    }
+
+    @Override
+    protected int parent(int n) {
+        return chunk(n).getInt(offset(n) + PARENT);
+    }
+
+    @Override
+    protected void setLeft(int n, int l) {
+        chunk(n).putInt(offset(n) + LEFT, l);
+    }
+
+    @Override
+    protected void setRight(int n, int r) {
+        chunk(n).putInt(offset(n) + RIGHT, r);
+    }
+
+    @Override
+    protected void setParent(int n, int p) {
+        chunk(n).putInt(offset(n) + PARENT, p);
+    }
+
+    @Override
+    protected int getHeight(int n) {
+        return chunk(n).getInt(offset(n) + HEIGHT);
+    }
+
+    @Override
+    protected void setHeight(int n, int h) {
+        chunk(n).putInt(offset(n) + HEIGHT, h);
+    }
+
+    @Override
+    protected int getCount(int n) {
+        return chunk(n).getInt(offset(n) + COUNT);
+    }
+
+    @Override
+    protected void setCount(int n, int c) {
+        chunk(n).putInt(offset(n) + COUNT, c);
+    }
+
+    @Override
+    protected int capacity() {
+        return chunks.length * CHUNK_SLOTS;
+    }
+
+    @Override
+    protected void growCapacity() {
+        if (chunks.length == MAX_CHUNKS) {
+            throw new IllegalStateException("tree is full");
+        }
+        chunks = Arrays.copyOf(chunks, chunks.length + 1);
+        chunks[chunks.length - 1] = ByteBuffer.allocateDirect(CHUNK_SLOTS * stride);
+    }
+
+    private E value(int n) {
+        return codec.decode(chunk(n), offset(n) + VALUE);
+    }
+
+    private void setValue(int n, E e) {
+        codec.encode(e, chunk(n), offset(n) + VALUE);
+    }
+
+    private int compareTo(E e, int n) {
+        return codec.compareTo(e, chunk(n), offset(n) + VALUE);
+    }
+
+    /**
+     * @return the slot holding a value equal to e, or NIL
+     */
+    private int find(E e) {
+        int n = root;
+        while (n != NIL) {
+            int cmp = compareTo(e, n);
+            if (cmp < 0) {
+                n = left(n);
+            } else if (cmp > 0) {
+                n = right(n);
+            } else {
+                return n;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Return true iff the tree contains the value e.
+     * @param e
+     * @return true iff the tree contains the value e
+     */
+    public boolean contains(E e) {
+        return find(e) != NIL;
+    }
+
+    /**
+     * @param e
+     * @return the value equal to e contained in the tree, or null if no such value is found
+     */
+    public E get(E e) {
+        int n = find(e);
+        return (n == NIL) ? null : value(n);
+    }
+
+    /**
+     * Add e to the tree.
+     *
+     * e is overwritten if it's already in the tree -- no duplication allowed.
+     * @param e
+     */
+    public void add(E e) {
+        int p = NIL;
+        int n = root;
+        int cmp = 0;
+        while (n != NIL) {
+            p = n;
+            cmp = compareTo(e, n);
+            if (cmp < 0) {
+                n = left(n);
+            } else if (cmp > 0) {
+                n = right(n);
+            } else {
+                setValue(n, e);
+                return;
+            }
+        }
+        setValue(insert(p, cmp < 0), e);
+    }
+
+    /**
+     * Remove e from the tree, returning the value removed (or null if the
+     * tree was unchanged.)
+     *
+     * @param e the value to remove
+     */
+    public E remove(E e) {
+        int n = find(e);
+        if (n == NIL) {
+            return null;
+        }
+        E data = value(n);
+        delete(n);
+        return data;
+    }
+
+    /**
+     * Return the k-th smallest value in the tree, counting from 0, in O(log n) time.
+     * @param k the rank of the value to return
+     * @return the value with exactly k smaller values in the tree
+     * @throws IndexOutOfBoundsException if k is not in [0, size())
+     */
+    public E select(int k) {
+        return value(selectSlot(k));
+    }
+
+    /**
+     * Return the number of values in the tree that are strictly less than e,
+     * in O(log n) time.
+     * @param e
+     * @return the number of values in the tree less than e
+     */
+    public int rank(E e) {
+        int rank = 0;
+        int n = root;
+        while (n != NIL) {
+            int cmp = compareTo(e, n);
+            if (cmp < 0) {
+                n = left(n);
+            } else if (cmp > 0) {
+                rank += count(left(n)) + 1;
+                n = right(n);
+            } else {
+                return rank + count(left(n));
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Return the number of values v in the tree such that lo <= v < hi, in
+     * O(log n) time.
+     * @param lo the inclusive lower bound
+     * @param hi the exclusive upper bound
+     * @return the number of values in the tree in the range [lo, hi)
+     */
+    public int countInRange(E lo, E hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        return rank(hi) - rank(lo);
+    }
+
+    /**
+     * Return an iterator over the values of the tree in ascending order. The
+     * iterator decodes each value as it is returned, supports remove(), and
+     * fails fast on concurrent modification.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        class Iter extends SlotIterator implements Iterator<E> {
+            @Override
+            public E next() {
+                return value(nextSlot());
+            }
+        }
+        return new Iter();
+    }
+}
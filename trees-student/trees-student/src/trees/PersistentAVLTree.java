@@ -0,0 +1,389 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A persistent AVL tree: an AVL tree whose nodes are never modified once
+ * built.
+ *
+ * add() and remove() do not change any existing node. Instead they copy the
+ * O(log n) nodes on the path from the root to the change (and the few nodes
+ * touched by rotations), and share every other subtree with the previous
+ * version. A version of the tree is therefore just a root pointer:
+ * snapshot() is O(1), and a snapshot (or an iterator) keeps seeing exactly
+ * the values it started with, however the tree is modified afterwards.
+ *
+ * Sharing subtrees between versions is why the nodes have no parent
+ * pointers (unlike trees.Node): a shared node would need a different parent
+ * in each version. Everything that AVLTree does by walking up parent
+ * pointers is done here on the way back out of the recursion instead.
+ *
+ * The tree may be modified by one thread at a time; snapshot() may be called
+ * from any thread, and the snapshot read from any thread, without locking.
+ */
+public class PersistentAVLTree<E extends Comparable<E>> implements Iterable<E> {
+    /**
+     * An immutable node. Its height and size are those of the subtree it
+     * roots, so (as in AVLTree) both are available in O(1) time.
+     */
+    static final class ImmutableNode<E> {
+        final E data;
+        final ImmutableNode<E> left;
+        final ImmutableNode<E> right;
+        final int height; // leaf has height 0
+        final int size;
+
+        ImmutableNode(E data, ImmutableNode<E> left, ImmutableNode<E> right) {
+            this.data = data;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    // volatile, so that a snapshot taken by another thread sees the latest version
+    volatile ImmutableNode<E> root;
+
+    public PersistentAVLTree() {
+    }
+
+    private PersistentAVLTree(ImmutableNode<E> root) {
+        this.root = root;
+    }
+
+    /**
+     * Return an immutable view of the tree as it is now, in O(1) time.
+     *
+     * The snapshot is itself a PersistentAVLTree, which shares all its nodes
+     * with this tree. Later changes to this tree are not visible in the
+     * snapshot, and changes to the snapshot are not visible in this tree.
+     * @return a snapshot of this tree
+     */
+    public PersistentAVLTree<E> snapshot() {
+        return new PersistentAVLTree<>(root);
+    }
+
+    private static int height(ImmutableNode<?> n) {
+        return (n == null) ? -1 : n.height;
+    }
+
+    private static int size(ImmutableNode<?> n) {
+        return (n == null) ? 0 : n.size;
+    }
+
+    /**
+     * Return the size of (number of elements stored in) the tree.
+     * @return the size of the tree
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Return true iff the tree contains the value e.
+     * @param e
+     * @return true iff the tree contains the value e
+     */
+    public boolean contains(E e) {
+        return find(root, e) != null;
+    }
+
+    /**
+     * @param e
+     * @return the value equals() to e contained in the tree, or null if no such value is found
+     */
+    public E get(E e) {
+        ImmutableNode<E> n = find(root, e);
+        return (n == null) ? null : n.data;
+    }
+
+    private static <E extends Comparable<E>> ImmutableNode<E> find(ImmutableNode<E> n, E e) {
+        while (n != null) {
+            int cmp = e.compareTo(n.data);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                n = n.right;
+            } else {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add e to the tree, copying only the nodes on the path to it.
+     *
+     * e is overwritten if it's already in the tree -- no duplication allowed.
+     * @param e
+     */
+    public void add(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        root = add(root, e);
+    }
+
+    /**
+     * The recursive helper method for add(E e).
+     * @return the root of a new version of the subtree rooted at n, containing e
+     */
+    private static <E extends Comparable<E>> ImmutableNode<E> add(ImmutableNode<E> n, E e) {
+        if (n == null) {
+            return new ImmutableNode<>(e, null, null);
+        }
+        int cmp = e.compareTo(n.data);
+        if (cmp < 0) {
+            return balanced(n.data, add(n.left, e), n.right);
+        } else if (cmp > 0) {
+            return balanced(n.data, n.left, add(n.right, e));
+        } else if (n.data == e) {
+            return n;
+        } else {
+            return new ImmutableNode<>(e, n.left, n.right);
+        }
+    }
+
+    /**
+     * Remove e from the tree, returning the value removed (or null if the
+     * tree was unchanged).
+     *
+     * @param e the value to remove
+     */
+    public E remove(E e) {
+        ImmutableNode<E> r = root;
+        ImmutableNode<E> n = find(r, e);
+        if (n == null) {
+            return null;
+        }
+        root = remove(r, e);
+        return n.data;
+    }
+
+    /**
+     * The recursive helper method for remove(E e).
+     * @param n the root of a subtree that contains e
+     * @return the root of a new version of the subtree rooted at n, without e
+     */
+    private static <E extends Comparable<E>> ImmutableNode<E> remove(ImmutableNode<E> n, E e) {
+        int cmp = e.compareTo(n.data);
+        if (cmp < 0) {
+            return balanced(n.data, remove(n.left, e), n.right);
+        } else if (cmp > 0) {
+            return balanced(n.data, n.left, remove(n.right, e));
+        } else if (n.left == null) {
+            return n.right;
+        } else if (n.right == null) {
+            return n.left;
+        } else {
+            ImmutableNode<E> s = n.right;
+            while (s.left != null) {
+                s = s.left;
+            }
+            return balanced(s.data, n.left, removeFirst(n.right));
+        }
+    }
+
+    /**
+     * @param n a (non-null) subtree
+     * @return the root of a new version of the subtree rooted at n, without its smallest value
+     */
+    private static <E> ImmutableNode<E> removeFirst(ImmutableNode<E> n) {
+        if (n.left == null) {
+            return n.right;
+        }
+        return balanced(n.data, removeFirst(n.left), n.right);
+    }
+
+    /**
+     * Return a new node holding data, with the given subtrees, rebalanced if
+     * needed.
+     *
+     * The heights of left and right must differ by at most two, as they do
+     * after one value is added to or removed from a balanced subtree. A single
+     * or double rotation, building the (at most three) new nodes directly in
+     * their rotated positions, then restores the AVL property.
+     * @return the root of the new, balanced subtree
+     */
+    private static <E> ImmutableNode<E> balanced(E data, ImmutableNode<E> left, ImmutableNode<E> right) {
+        int bf = height(left) - height(right);
+        if (bf > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new ImmutableNode<>(left.data, left.left,
+                        new ImmutableNode<>(data, left.right, right));
+            }
+            ImmutableNode<E> lr = left.right;
+            return new ImmutableNode<>(lr.data,
+                    new ImmutableNode<>(left.data, left.left, lr.left),
+                    new ImmutableNode<>(data, lr.right, right));
+        } else if (bf < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new ImmutableNode<>(right.data,
+                        new ImmutableNode<>(data, left, right.left), right.right);
+            }
+            ImmutableNode<E> rl = right.left;
+            return new ImmutableNode<>(rl.data,
+                    new ImmutableNode<>(data, left, rl.left),
+                    new ImmutableNode<>(right.data, rl.right, right.right));
+        }
+        return new ImmutableNode<>(data, left, right);
+    }
+
+    /**
+     * @return the smallest value in the tree, or null if the tree is empty
+     */
+    public E first() {
+        ImmutableNode<E> n = root;
+        if (n == null) {
+            return null;
+        }
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n.data;
+    }
+
+    /**
+     * @return the largest value in the tree, or null if the tree is empty
+     */
+    public E last() {
+        ImmutableNode<E> n = root;
+        if (n == null) {
+            return null;
+        }
+        while (n.right != null) {
+            n = n.right;
+        }
+        return n.data;
+    }
+
+    /**
+     * Return the k-th smallest value in the tree, counting from 0, in O(log n) time.
+     * @param k the rank of the value to return
+     * @return the value with exactly k smaller values in the tree
+     * @throws IndexOutOfBoundsException if k is not in [0, size())
+     */
+    public E select(int k) {
+        ImmutableNode<E> n = root;
+        if (k < 0 || k >= size(n)) {
+            throw new IndexOutOfBoundsException("k: " + k + ", size: " + size(n));
+        }
+        while (true) {
+            int leftSize = size(n.left);
+            if (k < leftSize) {
+                n = n.left;
+            } else if (k > leftSize) {
+                k -= leftSize + 1;
+                n = n.right;
+            } else {
+                return n.data;
+            }
+        }
+    }
+
+    /**
+     * Return the number of values in the tree that are strictly less than e,
+     * in O(log n) time.
+     * @param e
+     * @return the number of values in the tree less than e
+     */
+    public int rank(E e) {
+        return rank(root, e);
+    }
+
+    private static <E extends Comparable<E>> int rank(ImmutableNode<E> n, E e) {
+        int rank = 0;
+        while (n != null) {
+            int cmp = e.compareTo(n.data);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                rank += size(n.left) + 1;
+                n = n.right;
+            } else {
+                return rank + size(n.left);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Return the number of values v in the tree such that lo <= v < hi, in
+     * O(log n) time.
+     * @param lo the inclusive lower bound
+     * @param hi the exclusive upper bound
+     * @return the number of values in the tree in the range [lo, hi)
+     */
+    public int countInRange(E lo, E hi) {
+        if (lo.compareTo(hi) >= 0) {
+            return 0;
+        }
+        ImmutableNode<E> r = root; // both ranks must come from the same version
+        return rank(r, hi) - rank(r, lo);
+    }
+
+    /**
+     * Return an iterator over the values of the tree, in ascending order.
+     *
+     * The iterator reads the version of the tree current when it was created,
+     * so it never throws ConcurrentModificationException: values added or
+     * removed later (including through the iterator's remove()) do not affect
+     * what it returns.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new InOrderIterator(root);
+    }
+
+    /**
+     * Without parent pointers, an in-order iterator keeps the path from the
+     * root to the next node on a stack: O(log n) extra space, and O(1)
+     * amortized time per value.
+     */
+    private class InOrderIterator implements Iterator<E> {
+        private final ArrayDeque<ImmutableNode<E>> stack = new ArrayDeque<>();
+        private E lastReturned;
+
+        InOrderIterator(ImmutableNode<E> n) {
+            pushLeft(n);
+        }
+
+        private void pushLeft(ImmutableNode<E> n) {
+            while (n != null) {
+                stack.push(n);
+                n = n.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            ImmutableNode<E> n = stack.pop();
+            pushLeft(n.right);
+            lastReturned = n.data;
+            return n.data;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            PersistentAVLTree.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+package trees;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * The balancing core of the AVL trees whose nodes are slots (int indexes)
+ * rather than objects: ArrayAVLTree and its primitive-specialized subclasses,
+ * which keep each slot's links in parallel arrays, and OffHeapAVLTree, which
+ * keeps them in records in direct ByteBuffers.
+ *
+ * This class does everything that does not look at keys (allocating and
+ * freeing slots, linking, rotations, rebalancing, order statistics, iteration
+ * order) through the abstract accessors for each slot's links, cached height
+ * and cached subtree size; subclasses store those however they like, store
+ * their keys (and values) alongside, and do their own key comparisons. Freed
+ * slots are kept on a free list, threaded through the left links, and reused
+ * by later insertions.
+ */
+public abstract class SlotAVLTree {
+    /**
+     * The "null" slot index.
+     */
+    protected static final int NIL = -1;
+
+    protected int root = NIL;
+    protected int size;
+    protected int modCount; // number of structural modifications, so iterators can fail fast
+    private int used; // slots [0, used) have been handed out at least once
+    private int free = NIL; // head of the free list
+
+    /**
+     * @param n a (non-NIL) slot
+     * @return n's left child, or NIL
+     */
+    protected abstract int left(int n);
+
+    /**
+     * @param n a (non-NIL) slot
+     * @return n's right child, or NIL
+     */
+    protected abstract int right(int n);
+
+    /**
+     * @param n a (non-NIL) slot
+     * @return n's parent, or NIL
+     */
+    protected abstract int parent(int n);
+
+    protected abstract void setLeft(int n, int l);
+
+    protected abstract void setRight(int n, int r);
+
+    protected abstract void setParent(int n, int p);
+
+    /**
+     * @param n a (non-NIL) slot
+     * @return the cached height of the subtree rooted at n
+     */
+    protected abstract int getHeight(int n);
+
+    protected abstract void setHeight(int n, int h);
+
+    /**
+     * @param n a (non-NIL) slot
+     * @return the cached number of slots in the subtree rooted at n
+     */
+    protected abstract int getCount(int n);
+
+    protected abstract void setCount(int n, int c);
+
+    /**
+     * @return the number of slots the tree can hold before growCapacity() is needed
+     */
+    protected abstract int capacity();
+
+    /**
+     * Make room for at least one more slot than capacity().
+     * @throws IllegalStateException if the tree cannot grow any further
+     */
+    protected abstract void growCapacity();
+
+    /**
+     * Release whatever the subclass stores for a slot that has just been
+     * freed, for example so a value can be garbage collected.
+     * @param slot the freed slot
+     */
+    protected void release(int slot) {
+    }
+
+    /**
+     * Return the size of (number of elements stored in) the tree.
+     * @return the size of the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget every slot, leaving an empty tree; the subclass drops (or keeps,
+     * for reuse) its storage.
+     */
+    protected final void resetSlots() {
+        root = NIL;
+        size = 0;
+        used = 0;
+        free = NIL;
+        modCount++;
+    }
+
+    /**
+     * Return a slot for a new leaf, taking it from the free list if possible,
+     * and growing the subclass's storage if needed.
+     */
+    private int allocate() {
+        int slot;
+        if (free != NIL) {
+            slot = free;
+            free = left(slot);
+        } else {
+            if (used == capacity()) {
+                growCapacity();
+            }
+            slot = used++;
+        }
+        setLeft(slot, NIL);
+        setRight(slot, NIL);
+        setHeight(slot, 0);
+        setCount(slot, 1);
+        return slot;
+    }
+
+    /**
+     * Link a new leaf into the tree and rebalance. The caller has found, by
+     * descending from the root, the slot p under which the new key belongs and
+     * on which side; after this returns it must store the key in the returned
+     * slot.
+     *
+     * @param p the parent of the new leaf, or NIL if the tree is empty
+     * @param toLeft whether the new leaf is p's left child
+     * @return the slot of the new leaf
+     */
+    protected final int insert(int p, boolean toLeft) {
+        int slot = allocate();
+        setParent(slot, p);
+        if (p == NIL) {
+            root = slot;
+        } else if (toLeft) {
+            setLeft(p, slot);
+        } else {
+            setRight(p, slot);
+        }
+        size++;
+        modCount++;
+        insertionCheck(slot);
+        return slot;
+    }
+
+    /**
+     * Remove the given slot from the tree and put it on the free list.
+     *
+     * When the slot has two children, its in-order successor is relinked in
+     * its place (keys never move between slots), so iterators stay valid.
+     * @param n a slot in the tree
+     */
+    protected final void delete(int n) {
+        size--;
+        modCount++;
+
+        if (left(n) != NIL && right(n) != NIL) {
+            int s = right(n);
+            while (left(s) != NIL) {
+                s = left(s);
+            }
+            int sp = parent(s);
+            int fixFrom = (sp == n) ? s : sp;
+            if (sp != n) {
+                int sr = right(s);
+                setLeft(sp, sr);
+                if (sr != NIL) {
+                    setParent(sr, sp);
+                }
+                setRight(s, right(n));
+                setParent(right(s), s);
+            }
+            setLeft(s, left(n));
+            setParent(left(s), s);
+            replace(n, s);
+            deletionCheck(fixFrom);
+        } else {
+            int child = (left(n) != NIL) ? left(n) : right(n);
+            int p = parent(n);
+            replace(n, child);
+            if (p != NIL) {
+                deletionCheck(p);
+            }
+        }
+
+        release(n);
+        setLeft(n, free);
+        free = n;
+    }
+
+    /**
+     * Link the given slots, holding keys that the subclass has already stored
+     * in increasing order in slots [0, n), into a perfectly balanced tree in
+     * O(n) time. The tree must be empty, and have capacity for n slots.
+     * @param n the number of slots to link
+     */
+    protected final void buildBalanced(int n) {
+        if (size != 0 || n > capacity()) {
+            throw new IllegalStateException();
+        }
+        used = n;
+        size = n;
+        modCount++;
+        root = buildBalanced(0, n - 1);
+        if (root != NIL) {
+            setParent(root, NIL);
+        }
+    }
+
+    private int buildBalanced(int start, int end) {
+        if (start > end) {
+            return NIL;
+        }
+        int mid = (start + end) >>> 1;
+        int l = buildBalanced(start, mid - 1);
+        int r = buildBalanced(mid + 1, end);
+        setLeft(mid, l);
+        setRight(mid, r);
+        if (l != NIL) {
+            setParent(l, mid);
+        }
+        if (r != NIL) {
+            setParent(r, mid);
+        }
+        update(mid);
+        return mid;
+    }
+
+    /**
+     * @param n a slot, or NIL
+     * @return the number of slots in the subtree rooted at n, in O(1) time
+     */
+    protected final int count(int n) {
+        return (n == NIL) ? 0 : getCount(n);
+    }
+
+    private int height(int n) {
+        return (n == NIL) ? -1 : getHeight(n);
+    }
+
+    private void update(int n) {
+        int l = left(n);
+        int r = right(n);
+        setHeight(n, 1 + Math.max(height(l), height(r)));
+        setCount(n, 1 + count(l) + count(r));
+    }
+
+    private int balance(int n) {
+        return height(left(n)) - height(right(n));
+    }
+
+    /**
+     * Put replacement (which may be NIL) in n's place under n's parent.
+     */
+    private void replace(int n, int replacement) {
+        int p = parent(n);
+        if (p == NIL) {
+            root = replacement;
+        } else if (left(p) == n) {
+            setLeft(p, replacement);
+        } else {
+            setRight(p, replacement);
+        }
+        if (replacement != NIL) {
+            setParent(replacement, p);
+        }
+    }
+
+    /**
+     * Restore the AVL property after the insertion of slot, as in AVLTree:
+     * at most one (single or double) rotation is needed, after which only
+     * sizes change.
+     */
+    private void insertionCheck(int slot) {
+        int n = parent(slot);
+        boolean done = false;
+        while (n != NIL) {
+            if (done) {
+                setCount(n, getCount(n) + 1);
+            } else {
+                int oldHeight = getHeight(n);
+                update(n);
+                int bf = balance(n);
+                if (bf > 1 || bf < -1) {
+                    n = rebalance(n);
+                    done = true;
+                } else if (getHeight(n) == oldHeight) {
+                    done = true;
+                }
+            }
+            n = parent(n);
+        }
+    }
+
+    /**
+     * Restore the AVL property after a deletion below slot, all the way up to
+     * the root.
+     */
+    private void deletionCheck(int slot) {
+        int n = slot;
+        while (n != NIL) {
+            update(n);
+            int bf = balance(n);
+            if (bf > 1 || bf < -1) {
+                n = rebalance(n);
+            }
+            n = parent(n);
+        }
+    }
+
+    private int rebalance(int n) {
+        if (balance(n) > 0) {
+            if (balance(left(n)) < 0) {
+                rotateLeft(left(n));
+            }
+            return rotateRight(n);
+        } else {
+            if (balance(right(n)) > 0) {
+                rotateRight(right(n));
+            }
+            return rotateLeft(n);
+        }
+    }
+
+    private int rotateRight(int b) {
+        int a = left(b);
+        int t2 = right(a);
+        setLeft(b, t2);
+        if (t2 != NIL) {
+            setParent(t2, b);
+        }
+        replace(b, a);
+        setRight(a, b);
+        setParent(b, a);
+        update(b);
+        update(a);
+        return a;
+    }
+
+    private int rotateLeft(int b) {
+        int c = right(b);
+        int t2 = left(c);
+        setRight(b, t2);
+        if (t2 != NIL) {
+            setParent(t2, b);
+        }
+        replace(b, c);
+        setLeft(c, b);
+        setParent(b, c);
+        update(b);
+        update(c);
+        return c;
+    }
+
+    /**
+     * @return the slot holding the smallest key, or NIL if the tree is empty
+     */
+    protected final int firstSlot() {
+        int n = root;
+        if (n == NIL) {
+            return NIL;
+        }
+        while (left(n) != NIL) {
+            n = left(n);
+        }
+        return n;
+    }
+
+    /**
+     * @return the slot holding the largest key, or NIL if the tree is empty
+     */
+    protected final int lastSlot() {
+        int n = root;
+        if (n == NIL) {
+            return NIL;
+        }
+        while (right(n) != NIL) {
+            n = right(n);
+        }
+        return n;
+    }
+
+    /**
+     * @param n a (non-NIL) slot
+     * @return the slot following n in an in-order traversal, or NIL
+     */
+    protected final int successor(int n) {
+        if (right(n) != NIL) {
+            n = right(n);
+            while (left(n) != NIL) {
+                n = left(n);
+            }
+            return n;
+        }
+        int p = parent(n);
+        while (p != NIL && n == right(p)) {
+            n = p;
+            p = parent(p);
+        }
+        return p;
+    }
+
+    /**
+     * Return the slot holding the k-th smallest key, counting from 0, in
+     * O(log n) time.
+     * @throws IndexOutOfBoundsException if k is not in [0, size())
+     */
+    protected final int selectSlot(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("k: " + k + ", size: " + size);
+        }
+        int n = root;
+        while (true) {
+            int leftSize = count(left(n));
+            if (k < leftSize) {
+                n = left(n);
+            } else if (k > leftSize) {
+                k -= leftSize + 1;
+                n = right(n);
+            } else {
+                return n;
+            }
+        }
+    }
+
+    /**
+     * A lazy in-order iteration over the slots of the tree, which supports
+     * removal and fails fast on concurrent modification. Subclasses implement
+     * the iterator interfaces on top of nextSlot().
+     */
+    protected abstract class SlotIterator {
+        private int next = firstSlot();
+        private int lastReturned = NIL;
+        private int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return next != NIL;
+        }
+
+        /**
+         * @return the next slot in ascending key order
+         */
+        protected int nextSlot() {
+            if (next == NIL) {
+                throw new NoSuchElementException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            lastReturned = next;
+            next = successor(next);
+            return lastReturned;
+        }
+
+        public void remove() {
+            if (lastReturned == NIL) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            delete(lastReturned);
+            expectedModCount = modCount;
+            lastReturned = NIL;
+        }
+    }
+}
@@ -3,8 +3,13 @@
  */
 package trees;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TreeUtilities {
     /**
@@ -15,18 +20,22 @@ public class TreeUtilities {
      */
     static <E> List<E> inOrder(Node<E> node) {
         List<E> result = new ArrayList<>();
-        inOrderHelper(node, result);
+        // the ancestors whose left subtrees we're in, nearest on top
+        Deque<Node<E>> stack = new ArrayDeque<>();
+        Node<E> n = node;
+        while (n != null || !stack.isEmpty()) {
+            if (n != null) {
+                stack.push(n);
+                n = n.left;
+            } else {
+                n = stack.pop();
+                result.add(n.data);
+                n = n.right;
+            }
+        }
         return result; 
     }
 
-    private static <E> void inOrderHelper(Node<E> node, List<E> result) {
-        if (node == null) return;
-        inOrderHelper(node.left, result);
-        result.add(node.data);
-        inOrderHelper(node.right, result);
-
-    }
-
     /**
      * Returns the height of the node n.
      * 
@@ -37,29 +46,160 @@ public class TreeUtilities {
      * @return the height of the node n
      */
     static <E> int height(Node<E> n) {
-        if (n == null) return -1;
-        return 1 + Math.max(height(n.left), height(n.right));
+        // count the levels, visiting the tree one level at a time
+        int height = -1;
+        Deque<Node<E>> level = new ArrayDeque<>();
+        if (n != null) {
+            level.add(n);
+        }
+        while (!level.isEmpty()) {
+            height++;
+            for (int i = level.size(); i > 0; i--) {
+                Node<E> m = level.remove();
+                if (m.left != null) {
+                    level.add(m.left);
+                }
+                if (m.right != null) {
+                    level.add(m.right);
+                }
+            }
+        }
+        return height;
     }
 
     /**
      * Return a new, balanced tree containing all the values of the old tree bst.
+     * 
+     * The new nodes are linked directly into shape (with correct parent
+     * pointers) as the old tree is walked in order, in O(n) time, without
+     * any comparisons or intermediate list of values.
      * @param bst
      * @return a new, balanced tree containing all the values of the old tree bst
      */
     static <E extends Comparable<E>> BinarySearchTree<E> intoBalanced(BinarySearchTree<E> bst) {
-        List<E> sortedValues = inOrder(bst.root); 
+        int n = bst.size();
         BinarySearchTree<E> balanced = new BinarySearchTree<>();
-        buildBalanced(sortedValues, balanced, 0, sortedValues.size() - 1);
+        balanced.root = buildBalanced(new InOrder<>(bst.root), n);
+        balanced.size = n;
         return balanced;
     }
 
-private static <E extends Comparable<E>> void buildBalanced(
-            List<E> values, BinarySearchTree<E> tree, int start, int end) {
-        if (start > end) return;
-        int mid = (start + end) / 2;
-        tree.add(values.get(mid));
-        buildBalanced(values, tree, start, mid - 1);
-        buildBalanced(values, tree, mid + 1, end);
+    /**
+     * Build a balanced tree of the next n values from the walk, and return its
+     * root (whose parent is left for the caller to set).
+     * 
+     * The tree has the same shape as repeatedly taking the middle value
+     * (start + end) / 2 of the values as the root: the left subtree gets
+     * (n - 1) / 2 of them, the right subtree the rest. The recursion is only
+     * as deep as the new tree is tall.
+     */
+    private static <E> Node<E> buildBalanced(InOrder<E> values, int n) {
+        if (n == 0) return null;
+        int leftSize = (n - 1) / 2;
+        Node<E> left = buildBalanced(values, leftSize);
+        Node<E> node = new Node<>(values.next());
+        Node<E> right = buildBalanced(values, n - 1 - leftSize);
+        node.left = left;
+        node.right = right;
+        if (left != null) left.parent = node;
+        if (right != null) right.parent = node;
+        return node;
+    }
+
+    /**
+     * An in-order walk of a tree, one value at a time.
+     */
+    private static class InOrder<E> {
+        private final Deque<Node<E>> stack = new ArrayDeque<>();
+        private Node<E> n;
+
+        InOrder(Node<E> root) {
+            n = root;
+        }
+
+        E next() {
+            while (n != null) {
+                stack.push(n);
+                n = n.left;
+            }
+            Node<E> next = stack.pop();
+            n = next.right;
+            return next.data;
+        }
+    }
+
+    /**
+     * Rebalance bst in place, reusing its nodes, in O(n) time and O(1) extra
+     * memory, using the Day-Stout-Warren algorithm.
+     * 
+     * First, right rotations straighten the tree into a "vine" in which every
+     * node is the right child of the one before. Then, repeated passes of left
+     * rotations down the vine fold it into a tree: the first pass makes the
+     * extra nodes of the bottom (partial) level into leaves, and each pass
+     * after halves the length of the remaining vine. The result is complete:
+     * every level is full, except perhaps the bottom one.
+     * @param bst
+     */
+    static <E extends Comparable<E>> void balanceInPlace(BinarySearchTree<E> bst) {
+        if (bst.root == null) return;
+        Node<E> pseudoRoot = new Node<>(null);
+        pseudoRoot.right = bst.root;
+        bst.root.parent = pseudoRoot;
+        int n = treeToVine(pseudoRoot);
+        int leaves = n + 1 - Integer.highestOneBit(n + 1);
+        compress(pseudoRoot, leaves);
+        for (int m = n - leaves; m > 1; ) {
+            m /= 2;
+            compress(pseudoRoot, m);
+        }
+        bst.root = pseudoRoot.right;
+        bst.root.parent = null;
+    }
+
+    /**
+     * Rotate the tree hanging to the right of pseudoRoot into a vine.
+     * @return the number of nodes in the vine
+     */
+    private static <E> int treeToVine(Node<E> pseudoRoot) {
+        int n = 0;
+        Node<E> tail = pseudoRoot;
+        Node<E> rest = tail.right;
+        while (rest != null) {
+            if (rest.left == null) {
+                n++;
+                tail = rest;
+                rest = rest.right;
+            } else { // rotate right around rest
+                Node<E> l = rest.left;
+                rest.left = l.right;
+                if (l.right != null) l.right.parent = rest;
+                l.right = rest;
+                rest.parent = l;
+                tail.right = l;
+                l.parent = tail;
+                rest = l;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Rotate left around each of the first count odd-numbered nodes of the
+     * vine hanging to the right of pseudoRoot.
+     */
+    private static <E> void compress(Node<E> pseudoRoot, int count) {
+        Node<E> scanner = pseudoRoot;
+        for (int i = 0; i < count; i++) {
+            Node<E> child = scanner.right;
+            Node<E> r = child.right;
+            scanner.right = r;
+            r.parent = scanner;
+            child.right = r.left;
+            if (r.left != null) r.left.parent = child;
+            r.left = child;
+            child.parent = r;
+            scanner = r;
+        }
     }
 
     /**
@@ -74,18 +214,38 @@ private static <E extends Comparable<E>> void buildBalanced(
      * @return 
      */
     static <E extends Comparable<E>> boolean isBST(Node<E> n) {
-        return isBSTHelper(n, null, null);
+        return isBSTWithin(n, null, null, null);
     }
 
-    private static <E extends Comparable<E>> boolean isBSTHelper(Node<E> n, E min, E max) {
-    if (n == null) return true;
-    if ((min != null && n.data.compareTo(min) <= 0) ||
-        (max != null && n.data.compareTo(max) >= 0)) {
-        return false;
+    /**
+     * Returns true iff the tree rooted at n is a Binary Search Tree whose
+     * values are all strictly between min and max (either of which may be
+     * null, for no bound), or false once cancelled is set.
+     */
+    private static <E extends Comparable<E>> boolean isBSTWithin(Node<E> n, E min, E max,
+            AtomicBoolean cancelled) {
+        // a tree is a BST iff an in-order traversal visits strictly increasing values
+        Deque<Node<E>> stack = new ArrayDeque<>();
+        E previous = min;
+        int visited = 0;
+        while (n != null || !stack.isEmpty()) {
+            if (n != null) {
+                stack.push(n);
+                n = n.left;
+            } else {
+                n = stack.pop();
+                if (previous != null && n.data.compareTo(previous) <= 0) {
+                    return false;
+                }
+                if (isCancelled(++visited, cancelled)) {
+                    return false;
+                }
+                previous = n.data;
+                n = n.right;
+            }
+        }
+        return max == null || previous == null || previous.compareTo(max) < 0;
     }
-    return isBSTHelper(n.left, min, n.data) &&
-           isBSTHelper(n.right, n.data, max);
-}
 
     /**
      * Returns true iff the tree rooted at n is an AVL tree.
@@ -101,33 +261,59 @@ private static <E extends Comparable<E>> void buildBalanced(
      * @returntrue iff the tree rooted at n is an AVL tree
      */
     static <E extends Comparable<E>> boolean isAVLTree(Node<E> n) {
-    return checkAVL(n).isAVL;
-}
-
-private static class AVLInfo {
-    int height;
-    boolean isAVL;
-    AVLInfo(int h, boolean b) {
-        height = h;
-        isAVL = b;
+        return avlHeight(n, null) != NOT_AVL;
     }
-}
-
-private static <E extends Comparable<E>> AVLInfo checkAVL(Node<E> n) {
-    if (n == null) return new AVLInfo(-1, true);
-
-    AVLInfo left = checkAVL(n.left);
-    AVLInfo right = checkAVL(n.right);
 
-    boolean balanced = Math.abs(left.height - right.height) <= 1;
-    boolean orderedLeft = (n.left == null || n.left.data.compareTo(n.data) < 0);
-    boolean orderedRight = (n.right == null || n.right.data.compareTo(n.data) > 0);
+    /**
+     * A height no tree has, returned by avlHeight for trees that aren't AVL trees.
+     */
+    private static final int NOT_AVL = Integer.MIN_VALUE;
 
-    boolean isAVL = left.isAVL && right.isAVL && balanced && orderedLeft && orderedRight;
-    int height = 1 + Math.max(left.height, right.height);
+    /**
+     * Returns the height of the tree rooted at n if it's an AVL tree, or
+     * NOT_AVL if it isn't (or once cancelled is set).
+     */
+    private static <E extends Comparable<E>> int avlHeight(Node<E> n, AtomicBoolean cancelled) {
+        // A post-order traversal, so each node is checked after both its
+        // subtrees. The heights of the finished subtrees whose parents aren't
+        // finished yet are kept on a stack: when a node is visited, the
+        // heights of its (non-empty) right and left subtrees are on top.
+        if (n == null) return -1;
+        Deque<Node<E>> stack = new ArrayDeque<>();
+        Deque<Integer> heights = new ArrayDeque<>();
+        Node<E> last = null;
+        int visited = 0;
+        while (n != null || !stack.isEmpty()) {
+            if (n != null) {
+                stack.push(n);
+                n = n.left;
+                continue;
+            }
+            Node<E> top = stack.peek();
+            if (top.right != null && top.right != last) {
+                n = top.right;
+                continue;
+            }
+            int rightHeight = (top.right == null) ? -1 : heights.pop();
+            int leftHeight = (top.left == null) ? -1 : heights.pop();
+            if (!hasAVLProperty(top, leftHeight, rightHeight) || isCancelled(++visited, cancelled)) {
+                return NOT_AVL;
+            }
+            heights.push(1 + Math.max(leftHeight, rightHeight));
+            last = stack.pop();
+        }
+        return heights.pop();
+    }
 
-    return new AVLInfo(height, isAVL);
-}
+    /**
+     * Returns true iff n's subtrees, of the given heights, are balanced, and
+     * n's children are on the correct sides of it.
+     */
+    private static <E extends Comparable<E>> boolean hasAVLProperty(Node<E> n, int leftHeight, int rightHeight) {
+        return Math.abs(leftHeight - rightHeight) <= 1
+                && (n.left == null || n.left.data.compareTo(n.data) < 0)
+                && (n.right == null || n.right.data.compareTo(n.data) > 0);
+    }
 
     /**
      * Returns true iff the subtrees rooted at n and m have the same values 
@@ -139,9 +325,153 @@ private static <E extends Comparable<E>> AVLInfo checkAVL(Node<E> n) {
      * @return true iff the subtrees rooted at n and m have the same values and same structure
      */
     static <E> boolean equalSubtrees(Node<E> n, Node<E> m) {
-        if (n == null && m == null) return true;   
-        if (n == null || m == null) return false; 
-        if (!n.data.equals(m.data)) return false;
-        return equalSubtrees(n.left, m.left) && equalSubtrees(n.right, m.right);
+        return equalSubtrees(n, m, null);
+    }
+
+    /**
+     * equalSubtrees, returning false once cancelled is set.
+     */
+    private static <E> boolean equalSubtrees(Node<E> n, Node<E> m, AtomicBoolean cancelled) {
+        if (n == null || m == null) return n == m;
+        // pairs of corresponding (non-null) subtrees still to compare
+        Deque<Node<E>> ns = new ArrayDeque<>();
+        Deque<Node<E>> ms = new ArrayDeque<>();
+        ns.push(n);
+        ms.push(m);
+        int visited = 0;
+        while (!ns.isEmpty()) {
+            n = ns.pop();
+            m = ms.pop();
+            if (!n.data.equals(m.data)) return false;
+            if ((n.left == null) != (m.left == null)) return false;
+            if ((n.right == null) != (m.right == null)) return false;
+            if (isCancelled(++visited, cancelled)) return false;
+            if (n.left != null) {
+                ns.push(n.left);
+                ms.push(m.left);
+            }
+            if (n.right != null) {
+                ns.push(n.right);
+                ms.push(m.right);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Parallel checks
+     * 
+     * These give the same answers as the checks above, but split the tree
+     * among the threads of the common ForkJoinPool: the top PARALLEL_DEPTH
+     * levels of the tree are checked node by node, forking a task for each
+     * left subtree, and the subtrees below are each checked sequentially. The
+     * results are combined bottom-up as the tasks are joined.
+     * 
+     * The trees don't keep their subtrees' sizes, so the split is by depth;
+     * a balanced tree splits into about 8 subtrees per thread. Once any task
+     * finds a violation, it sets a flag shared by all of them, and the rest
+     * give up (checking it every CANCEL_CHECK_INTERVAL nodes).
+     */
+
+    private static final int PARALLEL_DEPTH =
+            3 + 32 - Integer.numberOfLeadingZeros(ForkJoinPool.getCommonPoolParallelism());
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 10;
+
+    private static boolean isCancelled(int visited, AtomicBoolean cancelled) {
+        return cancelled != null && (visited & (CANCEL_CHECK_INTERVAL - 1)) == 0 && cancelled.get();
+    }
+
+    /**
+     * If ok is false, cancel the other tasks of the check.
+     * @return ok
+     */
+    private static boolean passed(boolean ok, AtomicBoolean cancelled) {
+        if (!ok) {
+            cancelled.set(true);
+        }
+        return ok;
+    }
+
+    /**
+     * isBST, split among the threads of the common ForkJoinPool.
+     * @param n
+     * @return true iff the tree rooted at n is a Binary Search Tree
+     */
+    static <E extends Comparable<E>> boolean isBSTParallel(Node<E> n) {
+        return isBSTParallel(n, null, null, 0, new AtomicBoolean());
+    }
+
+    private static <E extends Comparable<E>> boolean isBSTParallel(Node<E> n, E min, E max, int depth,
+            AtomicBoolean cancelled) {
+        if (n == null || depth >= PARALLEL_DEPTH) {
+            return passed(isBSTWithin(n, min, max, cancelled), cancelled);
+        }
+        if (cancelled.get()) {
+            return false;
+        }
+        if ((min != null && n.data.compareTo(min) <= 0) || (max != null && n.data.compareTo(max) >= 0)) {
+            return passed(false, cancelled);
+        }
+        ForkJoinTask<Boolean> left = ForkJoinTask.adapt(
+                () -> isBSTParallel(n.left, min, n.data, depth + 1, cancelled)).fork();
+        boolean right = isBSTParallel(n.right, n.data, max, depth + 1, cancelled);
+        return left.join() && right;
+    }
+
+    /**
+     * isAVLTree, split among the threads of the common ForkJoinPool.
+     * @param n
+     * @return true iff the tree rooted at n is an AVL tree
+     */
+    static <E extends Comparable<E>> boolean isAVLTreeParallel(Node<E> n) {
+        return avlHeightParallel(n, 0, new AtomicBoolean()) != NOT_AVL;
+    }
+
+    private static <E extends Comparable<E>> int avlHeightParallel(Node<E> n, int depth, AtomicBoolean cancelled) {
+        if (n == null || depth >= PARALLEL_DEPTH) {
+            int height = avlHeight(n, cancelled);
+            passed(height != NOT_AVL, cancelled);
+            return height;
+        }
+        if (cancelled.get()) {
+            return NOT_AVL;
+        }
+        ForkJoinTask<Integer> left = ForkJoinTask.adapt(
+                () -> avlHeightParallel(n.left, depth + 1, cancelled)).fork();
+        int rightHeight = avlHeightParallel(n.right, depth + 1, cancelled);
+        int leftHeight = left.join();
+        if (leftHeight == NOT_AVL || rightHeight == NOT_AVL) {
+            return NOT_AVL;
+        }
+        if (!passed(hasAVLProperty(n, leftHeight, rightHeight), cancelled)) {
+            return NOT_AVL;
+        }
+        return 1 + Math.max(leftHeight, rightHeight);
     }
-}
\ No newline at end of file
+
+    /**
+     * equalSubtrees, split among the threads of the common ForkJoinPool.
+     * @param n
+     * @param m
+     * @return true iff the subtrees rooted at n and m have the same values and same structure
+     */
+    static <E> boolean equalSubtreesParallel(Node<E> n, Node<E> m) {
+        return equalSubtreesParallel(n, m, 0, new AtomicBoolean());
+    }
+
+    private static <E> boolean equalSubtreesParallel(Node<E> n, Node<E> m, int depth, AtomicBoolean cancelled) {
+        if (n == null || m == null || depth >= PARALLEL_DEPTH) {
+            return passed(equalSubtrees(n, m, cancelled), cancelled);
+        }
+        if (cancelled.get()) {
+            return false;
+        }
+        if (!n.data.equals(m.data)) {
+            return passed(false, cancelled);
+        }
+        ForkJoinTask<Boolean> left = ForkJoinTask.adapt(
+                () -> equalSubtreesParallel(n.left, m.left, depth + 1, cancelled)).fork();
+        boolean right = equalSubtreesParallel(n.right, m.right, depth + 1, cancelled);
+        return left.join() && right;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package maps;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A SimpleOrderedMap that also supports queries based on the order of its
+ * keys, and live views of ranges of its keys.
+ */
+public interface SimpleNavigableMap<K extends Comparable<K>, V> extends SimpleOrderedMap<K, V> {
+    /**
+     * @return the smallest key in the map, or null if the map is empty
+     */
+    public K firstKey();
+
+    /**
+     * @return the largest key in the map, or null if the map is empty
+     */
+    public K lastKey();
+
+    /**
+     * @param k the (non-null) key
+     * @return the largest key in the map less than or equal to k, or null if there is none
+     */
+    public K floorKey(K k);
+
+    /**
+     * @param k the (non-null) key
+     * @return the smallest key in the map greater than or equal to k, or null if there is none
+     */
+    public K ceilingKey(K k);
+
+    /**
+     * @param k the (non-null) key
+     * @return the largest key in the map strictly less than k, or null if there is none
+     */
+    public K lowerKey(K k);
+
+    /**
+     * @param k the (non-null) key
+     * @return the smallest key in the map strictly greater than k, or null if there is none
+     */
+    public K higherKey(K k);
+
+    /**
+     * Return an iterator over the keys of the map in ascending order. Unlike
+     * keys(), the iterator reads the map lazily, and removing a key through
+     * the iterator removes it from the map.
+     *
+     * @return an iterator over the keys of the map in ascending order
+     */
+    public Iterator<K> keyIterator();
+
+    /**
+     * Return a live view of the keys of the map, sorted in ascending order.
+     * Unlike keys(), the view is backed by the map and nothing is copied:
+     * changes to the map are visible in the view, and removing keys from the
+     * view removes them from the map.
+     *
+     * @return a sorted view of the keys of the map
+     */
+    public Set<K> keySet();
+
+    /**
+     * Return a live view of the values of the map, in ascending order of their
+     * keys.
+     *
+     * @return a view of the values of the map
+     * @see #keySet()
+     */
+    public Collection<V> values();
+
+    /**
+     * Return a live view of the key-value pairs of the map, sorted in
+     * ascending order of their keys. Setting the value of an entry writes
+     * through to the map.
+     *
+     * @return a sorted view of the entries of the map
+     * @see #keySet()
+     */
+    public Set<Map.Entry<K, V>> entrySet();
+
+    /**
+     * Return a view of the portion of this map whose keys range from lo,
+     * inclusive, to hi, exclusive.
+     *
+     * The view is backed by this map, so changes to either are visible in the
+     * other. Putting a key outside the range into the view throws an
+     * IllegalArgumentException.
+     *
+     * @param lo the (non-null) inclusive lower bound of the view
+     * @param hi the (non-null) exclusive upper bound of the view
+     * @return a view of the keys in the range [lo, hi)
+     * @throws IllegalArgumentException if lo is greater than hi
+     */
+    public SimpleNavigableMap<K, V> subMap(K lo, K hi);
+
+    /**
+     * Return a view of the portion of this map whose keys are strictly less
+     * than hi.
+     *
+     * @param hi the (non-null) exclusive upper bound of the view
+     * @return a view of the keys less than hi
+     * @see #subMap(Comparable, Comparable)
+     */
+    public SimpleNavigableMap<K, V> headMap(K hi);
+
+    /**
+     * Return a view of the portion of this map whose keys are greater than or
+     * equal to lo.
+     *
+     * @param lo the (non-null) inclusive lower bound of the view
+     * @return a view of the keys greater than or equal to lo
+     * @see #subMap(Comparable, Comparable)
+     */
+    public SimpleNavigableMap<K, V> tailMap(K lo);
+}
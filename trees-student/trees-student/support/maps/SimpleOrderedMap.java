@@ -4,6 +4,8 @@
 
 package maps;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -68,4 +70,63 @@ public interface SimpleOrderedMap<K extends Comparable<K>, V> {
      */
     public Set<K> keys();
 
+    /**
+     * Return the key with exactly i smaller keys in the map, that is, the i-th
+     * smallest key, counting from 0.
+     * 
+     * @param i the rank of the key to return
+     * @return the i-th smallest key in the map
+     * @throws IndexOutOfBoundsException if i is not in [0, size())
+     */
+    public K select(int i);
+
+    /**
+     * Return the number of keys in the map that are strictly less than k. k
+     * need not be in the map.
+     * 
+     * @param k the (non-null) key
+     * @return the number of keys in the map less than k
+     */
+    public int rank(K k);
+
+    /**
+     * Return the number of keys k in the map such that lo <= k < hi.
+     * 
+     * @param lo the (non-null) inclusive lower bound
+     * @param hi the (non-null) exclusive upper bound
+     * @return the number of keys in the map in the range [lo, hi)
+     */
+    public int countInRange(K lo, K hi);
+
+    /**
+     * Insert every key-value pair in the batch into the map, as if by calling
+     * put() once per pair.
+     * 
+     * Implementations may do better than one put() per pair, for example by
+     * sorting the batch and merging it into the map in a single pass.
+     * 
+     * @param batch the (non-null) key-value pairs to insert
+     * @throws NullPointerException if the batch contains a null key
+     */
+    public default void putAll(Map<? extends K, ? extends V> batch) {
+        for (Map.Entry<? extends K, ? extends V> e : batch.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Remove every key in the batch from the map, as if by calling remove()
+     * once per key. Keys that are not in the map are ignored.
+     * 
+     * @param keys the keys to remove
+     * @return the number of keys removed from the map
+     */
+    public default int removeAll(Collection<? extends K> keys) {
+        int before = size();
+        for (K k : keys) {
+            remove(k);
+        }
+        return before - size();
+    }
+
 }
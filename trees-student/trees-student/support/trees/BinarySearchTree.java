@@ -17,28 +17,25 @@ public class BinarySearchTree<E extends Comparable<E>> {
             size = 1;
             return;
         }
-        add(e, root);
-    }
-
-    private void add(E e, Node<E> node) {
-        if (e.equals(node.data)) {
-            node.data = e;
-        }
-        if (e.compareTo(node.data) < 0) {
-            if (node.left == null) {
-                node.left = new Node<>(e, node);
-                size++;
-                return;
-            } else {
-                add(e, node.left);
-            }
-        } else {
-            if (node.right == null) {
-                node.right = new Node<>(e, node);
-                size++;
+        Node<E> node = root;
+        while (true) {
+            if (e.equals(node.data)) {
+                node.data = e;
                 return;
+            } else if (e.compareTo(node.data) < 0) {
+                if (node.left == null) {
+                    node.left = new Node<>(e, node);
+                    size++;
+                    return;
+                }
+                node = node.left;
             } else {
-                add(e, node.right);
+                if (node.right == null) {
+                    node.right = new Node<>(e, node);
+                    size++;
+                    return;
+                }
+                node = node.right;
             }
         }
     }
@@ -47,24 +44,16 @@ public class BinarySearchTree<E extends Comparable<E>> {
         return find(e) != null;
     }
 
-    private Node<E> find(E e, Node<E> n) {
-        if (n == null) {
-            return null;
-        } else if (e.equals(n.data)) {
-            return n;
-        } else if (e.compareTo(n.data) < 0) { // left
-            return find(e, n.left);
-        } else {  // right
-            return find(e, n.right);
-        }
-    }
-
     private Node<E> find(E e) {
-        return find(e, root);
+        Node<E> n = root;
+        while (n != null && !e.equals(n.data)) {
+            n = (e.compareTo(n.data) < 0) ? n.left : n.right; // left or right
+        }
+        return n;
     }
 
     public E findData(E e) {
-        return find(e, root).data;
+        return find(e).data;
     }
 
     private void splice(Node<E> n) {
@@ -8,6 +8,9 @@ public class Node<E> {
     Node<E> left;
     Node<E> right;
     Node<E> parent;
+    int height; // cached height of the subtree rooted here; a leaf has height 0
+    int size = 1; // cached number of nodes in the subtree rooted here
+    long hash; // cached sum of the mixed hash codes of the subtree's values, if the tree keeps hashes
 
     Node(E d) {
         data = d;
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package codecs;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+
+public class CodecsTest {
+
+    private static <E> E roundTrip(Codec<E> codec, E e) {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        codec.encode(e, buf);
+        assertEquals(codec.encodedSize(e), buf.position());
+        buf.flip();
+        E decoded = codec.decode(buf);
+        assertFalse(buf.hasRemaining());
+        return decoded;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertEquals(Integer.valueOf(-5), roundTrip(Codecs.INT, -5));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), roundTrip(Codecs.LONG, Long.MIN_VALUE));
+        assertEquals(Double.valueOf(2.5), roundTrip(Codecs.DOUBLE, 2.5));
+        assertEquals("héllo", roundTrip(Codecs.STRING, "héllo"));
+        assertEquals("", roundTrip(Codecs.STRING, ""));
+    }
+
+    @Test
+    public void testCompareInPlace() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        Codecs.LONG.encode(10L, buf);
+        buf.flip();
+        assertTrue(Codecs.LONG.compareTo(5L, buf) < 0);
+        assertEquals(0, Codecs.LONG.compareTo(10L, buf));
+        assertEquals(0, buf.position());
+
+        buf.clear();
+        Codecs.STRING.encode("m", buf);
+        buf.flip();
+        assertTrue(Codecs.STRING.compareTo("z", buf) > 0);
+        assertEquals(0, buf.position());
+    }
+
+    @Test
+    public void testAbsolute() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        Codecs.LONG.encode(10L, buf, 8);
+        Codecs.STRING.encode("m", buf, 16);
+        assertEquals(0, buf.position());
+        assertEquals(Long.valueOf(10L), Codecs.LONG.decode(buf, 8));
+        assertTrue(Codecs.LONG.compareTo(5L, buf, 8) < 0);
+        assertEquals("m", Codecs.STRING.decode(buf, 16));
+        assertTrue(Codecs.STRING.compareTo("z", buf, 16) > 0);
+        assertEquals(0, buf.position());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package codecs;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class SnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file() {
+        return folder.getRoot().toPath().resolve("snapshot");
+    }
+
+    private void writeStrings(int n) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(file(), 2, n)) {
+            for (int i = 0; i < n; i++) {
+                out.write(i, Codecs.INT, (i % 7 == 0) ? null : "value " + i, Codecs.STRING);
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        // enough entries to refill the buffer several times
+        final int N = 200000;
+        writeStrings(N);
+        try (SnapshotReader in = new SnapshotReader(file())) {
+            assertEquals(2, in.fields());
+            assertEquals(N, in.count());
+            for (int i = 0; i < N; i++) {
+                assertTrue(in.hasNext());
+                assertEquals(Integer.valueOf(i), in.read(Codecs.INT));
+                assertEquals((i % 7 == 0) ? null : "value " + i, in.read(Codecs.STRING));
+                in.endEntry();
+            }
+            assertFalse(in.hasNext());
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        new SnapshotWriter(file(), 1, 0).close();
+        try (SnapshotReader in = new SnapshotReader(file())) {
+            assertEquals(1, in.fields());
+            assertEquals(0, in.count());
+            assertFalse(in.hasNext());
+        }
+    }
+
+    @Test
+    public void testFieldLargerThanBuffer() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 3 * SnapshotWriter.BUFFER_SIZE) {
+            sb.append("abcdefghij");
+        }
+        String big = sb.toString();
+        List<String> values = List.of("a", big, "c");
+        try (SnapshotWriter out = new SnapshotWriter(file(), 1, values.size())) {
+            for (String s : values) {
+                out.write(s, Codecs.STRING);
+            }
+        }
+        List<String> read = new ArrayList<>();
+        try (SnapshotReader in = new SnapshotReader(file())) {
+            while (in.hasNext()) {
+                read.add(in.read(Codecs.STRING));
+                in.endEntry();
+            }
+        }
+        assertEquals(values, read);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTooFewEntries() throws Exception {
+        try (SnapshotWriter out = new SnapshotWriter(file(), 1, 2)) {
+            out.write(1, Codecs.INT);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotASnapshot() throws Exception {
+        Files.write(file(), new byte[100]);
+        new SnapshotReader(file());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws Exception {
+        writeStrings(1000);
+        byte[] bytes = Files.readAllBytes(file());
+        Files.write(file(), java.util.Arrays.copyOf(bytes, bytes.length - 100));
+        try (SnapshotReader in = new SnapshotReader(file())) {
+            while (in.hasNext()) {
+                in.read(Codecs.INT);
+                in.read(Codecs.STRING);
+                in.endEntry();
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorrupt() throws Exception {
+        writeStrings(1000);
+        byte[] bytes = Files.readAllBytes(file());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file(), bytes);
+        try (SnapshotReader in = new SnapshotReader(file())) {
+            while (in.hasNext()) {
+                in.read(Codecs.INT);
+                in.read(Codecs.STRING);
+                in.endEntry();
+            }
+        }
+    }
+
+    @Test
+    public void testCorruptFieldLength() throws Exception {
+        writeStrings(2);
+        byte[] bytes = Files.readAllBytes(file());
+        // the length inside entry 1's string, after the header, entry 0 and entry 1's key
+        java.nio.ByteBuffer.wrap(bytes).putInt(20 + 12 + 8 + 4, 1000);
+        Files.write(file(), bytes);
+        try (SnapshotReader in = new SnapshotReader(file())) {
+            in.read(Codecs.INT);
+            assertNull(in.read(Codecs.STRING));
+            in.endEntry();
+            in.read(Codecs.INT);
+            in.read(Codecs.STRING);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testFailedSaveKeepsOldSnapshot() throws Exception {
+        writeStrings(10);
+        byte[] before = Files.readAllBytes(file());
+        try (SnapshotWriter out = new SnapshotWriter(file(), 2, 10)) {
+            out.write(1, Codecs.INT, "x", Codecs.STRING);
+        } catch (IllegalStateException expected) {
+        }
+        assertArrayEquals(before, Files.readAllBytes(file()));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+}
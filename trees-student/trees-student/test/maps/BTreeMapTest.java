@@ -0,0 +1,174 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package maps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+
+public class BTreeMapTest extends SimpleOrderedMapTest {
+
+    /**
+     * The smallest fanout, so that even small maps have several levels.
+     */
+    @Override
+    protected <V> SimpleOrderedMap<Integer, V> newMap() {
+        return new BTreeMap<>(4);
+    }
+
+    /**
+     * Check the order, fill, depth and cached sizes of the subtree rooted at
+     * x, returning its depth.
+     */
+    @SuppressWarnings("unchecked")
+    private static int checkStructure(BTreeMap<Integer, ?> m, BTreeMap.Node x, Integer lo, Integer hi) {
+        if (x != m.root) {
+            assertTrue(x.n >= m.t - 1);
+        }
+        assertTrue(x.n <= 2 * m.t - 1);
+        for (int i = 0; i < x.n; i++) {
+            Integer k = (Integer) x.keys[i];
+            if (i > 0) assertTrue((Integer) x.keys[i - 1] < k);
+            if (lo != null) assertTrue(k > lo);
+            if (hi != null) assertTrue(k < hi);
+        }
+        if (x.isLeaf()) {
+            assertEquals(x.n, x.size);
+            return 0;
+        }
+        int depth = -1;
+        int size = x.n;
+        for (int i = 0; i <= x.n; i++) {
+            Integer l = (i == 0) ? lo : (Integer) x.keys[i - 1];
+            Integer h = (i == x.n) ? hi : (Integer) x.keys[i];
+            int d = checkStructure(m, x.children[i], l, h);
+            if (depth >= 0) assertEquals(depth, d);
+            depth = d;
+            size += x.children[i].size;
+        }
+        assertEquals(size, x.size);
+        return depth + 1;
+    }
+
+    private static <K> List<K> toList(Iterator<K> it) {
+        List<K> l = new ArrayList<>();
+        while (it.hasNext()) {
+            l.add(it.next());
+        }
+        return l;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFanoutTooSmall() throws Exception {
+        new BTreeMap<Integer, Integer>(3);
+    }
+
+    private static void checkManyActions(int fanout) {
+        final int ACTIONS = 20000;
+        final int BOUND = 2000;
+        Random random = new Random(fanout);
+
+        TreeMap<Integer, Integer> tm = new TreeMap<>();
+        BTreeMap<Integer, Integer> m = new BTreeMap<>(fanout);
+
+        for (int i = 0; i < ACTIONS; i++) {
+            double d = random.nextDouble();
+            int k = random.nextInt(BOUND);
+            if (d < 0.5) {
+                int v = random.nextInt();
+                tm.put(k, v);
+                m.put(k, v);
+            } else if (d < 0.8) {
+                assertEquals(tm.remove(k), m.remove(k));
+            } else {
+                assertEquals(tm.get(k), m.get(k));
+                assertEquals(tm.headMap(k).size(), m.rank(k));
+            }
+            assertEquals(tm.size(), m.size());
+            if (i % 500 == 0) {
+                checkStructure(m, m.root, null, null);
+            }
+        }
+        checkStructure(m, m.root, null, null);
+        assertEquals(tm.keySet(), m.keys());
+        assertEquals(new ArrayList<>(tm.keySet()), toList(m.keyIterator()));
+        int i = 0;
+        for (Integer k : tm.keySet()) {
+            assertEquals(k, m.select(i++));
+        }
+
+        // drain it completely
+        for (Integer k : new ArrayList<>(tm.keySet())) {
+            assertEquals(tm.remove(k), m.remove(k));
+        }
+        assertEquals(0, m.size());
+        checkStructure(m, m.root, null, null);
+    }
+
+    @Test
+    public void testManyActionsSmallFanout() throws Exception {
+        checkManyActions(4);
+        checkManyActions(5);
+    }
+
+    @Test
+    public void testManyActionsLargeFanout() throws Exception {
+        checkManyActions(32);
+        checkManyActions(128);
+    }
+
+    @Test
+    public void testSequentialInsertIsShallow() throws Exception {
+        BTreeMap<Integer, Integer> m = new BTreeMap<>(64);
+        for (int i = 0; i < 100000; i++) {
+            m.put(i, i);
+        }
+        // each node has at least 31 keys, so 100000 keys fit in 4 levels
+        assertTrue(checkStructure(m, m.root, null, null) <= 3);
+    }
+
+    @Test
+    public void testKeyIteratorRemove() throws Exception {
+        BTreeMap<Integer, Integer> m = new BTreeMap<>(4);
+        TreeMap<Integer, Integer> tm = new TreeMap<>();
+        for (int i = 0; i < 500; i++) {
+            m.put(i, i);
+            tm.put(i, i);
+        }
+        Random random = new Random(0);
+        Iterator<Integer> it = m.keyIterator();
+        Iterator<Integer> expected = tm.keySet().iterator();
+        while (expected.hasNext()) {
+            assertTrue(it.hasNext());
+            assertEquals(expected.next(), it.next());
+            if (random.nextBoolean()) {
+                it.remove();
+                expected.remove();
+            }
+        }
+        assertFalse(it.hasNext());
+        checkStructure(m, m.root, null, null);
+        assertEquals(new ArrayList<>(tm.keySet()), toList(m.keyIterator()));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testKeyIteratorFailsFast() throws Exception {
+        BTreeMap<Integer, Integer> m = new BTreeMap<>();
+        m.put(1, 1);
+        m.put(2, 2);
+        Iterator<Integer> it = m.keyIterator();
+        it.next();
+        m.put(3, 3);
+        it.next();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package maps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+
+public class ConcurrentSimpleTreeMapTest {
+
+    @Test
+    public void testEmpty() throws Exception {
+        ConcurrentSimpleTreeMap<Integer, String> m = new ConcurrentSimpleTreeMap<>();
+        assertEquals(0, m.size());
+        assertNull(m.get(1));
+        assertEquals("d", m.getOrDefault(1, "d"));
+        assertNull(m.remove(1));
+        assertTrue(m.keys().isEmpty());
+        assertEquals(0, m.rank(1));
+        assertEquals(0, m.countInRange(0, 10));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPutNullKey() throws Exception {
+        new ConcurrentSimpleTreeMap<Integer, String>().put(null, "a");
+    }
+
+    @Test
+    public void testBatchesAreAtomic() throws Exception {
+        ConcurrentSimpleTreeMap<Integer, Integer> m = new ConcurrentSimpleTreeMap<>();
+        HashMap<Integer, Integer> batch = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            batch.put(i, i);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Integer> torn = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                int size = m.size();
+                if (size != 0 && size != 100) {
+                    torn.set(size);
+                }
+            }
+        });
+        reader.start();
+        for (int round = 0; round < 1000; round++) {
+            m.putAll(batch);
+            assertEquals(100, m.removeAll(batch.keySet()));
+        }
+        done.set(true);
+        reader.join();
+        assertNull(torn.get());
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        final int ACTIONS = 10000;
+        final int BOUND = 300;
+        Random random = new Random(0);
+
+        TreeMap<Integer, Integer> tm = new TreeMap<>();
+        ConcurrentSimpleTreeMap<Integer, Integer> m = new ConcurrentSimpleTreeMap<>();
+
+        for (int i = 0; i < ACTIONS; i++) {
+            double d = random.nextDouble();
+            int k = random.nextInt(BOUND);
+            if (d < 0.4) {
+                int v = random.nextInt();
+                tm.put(k, v);
+                m.put(k, v);
+            } else if (d < 0.7) {
+                assertEquals(tm.remove(k), m.remove(k));
+            } else {
+                assertEquals(tm.get(k), m.get(k));
+                assertEquals(tm.headMap(k).size(), m.rank(k));
+                int hi = k + random.nextInt(50);
+                assertEquals(tm.subMap(k, hi).size(), m.countInRange(k, hi));
+            }
+            assertEquals(tm.size(), m.size());
+        }
+        assertEquals(tm.keySet(), m.keys());
+        int i = 0;
+        for (Integer k : tm.keySet()) {
+            assertEquals(k, m.select(i++));
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws Exception {
+        final int WRITERS = 2;
+        final int READERS = 4;
+        final int BOUND = 1000;
+        final int WRITES = 20000;
+
+        // Every key k is only ever mapped to k, and even keys are never
+        // removed, so every read has exactly one (or two) possible answers.
+        ConcurrentSimpleTreeMap<Integer, Integer> m = new ConcurrentSimpleTreeMap<>();
+        for (int k = 0; k < BOUND; k += 2) {
+            m.put(k, k);
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> writers = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int seed = w;
+            writers.add(new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < WRITES; i++) {
+                    int k = 2 * random.nextInt(BOUND / 2) + 1;
+                    if (random.nextBoolean()) {
+                        m.put(k, k);
+                    } else {
+                        m.remove(k);
+                    }
+                }
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            final int seed = 100 + r;
+            readers.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    while (!done.get()) {
+                        int k = random.nextInt(BOUND);
+                        Integer v = m.get(k);
+                        if (k % 2 == 0) {
+                            assertEquals(Integer.valueOf(k), v);
+                        } else if (v != null) {
+                            assertEquals(Integer.valueOf(k), v);
+                        }
+                        int rank = m.rank(k);
+                        assertTrue(rank >= k / 2 && rank <= k);
+                        int size = m.size();
+                        assertTrue(size >= BOUND / 2 && size <= BOUND);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+
+        for (Thread t : readers) {
+            t.start();
+        }
+        for (Thread t : writers) {
+            t.start();
+        }
+        for (Thread t : writers) {
+            t.join();
+        }
+        done.set(true);
+        for (Thread t : readers) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        for (Integer k : m.keys()) {
+            expected.put(k, k);
+        }
+        for (int k = 0; k < BOUND; k++) {
+            assertEquals(expected.get(k), m.get(k));
+        }
+        assertEquals(expected.size(), m.size());
+    }
+}
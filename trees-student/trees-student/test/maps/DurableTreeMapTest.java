@@ -0,0 +1,307 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package maps;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codecs.Codecs;
+
+
+public class DurableTreeMapTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path dir() {
+        return folder.getRoot().toPath().resolve("map");
+    }
+
+    private DurableTreeMap<Integer, String> open() throws IOException {
+        return new DurableTreeMap<>(dir(), Codecs.INT, Codecs.STRING);
+    }
+
+    private static void assertSameContents(TreeMap<Integer, String> expected, SimpleOrderedMap<Integer, String> m) {
+        assertEquals(expected.size(), m.size());
+        assertEquals(expected.keySet(), m.keys());
+        for (Integer k : expected.keySet()) {
+            assertEquals(expected.get(k), m.get(k));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertEquals(0, m.size());
+            assertNull(m.get(1));
+            assertEquals("x", m.getOrDefault(1, "x"));
+            assertNull(m.remove(1));
+            assertTrue(m.keys().isEmpty());
+        }
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertEquals(0, m.size());
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        try (DurableTreeMap<Integer, String> m = open()) {
+            m.put(2, "b");
+            m.put(1, "a");
+            m.put(3, "c");
+            m.put(2, "B");
+            m.put(4, null);
+            assertEquals("c", m.remove(3));
+        }
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertEquals(3, m.size());
+            assertEquals("a", m.get(1));
+            assertEquals("B", m.get(2));
+            assertNull(m.get(3));
+            assertEquals("x", m.getOrDefault(4, "x"));
+            assertEquals(2, m.rank(4));
+            assertEquals(Integer.valueOf(4), m.select(2));
+            assertEquals(2, m.countInRange(2, 10));
+        }
+    }
+
+    @Test
+    public void testCrashWithoutClose() throws Exception {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        DurableTreeMap<Integer, String> crashed = open();
+        for (int i = 0; i < 100; i++) {
+            crashed.put(i, Integer.toString(i));
+            expected.put(i, Integer.toString(i));
+        }
+        crashed.abandon();
+        // every put has returned, so every put is in the log
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertSameContents(expected, m);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenTwice() throws Exception {
+        try (DurableTreeMap<Integer, String> m = open()) {
+            open();
+        }
+    }
+
+    @Test
+    public void testTornTail() throws Exception {
+        try (DurableTreeMap<Integer, String> m = open()) {
+            m.put(1, "a");
+            m.put(2, "b");
+        }
+        Path log = dir().resolve(DurableTreeMap.LOG);
+        long length = Files.size(log);
+        // half a record, as a crash during a write might leave
+        Files.write(log, new byte[] {0, 0, 0, 20, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertEquals(2, m.size());
+            assertEquals(length, Files.size(log));
+            m.put(3, "c");
+        }
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertEquals(3, m.size());
+            assertEquals("c", m.get(3));
+        }
+    }
+
+    @Test
+    public void testCorruptRecord() throws Exception {
+        try (DurableTreeMap<Integer, String> m = open()) {
+            m.put(1, "a");
+            m.put(2, "b");
+        }
+        Path log = dir().resolve(DurableTreeMap.LOG);
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(log, bytes);
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertEquals(1, m.size());
+            assertEquals("a", m.get(1));
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws Exception {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        DurableTreeMap<Integer, String> m = open();
+        for (int i = 0; i < 50; i++) {
+            m.put(i, "v" + i);
+            expected.put(i, "v" + i);
+        }
+        m.checkpoint();
+        assertEquals(0, Files.size(dir().resolve(DurableTreeMap.LOG)));
+        assertTrue(Files.exists(dir().resolve(DurableTreeMap.SNAPSHOT)));
+        for (int i = 0; i < 50; i += 3) {
+            m.remove(i);
+            expected.remove(i);
+        }
+        m.put(100, "w");
+        expected.put(100, "w");
+        m.abandon();
+        // the snapshot plus the log after it
+        try (DurableTreeMap<Integer, String> reopened = open()) {
+            assertSameContents(expected, reopened);
+        }
+    }
+
+    @Test
+    public void testFailedCheckpointKeepsLog() throws Exception {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        DurableTreeMap<Integer, String> m = open();
+        for (int i = 0; i < 50; i++) {
+            m.put(i, "v" + i);
+            expected.put(i, "v" + i);
+        }
+        long logSize = Files.size(dir().resolve(DurableTreeMap.LOG));
+        // a directory where the snapshot would be written makes the save fail
+        Path tmp = Files.createDirectory(dir().resolve(DurableTreeMap.SNAPSHOT + ".tmp"));
+        try {
+            m.checkpoint();
+            fail("the checkpoint should have failed");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(logSize, Files.size(dir().resolve(DurableTreeMap.LOG)));
+        assertFalse(Files.exists(dir().resolve(DurableTreeMap.SNAPSHOT)));
+        assertSameContents(expected, m);
+
+        // the map still works, and recovers everything from the log
+        m.put(100, "w");
+        expected.put(100, "w");
+        m.abandon();
+        Files.delete(tmp);
+        try (DurableTreeMap<Integer, String> reopened = open()) {
+            assertSameContents(expected, reopened);
+            reopened.checkpoint();
+            assertEquals(0, Files.size(dir().resolve(DurableTreeMap.LOG)));
+        }
+    }
+
+    @Test
+    public void testAutomaticCheckpoint() throws Exception {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        try (DurableTreeMap<Integer, String> m = new DurableTreeMap<>(dir(), Codecs.INT, Codecs.STRING,
+                Duration.ZERO, 1024)) {
+            for (int i = 0; i < 500; i++) {
+                m.put(i % 37, "v" + i);
+                expected.put(i % 37, "v" + i);
+                assertTrue(Files.size(dir().resolve(DurableTreeMap.LOG)) < 1024);
+            }
+        }
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertSameContents(expected, m);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws Exception {
+        DurableTreeMap<Integer, String> m = open();
+        m.close();
+        m.put(1, "a");
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        final int threads = 8;
+        final int puts = 200;
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        try (DurableTreeMap<Integer, String> m = new DurableTreeMap<>(dir(), Codecs.INT, Codecs.STRING,
+                Duration.ofMillis(1), 0)) {
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                workers.add(new Thread(() -> {
+                    for (int i = 0; i < puts; i++) {
+                        m.put(id * puts + i, id + ":" + i);
+                    }
+                }));
+                for (int i = 0; i < puts; i++) {
+                    expected.put(id * puts + i, id + ":" + i);
+                }
+            }
+            for (Thread w : workers) {
+                w.start();
+            }
+            for (Thread w : workers) {
+                w.join();
+            }
+            assertSameContents(expected, m);
+            // concurrent changes share fsyncs
+            assertTrue(m.syncs < threads * puts);
+        }
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertSameContents(expected, m);
+        }
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        try (DurableTreeMap<Integer, String> m = open()) {
+            TreeMap<Integer, String> batch = new TreeMap<>();
+            for (int i = 0; i < 500; i++) {
+                batch.put(i, "v" + i);
+            }
+            long syncs = m.syncs;
+            m.putAll(batch);
+            expected.putAll(batch);
+            // one commit for the whole batch
+            assertEquals(syncs + 1, m.syncs);
+
+            List<Integer> keys = new ArrayList<>();
+            for (int i = 0; i < 1000; i += 3) {
+                keys.add(i);
+            }
+            syncs = m.syncs;
+            assertEquals(167, m.removeAll(keys));
+            expected.keySet().removeAll(keys);
+            assertEquals(syncs + 1, m.syncs);
+            assertSameContents(expected, m);
+        }
+        try (DurableTreeMap<Integer, String> m = open()) {
+            assertSameContents(expected, m);
+        }
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        Random r = new Random(17);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        DurableTreeMap<Integer, String> m = open();
+        for (int i = 0; i < 2000; i++) {
+            int k = r.nextInt(200);
+            int action = r.nextInt(10);
+            if (action < 5) {
+                m.put(k, "v" + i);
+                expected.put(k, "v" + i);
+            } else if (action < 9) {
+                assertEquals(expected.remove(k), m.remove(k));
+            } else {
+                m.checkpoint();
+            }
+        }
+        assertSameContents(expected, m);
+        m.abandon();
+        try (DurableTreeMap<Integer, String> reopened = open()) {
+            assertSameContents(expected, reopened);
+        }
+    }
+}
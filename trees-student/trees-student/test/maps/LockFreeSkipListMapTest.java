@@ -0,0 +1,218 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package maps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+
+public class LockFreeSkipListMapTest {
+
+    @Test
+    public void testEmpty() throws Exception {
+        LockFreeSkipListMap<Integer, String> m = new LockFreeSkipListMap<>();
+        assertEquals(0, m.size());
+        assertNull(m.get(1));
+        assertEquals("d", m.getOrDefault(1, "d"));
+        assertNull(m.remove(1));
+        assertTrue(m.keys().isEmpty());
+        assertFalse(m.keyIterator().hasNext());
+        assertEquals(0, m.rank(1));
+        assertEquals(0, m.countInRange(0, 10));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPutNullValue() throws Exception {
+        new LockFreeSkipListMap<Integer, String>().put(1, null);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSelectOutOfBounds() throws Exception {
+        LockFreeSkipListMap<Integer, String> m = new LockFreeSkipListMap<>();
+        m.put(1, "a");
+        m.select(1);
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        final int ACTIONS = 20000;
+        final int BOUND = 500;
+        Random random = new Random(0);
+
+        TreeMap<Integer, Integer> tm = new TreeMap<>();
+        LockFreeSkipListMap<Integer, Integer> m = new LockFreeSkipListMap<>();
+
+        for (int i = 0; i < ACTIONS; i++) {
+            double d = random.nextDouble();
+            int k = random.nextInt(BOUND);
+            if (d < 0.4) {
+                int v = random.nextInt();
+                tm.put(k, v);
+                m.put(k, v);
+            } else if (d < 0.7) {
+                assertEquals(tm.remove(k), m.remove(k));
+            } else {
+                assertEquals(tm.get(k), m.get(k));
+                assertEquals(tm.headMap(k).size(), m.rank(k));
+                int hi = k + random.nextInt(50);
+                assertEquals(tm.subMap(k, hi).size(), m.countInRange(k, hi));
+            }
+            assertEquals(tm.size(), m.size());
+        }
+        assertEquals(tm.keySet(), m.keys());
+        List<Integer> keys = new ArrayList<>();
+        Iterator<Integer> it = m.keyIterator();
+        while (it.hasNext()) {
+            keys.add(it.next());
+        }
+        assertEquals(new ArrayList<>(tm.keySet()), keys);
+        int i = 0;
+        for (Integer k : tm.keySet()) {
+            assertEquals(k, m.select(i++));
+        }
+    }
+
+    @Test
+    public void testKeyIteratorRemove() throws Exception {
+        LockFreeSkipListMap<Integer, Integer> m = new LockFreeSkipListMap<>();
+        for (int i = 0; i < 100; i++) {
+            m.put(i, i);
+        }
+        Iterator<Integer> it = m.keyIterator();
+        while (it.hasNext()) {
+            if (it.next() % 3 != 0) {
+                it.remove();
+            }
+        }
+        assertEquals(34, m.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals((i % 3 == 0) ? Integer.valueOf(i) : null, m.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final int THREADS = 4;
+        final int PER_THREAD = 20000;
+
+        // Each thread puts and then removes its own disjoint keys, interleaved
+        // with the other threads' keys, then leaves every even key it owns.
+        LockFreeSkipListMap<Integer, Integer> m = new LockFreeSkipListMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        int k = i * THREADS + id;
+                        m.put(k, k);
+                        assertEquals(Integer.valueOf(k), m.get(k));
+                    }
+                    for (int i = 1; i < PER_THREAD; i += 2) {
+                        int k = i * THREADS + id;
+                        assertEquals(Integer.valueOf(k), m.remove(k));
+                        assertNull(m.get(k));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        assertEquals(THREADS * PER_THREAD / 2, m.size());
+        Iterator<Integer> it = m.keyIterator();
+        int expected = 0;
+        while (it.hasNext()) {
+            assertEquals(Integer.valueOf(expected), it.next());
+            expected++;
+            if ((expected / THREADS) % 2 == 1) {
+                expected += THREADS;
+            }
+        }
+        assertEquals(THREADS * PER_THREAD, expected);
+    }
+
+    @Test
+    public void testConcurrentContendedKeys() throws Exception {
+        final int THREADS = 4;
+        final int BOUND = 64;
+        final int ACTIONS = 50000;
+
+        // Every key k is only ever mapped to k, so any value read must match.
+        LockFreeSkipListMap<Integer, Integer> m = new LockFreeSkipListMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int seed = t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int i = 0; i < ACTIONS; i++) {
+                        int k = random.nextInt(BOUND);
+                        Integer v;
+                        double d = random.nextDouble();
+                        if (d < 0.4) {
+                            m.put(k, k);
+                            v = k;
+                        } else if (d < 0.8) {
+                            v = m.remove(k);
+                        } else {
+                            v = m.get(k);
+                        }
+                        if (v != null) {
+                            assertEquals(Integer.valueOf(k), v);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        List<Integer> keys = new ArrayList<>();
+        Iterator<Integer> it = m.keyIterator();
+        while (it.hasNext()) {
+            keys.add(it.next());
+        }
+        assertEquals(keys.size(), m.size());
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(keys.get(i - 1) < keys.get(i));
+        }
+        for (int k = 0; k < BOUND; k++) {
+            assertEquals(keys.contains(k) ? Integer.valueOf(k) : null, m.get(k));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package maps;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+
+public class LongObjectTreeMapTest {
+
+    @Test
+    public void testEmpty() throws Exception {
+        LongObjectTreeMap<String> m = new LongObjectTreeMap<>();
+        assertEquals(0, m.size());
+        assertNull(m.get(1));
+        assertEquals("d", m.getOrDefault(1, "d"));
+        assertNull(m.remove(1));
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        final int ACTIONS = 10000;
+        final int BOUND = 300;
+        Random random = new Random(0);
+
+        HashMap<Long, Integer> hm = new HashMap<>();
+        LongObjectTreeMap<Integer> m = new LongObjectTreeMap<>();
+
+        for (int i = 0; i < ACTIONS; i++) {
+            double d = random.nextDouble();
+            long k = random.nextInt(BOUND) * 1000000007L;
+            if (d < 0.4) {
+                int v = random.nextInt(BOUND);
+                m.put(k, v);
+                hm.put(k, v);
+                assertEquals(Integer.valueOf(v), m.get(k));
+            } else if (d < 0.7) {
+                assertEquals(hm.remove(k), m.remove(k));
+            } else {
+                assertEquals(hm.get(k), m.get(k));
+                assertEquals(hm.containsKey(k), m.containsKey(k));
+            }
+            assertEquals(hm.size(), m.size());
+        }
+
+        TreeMap<Long, Integer> tm = new TreeMap<>(hm);
+        PrimitiveIterator.OfLong it = m.keyIterator();
+        int i = 0;
+        for (Long k : tm.keySet()) {
+            assertEquals(k.longValue(), it.nextLong());
+            assertEquals(k.longValue(), m.select(i));
+            assertEquals(i, m.rank(k));
+            i++;
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testFromSorted() throws Exception {
+        LongObjectTreeMap<String> m = LongObjectTreeMap.fromSorted(
+                new long[] {Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE},
+                new String[] {"min", "a", "b", "c", "max"});
+        assertEquals(5, m.size());
+        assertEquals("min", m.get(Long.MIN_VALUE));
+        assertEquals("b", m.get(0));
+        assertEquals(1, m.select(3));
+        assertEquals(2, m.countInRange(0, Long.MAX_VALUE));
+        m.put(2, "d");
+        assertEquals("d", m.remove(2));
+        assertEquals(5, m.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedUnsorted() throws Exception {
+        LongObjectTreeMap.fromSorted(new long[] {1, 1}, new String[] {"a", "b"});
+    }
+}
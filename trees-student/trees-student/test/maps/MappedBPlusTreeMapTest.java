@@ -0,0 +1,194 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package maps;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import codecs.Codecs;
+
+
+public class MappedBPlusTreeMapTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file() throws IOException {
+        return folder.getRoot().toPath().resolve("map.db");
+    }
+
+    private static <K> List<K> toList(Iterator<K> it) {
+        List<K> l = new ArrayList<>();
+        while (it.hasNext()) {
+            l.add(it.next());
+        }
+        return l;
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        try (MappedBPlusTreeMap<Integer, Long> m = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG)) {
+            assertEquals(0, m.size());
+            assertNull(m.get(1));
+            assertEquals(Long.valueOf(7), m.getOrDefault(1, 7L));
+            assertNull(m.remove(1));
+            assertTrue(m.keys().isEmpty());
+            assertFalse(m.keyIterator().hasNext());
+            assertEquals(0, m.rank(1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVariableWidthCodec() throws Exception {
+        new MappedBPlusTreeMap<>(file(), Codecs.STRING, Codecs.LONG);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedCodec() throws Exception {
+        new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG).close();
+        new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.INT);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAMapFile() throws Exception {
+        Files.write(file(), new byte[MappedBPlusTreeMap.PAGE_SIZE]);
+        new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG);
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        final int ACTIONS = 20000;
+        final int BOUND = 5000;
+        Random random = new Random(0);
+        TreeMap<Integer, Long> tm = new TreeMap<>();
+        // a small page cache, so the map flushes many times along the way
+        try (MappedBPlusTreeMap<Integer, Long> m = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG, 64)) {
+            for (int i = 0; i < ACTIONS; i++) {
+                double d = random.nextDouble();
+                int k = random.nextInt(BOUND);
+                if (d < 0.5) {
+                    long v = random.nextLong();
+                    tm.put(k, v);
+                    m.put(k, v);
+                } else if (d < 0.8) {
+                    assertEquals(tm.remove(k), m.remove(k));
+                } else {
+                    assertEquals(tm.get(k), m.get(k));
+                    assertEquals(tm.headMap(k).size(), m.rank(k));
+                }
+                assertEquals(tm.size(), m.size());
+            }
+            assertEquals(tm.keySet(), m.keys());
+            assertEquals(new ArrayList<>(tm.keySet()), toList(m.keyIterator()));
+            assertEquals(new ArrayList<>(tm.subMap(1000, 2000).keySet()), toList(m.keyIterator(1000, 2000)));
+            assertEquals(tm.subMap(1000, 2000).size(), m.countInRange(1000, 2000));
+            int i = 0;
+            for (Integer k : tm.keySet()) {
+                assertEquals(k, m.select(i++));
+            }
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        final int N = 100000;
+        try (MappedBPlusTreeMap<Integer, Long> m = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG)) {
+            for (int i = N - 1; i >= 0; i--) {
+                m.put(i * 2, (long) i);
+            }
+            for (int i = 0; i < N; i += 3) {
+                m.remove(i * 2);
+            }
+        }
+        try (MappedBPlusTreeMap<Integer, Long> m = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG)) {
+            assertEquals(N - (N + 2) / 3, m.size());
+            for (int i = 0; i < N; i++) {
+                assertEquals((i % 3 == 0) ? null : Long.valueOf(i), m.get(i * 2));
+                assertNull(m.get(i * 2 + 1));
+            }
+            assertEquals(Integer.valueOf(2), m.select(0));
+            assertEquals(1, m.rank(3));
+            m.put(-1, -1L);
+            assertEquals(Integer.valueOf(-1), m.select(0));
+        }
+    }
+
+    @Test
+    public void testUnflushedChangesAreLostOnCrash() throws Exception {
+        MappedBPlusTreeMap<Integer, Long> m = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG);
+        for (int i = 0; i < 1000; i++) {
+            m.put(i, (long) i);
+        }
+        m.flush();
+        for (int i = 1000; i < 2000; i++) {
+            m.put(i, (long) i);
+        }
+        m.remove(0);
+        // "crash": abandon m without closing it
+        try (MappedBPlusTreeMap<Integer, Long> r = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG)) {
+            assertEquals(1000, r.size());
+            assertEquals(Long.valueOf(0), r.get(0));
+            assertNull(r.get(1000));
+        }
+    }
+
+    @Test
+    public void testCompleteJournalIsReplayed() throws Exception {
+        MappedBPlusTreeMap<Integer, Long> m = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG);
+        for (int i = 0; i < 5000; i++) {
+            m.put(i, (long) i);
+        }
+        // "crash" after the journal is durable, but before the file is updated
+        m.writeJournal();
+        try (MappedBPlusTreeMap<Integer, Long> r = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG)) {
+            assertEquals(5000, r.size());
+            for (int i = 0; i < 5000; i++) {
+                assertEquals(Long.valueOf(i), r.get(i));
+            }
+        }
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("map.db.journal")));
+    }
+
+    @Test
+    public void testTornJournalIsDiscarded() throws Exception {
+        MappedBPlusTreeMap<Integer, Long> m = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG);
+        for (int i = 0; i < 100; i++) {
+            m.put(i, (long) i);
+        }
+        m.flush();
+        for (int i = 100; i < 5000; i++) {
+            m.put(i, (long) i);
+        }
+        m.writeJournal();
+        // "crash" part-way through writing the journal
+        Path journal = folder.getRoot().toPath().resolve("map.db.journal");
+        byte[] bytes = Files.readAllBytes(journal);
+        Files.write(journal, java.util.Arrays.copyOf(bytes, bytes.length / 2));
+        try (MappedBPlusTreeMap<Integer, Long> r = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG)) {
+            assertEquals(100, r.size());
+            assertEquals(Long.valueOf(99), r.get(99));
+            assertNull(r.get(100));
+        }
+        assertFalse(Files.exists(journal));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws Exception {
+        MappedBPlusTreeMap<Integer, Long> m = new MappedBPlusTreeMap<>(file(), Codecs.INT, Codecs.LONG);
+        m.close();
+        m.get(1);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package maps;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+
+/**
+ * The tests every SimpleOrderedMap must pass. Each engine's test class
+ * extends this one and supplies the map under test through newMap().
+ */
+public abstract class SimpleOrderedMapTest {
+
+    /**
+     * @return a new, empty map of the engine under test
+     */
+    protected abstract <V> SimpleOrderedMap<Integer, V> newMap();
+
+    @Test
+    public void testCreation() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+        assertEquals(0, m.size());
+        assertEquals(null, m.get(1));
+        assertEquals(new HashSet<>(), m.keys());
+    }
+
+    @Test
+    public void testPutOne() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+        m.put(1, 10);
+    }
+
+    @Test
+    public void testGetOne() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+        m.put(1, 10);
+        assertEquals(Integer.valueOf(10), m.get(1));
+        assertEquals(null, m.get(2));
+    }
+
+    @Test
+    public void testGetOrDefaultOne() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+        m.put(1, 10);
+        assertEquals(Integer.valueOf(10), m.getOrDefault(1, 20));
+        assertEquals(Integer.valueOf(20), m.getOrDefault(2, 20));
+    }
+
+    @Test
+    public void testSizeOne() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+        m.put(1, 10);
+        assertEquals(1, m.size());
+    }
+
+    @Test
+    public void testSizeTwo() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+        m.put(1, 10);
+        m.put(2, 20);
+        assertEquals(2, m.size());
+    }
+
+    @Test
+    public void testReplaceOne() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+        m.put(1, 10);
+        assertEquals(Integer.valueOf(10), m.get(1));
+        m.put(1, 20);
+        assertEquals(Integer.valueOf(20), m.get(1));
+        assertEquals(1, m.size());
+    }
+
+    @Test
+    public void testRemoveOne() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+        m.put(1, 10);
+        assertEquals(null, m.remove(2));
+        assertEquals(1, m.size());
+
+        assertEquals(Integer.valueOf(10), m.remove(1));
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public void testOrderStatistics() throws Exception {
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+        for (int i = 9; i >= 0; i--) {
+            m.put(10 * i, i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(10 * i), m.select(i));
+            assertEquals(i, m.rank(10 * i));
+        }
+        assertEquals(10, m.rank(1000));
+        assertEquals(3, m.countInRange(15, 45));
+        assertEquals(0, m.countInRange(45, 15));
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        final int ACTIONS = 1000;
+        final int BOUND = 100;
+        Random random = new Random(0);
+
+        HashMap<Integer, Integer> hm = new HashMap<>();
+        SimpleOrderedMap<Integer, Integer> m = newMap();
+
+        for (int i = 0; i < ACTIONS; i++) {
+            double d = random.nextDouble();
+            if (d < 0.35) {
+                // put
+                int k = random.nextInt(BOUND);
+                int v = random.nextInt(BOUND);
+                m.put(k, v);
+                hm.put(k, v);
+                assertEquals(Integer.valueOf(v), m.get(k));
+                assertEquals(hm.size(), m.size());
+            } else if (d < 0.65) {
+                // remove
+                int k = random.nextInt(BOUND);
+                assertEquals(hm.remove(Integer.valueOf(k)), m.remove(Integer.valueOf(k)));
+            } else if (d < 0.85) {
+                // get
+                int k = random.nextInt(BOUND);
+                assertEquals(hm.get(k), m.get(k));
+            } else {
+                // getOrDefault
+                int k = random.nextInt(BOUND);
+                assertEquals(hm.getOrDefault(k, BOUND), m.getOrDefault(k, BOUND));
+            }
+            assertEquals(hm.size(), m.size());
+        }
+    }
+
+    @Test
+    public void testManyActions1000() throws Exception {
+        final int ROUNDS = 1000;
+        final int ACTIONS = 1000;
+        final int BOUND = 100;
+        Random random = new Random(0);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            HashMap<Integer, Integer> hm = new HashMap<>();
+            SimpleOrderedMap<Integer, Integer> m = newMap();
+
+            for (int i = 0; i < ACTIONS; i++) {
+                double d = random.nextDouble();
+                if (d < 0.35) {
+                    // put
+                    int k = random.nextInt(BOUND);
+                    int v = random.nextInt(BOUND);
+                    m.put(k, v);
+                    hm.put(k, v);
+                    assertEquals(Integer.valueOf(v), m.get(k));
+                    assertEquals(hm.size(), m.size());
+                } else if (d < 0.65) {
+                    // remove
+                    int k = random.nextInt(BOUND);
+                    assertEquals(hm.remove(Integer.valueOf(k)), m.remove(Integer.valueOf(k)));
+                } else if (d < 0.85) {
+                    // get
+                    int k = random.nextInt(BOUND);
+                    assertEquals(hm.get(k), m.get(k));
+                } else {
+                    // getOrDefault
+                    int k = random.nextInt(BOUND);
+                    assertEquals(hm.getOrDefault(k, BOUND), m.getOrDefault(k, BOUND));
+                }
+                assertEquals(hm.size(), m.size());
+            }
+        }
+    }
+
+    @Test
+    public void testPutAll() throws Exception {
+        Random r = new Random(25);
+        for (int round = 0; round < 200; round++) {
+            SimpleOrderedMap<Integer, Integer> m = newMap();
+            TreeMap<Integer, Integer> expected = new TreeMap<>();
+            int n = r.nextInt(500);
+            for (int i = 0; i < n; i++) {
+                int k = r.nextInt(1000);
+                m.put(k, i);
+                expected.put(k, i);
+            }
+            // batches both smaller and larger than the map, sorted and not
+            Map<Integer, Integer> batch = r.nextBoolean() ? new HashMap<>() : new TreeMap<>();
+            int b = (round % 2 == 0) ? r.nextInt(10) : r.nextInt(1000);
+            for (int i = 0; i < b; i++) {
+                batch.put(r.nextInt(1000), -i);
+            }
+            m.putAll(batch);
+            expected.putAll(batch);
+            assertSameMap(expected, m);
+        }
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception {
+        Random r = new Random(125);
+        for (int round = 0; round < 200; round++) {
+            SimpleOrderedMap<Integer, Integer> m = newMap();
+            TreeMap<Integer, Integer> expected = new TreeMap<>();
+            int n = r.nextInt(500);
+            for (int i = 0; i < n; i++) {
+                int k = r.nextInt(1000);
+                m.put(k, i);
+                expected.put(k, i);
+            }
+            List<Integer> keys = new ArrayList<>();
+            int b = (round % 2 == 0) ? r.nextInt(10) : r.nextInt(1000);
+            for (int i = 0; i < b; i++) {
+                keys.add(r.nextInt(1000));
+            }
+            int before = expected.size();
+            expected.keySet().removeAll(keys);
+            assertEquals(before - expected.size(), m.removeAll(keys));
+            assertSameMap(expected, m);
+        }
+    }
+
+    private static void assertSameMap(TreeMap<Integer, Integer> expected, SimpleOrderedMap<Integer, Integer> m) {
+        assertEquals(expected.size(), m.size());
+        assertEquals(expected.keySet(), m.keys());
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue(), m.get(e.getKey()));
+            assertEquals(e.getKey(), m.select(i));
+            assertEquals(i, m.rank(e.getKey()));
+            i++;
+        }
+    }
+}
@@ -6,166 +6,257 @@ package maps;
 
 import static org.junit.Assert.*;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import codecs.Codecs;
 
-public class SimpleTreeMapTest {
+
+public class SimpleTreeMapTest extends SimpleOrderedMapTest {
     //  @Rule
     //  public Timeout globalTimeout = Timeout.seconds(10); // 10 seconds
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setup() {
     }
 
-    @Test
-    public void testCreation() throws Exception {
-        SimpleOrderedMap<Integer, Integer> m = new SimpleTreeMap<>();
+    @Override
+    protected <V> SimpleOrderedMap<Integer, V> newMap() {
+        return new SimpleTreeMap<>();
     }
 
     @Test
-    public void testEmpty() throws Exception {
-        SimpleOrderedMap<Integer, Integer> m = new SimpleTreeMap<>();
-        assertEquals(0, m.size());
-        assertEquals(null, m.get(1));
-        assertEquals(new HashSet<>(), m.keys());
+    public void testFromSorted() throws Exception {
+        Integer[] keys = new Integer[100];
+        String[] values = new String[100];
+        for (int i = 0; i < 100; i++) {
+            keys[i] = i;
+            values[i] = "v" + i;
+        }
+        SimpleTreeMap<Integer, String> m = SimpleTreeMap.fromSorted(keys, values);
+        assertEquals(100, m.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, m.get(i));
+        }
+        m.put(100, "v100");
+        assertEquals("v100", m.get(100));
+        assertEquals(101, m.size());
     }
 
     @Test
-    public void testPutOne() throws Exception {
-        SimpleOrderedMap<Integer, Integer> m = new SimpleTreeMap<>();
-        m.put(1, 10);
-    }
+    public void testSaveLoad() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("map");
+        SimpleTreeMap<Integer, String> m = new SimpleTreeMap<>();
+        for (int i = 0; i < 10000; i++) {
+            m.put(i * 3, (i % 10 == 0) ? null : "v" + i);
+        }
+        m.save(file, Codecs.INT, Codecs.STRING);
+        SimpleTreeMap<Integer, String> loaded = SimpleTreeMap.load(file, Codecs.INT, Codecs.STRING);
+        assertEquals(m.size(), loaded.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(m.get(i * 3), loaded.get(i * 3));
+        }
+        assertEquals(toList(m.keyIterator()), toList(loaded.keyIterator()));
+        assertEquals(Integer.valueOf(30), loaded.select(10));
 
-    @Test
-    public void testGetOne() throws Exception {
-        SimpleOrderedMap<Integer, Integer> m = new SimpleTreeMap<>();
-        m.put(1, 10);
-        assertEquals(Integer.valueOf(10), m.get(1));
-        assertEquals(null, m.get(2));
+        new SimpleTreeMap<Integer, String>().save(file, Codecs.INT, Codecs.STRING);
+        assertEquals(0, SimpleTreeMap.load(file, Codecs.INT, Codecs.STRING).size());
     }
 
-    @Test
-    public void testGetOrDefaultOne() throws Exception {
-        SimpleOrderedMap<Integer, Integer> m = new SimpleTreeMap<>();
-        m.put(1, 10);
-        assertEquals(Integer.valueOf(10), m.getOrDefault(1, 20));
-        assertEquals(Integer.valueOf(20), m.getOrDefault(2, 20));
+    private static <K> List<K> toList(Iterator<K> it) {
+        List<K> l = new ArrayList<>();
+        while (it.hasNext()) {
+            l.add(it.next());
+        }
+        return l;
     }
 
     @Test
-    public void testSizeOne() throws Exception {
-        SimpleOrderedMap<Integer, Integer> m = new SimpleTreeMap<>();
-        m.put(1, 10);
-        assertEquals(1, m.size());
+    public void testNavigation() throws Exception {
+        SimpleNavigableMap<Integer, Integer> m = new SimpleTreeMap<>();
+        assertNull(m.firstKey());
+        assertNull(m.floorKey(1));
+        for (int i = 0; i < 10; i++) {
+            m.put(10 * i, i);
+        }
+        assertEquals(Integer.valueOf(0), m.firstKey());
+        assertEquals(Integer.valueOf(90), m.lastKey());
+        assertEquals(Integer.valueOf(20), m.floorKey(25));
+        assertEquals(Integer.valueOf(30), m.ceilingKey(25));
+        assertEquals(Integer.valueOf(20), m.lowerKey(30));
+        assertEquals(Integer.valueOf(40), m.higherKey(30));
+        assertNull(m.higherKey(90));
+        assertEquals(Arrays.asList(0, 10, 20, 30, 40, 50, 60, 70, 80, 90), toList(m.keyIterator()));
     }
 
     @Test
-    public void testSizeTwo() throws Exception {
-        SimpleOrderedMap<Integer, Integer> m = new SimpleTreeMap<>();
-        m.put(1, 10);
-        m.put(2, 20);
-        assertEquals(2, m.size());
-    }
+    public void testSubMap() throws Exception {
+        SimpleNavigableMap<Integer, Integer> m = new SimpleTreeMap<>();
+        for (int i = 0; i < 10; i++) {
+            m.put(10 * i, i);
+        }
+        SimpleNavigableMap<Integer, Integer> sub = m.subMap(25, 65);
+        assertEquals(4, sub.size());
+        assertEquals(Arrays.asList(30, 40, 50, 60), toList(sub.keyIterator()));
+        assertEquals(new HashSet<>(Arrays.asList(30, 40, 50, 60)), sub.keys());
+        assertEquals(Integer.valueOf(30), sub.firstKey());
+        assertEquals(Integer.valueOf(60), sub.lastKey());
+        assertEquals(Integer.valueOf(40), sub.select(1));
+        assertEquals(1, sub.rank(35));
+        assertEquals(0, sub.rank(0));
+        assertEquals(4, sub.rank(100));
+        assertEquals(2, sub.countInRange(0, 45));
+        assertNull(sub.get(20));
+        assertEquals(Integer.valueOf(3), sub.get(30));
+        assertNull(sub.floorKey(29));
+        assertEquals(Integer.valueOf(60), sub.floorKey(100));
+        assertNull(sub.ceilingKey(61));
 
-    @Test
-    public void testReplaceOne() throws Exception {
-        SimpleOrderedMap<Integer, Integer> m = new SimpleTreeMap<>();
-        m.put(1, 10);
-        assertEquals(Integer.valueOf(10), m.get(1));
-        m.put(1, 20);
-        assertEquals(Integer.valueOf(20), m.get(1));
-        assertEquals(1, m.size());
-    }
+        // the view is live in both directions
+        m.put(35, 35);
+        assertEquals(5, sub.size());
+        sub.remove(40);
+        assertNull(m.get(40));
+        assertEquals(Arrays.asList(30, 35, 50, 60), toList(sub.keyIterator()));
 
-    @Test
-    public void testRemoveOne() throws Exception {
-        SimpleOrderedMap<Integer, Integer> m = new SimpleTreeMap<>();
-        m.put(1, 10);
-        assertEquals(null, m.remove(2));
-        assertEquals(1, m.size());
+        Iterator<Integer> it = sub.keyIterator();
+        it.next();
+        it.remove();
+        assertNull(m.get(30));
+        assertEquals(9, m.size());
+
+        assertEquals(Arrays.asList(0, 10, 20), toList(m.headMap(25).keyIterator()));
+        assertEquals(Arrays.asList(70, 80, 90), toList(m.tailMap(70).keyIterator()));
+        assertEquals(Arrays.asList(50), toList(sub.headMap(55).tailMap(40).keyIterator()));
+        assertEquals(0, sub.subMap(100, 200).size());
+    }
 
-        assertEquals(Integer.valueOf(10), m.remove(1));
-        assertEquals(0, m.size());
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubMapPutOutOfRange() throws Exception {
+        SimpleNavigableMap<Integer, Integer> m = new SimpleTreeMap<>();
+        m.subMap(0, 10).put(10, 10);
     }
 
     @Test
-    public void testManyActions() throws Exception {
-        final int ACTIONS = 1000;
-        final int BOUND = 100;
+    public void testSubMapRandomized() throws Exception {
         Random random = new Random(0);
-
-        HashMap<Integer, Integer> hm = new HashMap<>();
+        TreeMap<Integer, Integer> tm = new TreeMap<>();
         SimpleTreeMap<Integer, Integer> m = new SimpleTreeMap<>();
-
-        for (int i = 0; i < ACTIONS; i++) {
-            double d = random.nextDouble();
-            if (d < 0.35) {
-                // put
-                int k = random.nextInt(BOUND);
-                int v = random.nextInt(BOUND);
-                m.put(k, v);
-                hm.put(k, v);
-                assertEquals(Integer.valueOf(v), m.get(k));
-                assertEquals(hm.size(), m.size());
-            } else if (d < 0.65) {
-                // remove
-                int k = random.nextInt(BOUND);
-                assertEquals(hm.remove(Integer.valueOf(k)), m.remove(Integer.valueOf(k)));
-            } else if (d < 0.85) {
-                // get
-                int k = random.nextInt(BOUND);
-                assertEquals(hm.get(k), m.get(k));
-            } else {
-                // getOrDefault
-                int k = random.nextInt(BOUND);
-                assertEquals(hm.getOrDefault(k, BOUND), m.getOrDefault(k, BOUND));
+        for (int i = 0; i < 500; i++) {
+            int k = random.nextInt(1000);
+            tm.put(k, k);
+            m.put(k, k);
+        }
+        for (int i = 0; i < 200; i++) {
+            int lo = random.nextInt(1000);
+            int hi = lo + random.nextInt(1000 - lo + 1);
+            int k = random.nextInt(1200) - 100;
+            SimpleNavigableMap<Integer, Integer> sub = m.subMap(lo, hi);
+            java.util.NavigableMap<Integer, Integer> expected = tm.subMap(lo, true, hi, false);
+            assertEquals(expected.size(), sub.size());
+            assertEquals(new ArrayList<>(expected.keySet()), toList(sub.keyIterator()));
+            assertEquals(expected.floorKey(k), sub.floorKey(k));
+            assertEquals(expected.ceilingKey(k), sub.ceilingKey(k));
+            assertEquals(expected.lowerKey(k), sub.lowerKey(k));
+            assertEquals(expected.higherKey(k), sub.higherKey(k));
+            int rank = 0;
+            for (Integer key : expected.keySet()) {
+                if (key < k) {
+                    rank++;
+                }
             }
-            assertEquals(hm.size(), m.size());
+            assertEquals(rank, sub.rank(k));
         }
     }
-    
+
     @Test
-    public void testManyActions1000() throws Exception {
-        final int ROUNDS = 1000;
-        final int ACTIONS = 1000;
-        final int BOUND = 100;
+    public void testKeyIteratorRemove() throws Exception {
         Random random = new Random(0);
-
-        for (int round = 0; round < ROUNDS; round++) {
-            HashMap<Integer, Integer> hm = new HashMap<>();
-            SimpleTreeMap<Integer, Integer> m = new SimpleTreeMap<>();
-
-            for (int i = 0; i < ACTIONS; i++) {
-                double d = random.nextDouble();
-                if (d < 0.35) {
-                    // put
-                    int k = random.nextInt(BOUND);
-                    int v = random.nextInt(BOUND);
-                    m.put(k, v);
-                    hm.put(k, v);
-                    assertEquals(Integer.valueOf(v), m.get(k));
-                    assertEquals(hm.size(), m.size());
-                } else if (d < 0.65) {
-                    // remove
-                    int k = random.nextInt(BOUND);
-                    assertEquals(hm.remove(Integer.valueOf(k)), m.remove(Integer.valueOf(k)));
-                } else if (d < 0.85) {
-                    // get
-                    int k = random.nextInt(BOUND);
-                    assertEquals(hm.get(k), m.get(k));
-                } else {
-                    // getOrDefault
-                    int k = random.nextInt(BOUND);
-                    assertEquals(hm.getOrDefault(k, BOUND), m.getOrDefault(k, BOUND));
-                }
-                assertEquals(hm.size(), m.size());
+        TreeMap<Integer, Integer> tm = new TreeMap<>();
+        SimpleTreeMap<Integer, Integer> m = new SimpleTreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            int k = random.nextInt(2000);
+            tm.put(k, i);
+            m.put(k, i);
+        }
+        Iterator<Integer> expected = tm.keySet().iterator();
+        Iterator<Integer> actual = m.keyIterator();
+        while (expected.hasNext()) {
+            Integer k = expected.next();
+            assertEquals(k, actual.next());
+            if (random.nextBoolean()) {
+                expected.remove();
+                actual.remove();
             }
         }
+        assertFalse(actual.hasNext());
+        assertEquals(tm.size(), m.size());
+        assertEquals(new ArrayList<>(tm.keySet()), toList(m.keyIterator()));
+        for (Integer k : tm.keySet()) {
+            assertEquals(tm.get(k), m.get(k));
+            assertEquals(k, m.select(m.rank(k)));
+        }
+    }
+
+    @Test
+    public void testViews() throws Exception {
+        SimpleNavigableMap<Integer, String> m = new SimpleTreeMap<>();
+        for (int i = 9; i >= 0; i--) {
+            m.put(i, "v" + i);
+        }
+        assertEquals(10, m.keySet().size());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), new ArrayList<>(m.keySet()));
+        assertEquals("v0", m.values().iterator().next());
+        assertTrue(m.keySet().contains(5));
+        assertFalse(m.keySet().contains(10));
+        assertFalse(m.keySet().contains("not a key"));
+
+        Map.Entry<Integer, String> first = m.entrySet().iterator().next();
+        assertEquals(Integer.valueOf(0), first.getKey());
+        first.setValue("zero");
+        assertEquals("zero", m.get(0));
+        assertTrue(m.entrySet().contains(new java.util.AbstractMap.SimpleEntry<>(0, "zero")));
+        assertFalse(m.entrySet().contains(new java.util.AbstractMap.SimpleEntry<>(0, "v0")));
+
+        // the views are live
+        Set<Integer> keys = m.keySet();
+        m.put(10, "v10");
+        assertEquals(11, keys.size());
+        keys.remove(3);
+        assertNull(m.get(3));
+        m.values().removeIf(v -> v.equals("v4"));
+        assertNull(m.get(4));
+        assertEquals(9, m.size());
+
+        SimpleNavigableMap<Integer, String> sub = m.subMap(2, 8);
+        assertEquals(Arrays.asList(2, 5, 6, 7), new ArrayList<>(sub.keySet()));
+        assertEquals(Arrays.asList("v2", "v5", "v6", "v7"), new ArrayList<>(sub.values()));
+        assertEquals(4, sub.entrySet().size());
+        assertFalse(sub.keySet().contains(9));
+        assertFalse(sub.keySet().remove(9));
+        sub.entrySet().clear();
+        assertEquals(Arrays.asList(0, 1, 8, 9, 10), new ArrayList<>(m.keySet()));
     }
 
     @Test
@@ -179,7 +270,160 @@ public class SimpleTreeMapTest {
         testSizeTwo();
         testReplaceOne();
         testRemoveOne();
+        testOrderStatistics();
+        testFromSorted();
+        testSaveLoad();
+        testNavigation();
+        testSubMap();
+        testSubMapRandomized();
+        testKeyIteratorRemove();
+        testViews();
         testManyActions();
         testManyActions1000();    
+        testStreams();
+        testPutAll();
+        testPutAllKeepsEntries();
+        testRemoveAll();
+        testBatchComparisons();
+    }
+
+    @Test
+    public void testPutAllKeepsEntries() throws Exception {
+        SimpleTreeMap<Integer, Integer> m = new SimpleTreeMap<>();
+        for (int i = 0; i < 100; i += 2) {
+            m.put(i, i);
+        }
+        Map.Entry<Integer, Integer> e = m.entrySet().iterator().next();
+        Map<Integer, Integer> batch = new HashMap<>();
+        for (int i = 1; i < 100; i += 2) {
+            batch.put(i, i);
+        }
+        batch.put(0, -1);
+        m.putAll(batch);
+        assertEquals(Integer.valueOf(-1), e.getValue());
+        e.setValue(7);
+        assertEquals(Integer.valueOf(7), m.get(0));
+
+        Map<Integer, Integer> withNull = new HashMap<>();
+        withNull.put(1000, 1);
+        withNull.put(null, 2);
+        try {
+            m.putAll(withNull);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        assertEquals(100, m.size());
+        assertNull(m.get(1000));
+    }
+
+    /**
+     * An Integer key that counts its comparisons.
+     */
+    private static final class CountingKey implements Comparable<CountingKey> {
+        static long comparisons;
+        final int k;
+
+        CountingKey(int k) {
+            this.k = k;
+        }
+
+        @Override
+        public int compareTo(CountingKey o) {
+            comparisons++;
+            return Integer.compare(k, o.k);
+        }
+    }
+
+    @Test
+    public void testBatchComparisons() throws Exception {
+        SimpleTreeMap<CountingKey, Integer> one = new SimpleTreeMap<>();
+        SimpleTreeMap<CountingKey, Integer> batched = new SimpleTreeMap<>();
+        for (int i = 0; i < 100000; i += 2) {
+            one.put(new CountingKey(i), i);
+            batched.put(new CountingKey(i), i);
+        }
+
+        // a small batch, clustered in one part of the map
+        TreeMap<CountingKey, Integer> small = new TreeMap<>();
+        for (int i = 50001; i < 52000; i += 2) {
+            small.put(new CountingKey(i), i);
+        }
+        CountingKey.comparisons = 0;
+        for (Map.Entry<CountingKey, Integer> e : small.entrySet()) {
+            one.put(e.getKey(), e.getValue());
+        }
+        long puts = CountingKey.comparisons;
+        CountingKey.comparisons = 0;
+        batched.putAll(small);
+        assertTrue(CountingKey.comparisons * 3 < puts);
+
+        // a large batch
+        TreeMap<CountingKey, Integer> large = new TreeMap<>();
+        for (int i = 1; i < 100000; i += 4) {
+            large.put(new CountingKey(i), i);
+        }
+        CountingKey.comparisons = 0;
+        for (Map.Entry<CountingKey, Integer> e : large.entrySet()) {
+            one.put(e.getKey(), e.getValue());
+        }
+        puts = CountingKey.comparisons;
+        CountingKey.comparisons = 0;
+        batched.putAll(large);
+        assertTrue(CountingKey.comparisons * 3 < puts);
+
+        assertEquals(one.size(), batched.size());
+        for (int i = 0; i < one.size(); i += 97) {
+            assertEquals(one.select(i).k, batched.select(i).k);
+        }
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        Random r = new Random(24);
+        SimpleTreeMap<Integer, Integer> m = new SimpleTreeMap<>();
+        TreeMap<Integer, Integer> tm = new TreeMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int k = r.nextInt(1000000);
+            m.put(k, i);
+            tm.put(k, i);
+        }
+        assertEquals(new ArrayList<>(tm.keySet()), m.keySet().parallelStream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<>(tm.values()), m.values().parallelStream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<>(tm.entrySet()), m.entrySet().parallelStream().collect(Collectors.toList()));
+        assertEquals(tm.keySet().stream().mapToLong(k -> k).sum(), m.keySet().stream().mapToLong(k -> k).sum());
+
+        SimpleNavigableMap<Integer, Integer> sub = m.subMap(250000, 750000);
+        java.util.NavigableMap<Integer, Integer> expected = tm.subMap(250000, true, 750000, false);
+        assertEquals(new ArrayList<>(expected.keySet()), sub.keySet().parallelStream().collect(Collectors.toList()));
+        assertEquals(expected.values().stream().mapToLong(v -> v).sum(),
+                sub.values().parallelStream().mapToLong(v -> v).sum());
+        assertEquals(0, m.subMap(10, 10).keySet().parallelStream().count());
+
+        Spliterator<Integer> s = sub.keySet().spliterator();
+        assertEquals(expected.size(), s.getExactSizeIfKnown());
+        assertTrue(s.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.SUBSIZED));
+        assertNull(s.getComparator());
+        Spliterator<Integer> prefix = s.trySplit();
+        assertEquals(expected.size(), prefix.estimateSize() + s.estimateSize());
+        assertTrue(Math.abs(prefix.estimateSize() - s.estimateSize()) <= 1);
+        assertFalse(m.values().spliterator().hasCharacteristics(Spliterator.SORTED));
+
+        // as in TreeMap, entries are sorted by key
+        Spliterator<Map.Entry<Integer, Integer>> es = sub.entrySet().spliterator();
+        assertTrue(es.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.SUBSIZED));
+        Comparator<? super Map.Entry<Integer, Integer>> c = es.getComparator();
+        assertTrue(c.compare(Map.entry(1, 9), Map.entry(2, 0)) < 0);
+        assertSame(c, es.trySplit().getComparator());
+        assertEquals(new ArrayList<>(expected.entrySet()),
+                sub.entrySet().parallelStream().sorted(Map.Entry.comparingByKey()).collect(Collectors.toList()));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testSpliteratorModified() throws Exception {
+        SimpleTreeMap<Integer, Integer> m = new SimpleTreeMap<>();
+        for (int i = 0; i < 10; i++) {
+            m.put(i, i);
+        }
+        m.keySet().spliterator().forEachRemaining(k -> m.remove(k + 1));
     }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package trees;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+
+public class AVLTreeMetricsTest {
+    @Test
+    public void testDisabledByDefault() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        assertNull(tree.metrics());
+        tree.add(1);
+        assertTrue(tree.contains(1));
+        assertNull(tree.metrics());
+    }
+
+    @Test
+    public void testRotations() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        AVLTreeMetrics metrics = tree.enableMetrics();
+        assertSame(metrics, tree.enableMetrics());
+        // RR case
+        tree.add(1);
+        tree.add(2);
+        tree.add(3);
+        assertEquals(1, metrics.getSingleRotations());
+        assertEquals(0, metrics.getDoubleRotations());
+        // RL case, under 3
+        tree.add(5);
+        tree.add(4);
+        assertEquals(1, metrics.getSingleRotations());
+        assertEquals(1, metrics.getDoubleRotations());
+        assertEquals(5, metrics.getAdds());
+        // RR case, at the root
+        tree.add(6);
+        assertEquals(2, metrics.getSingleRotations());
+        // emptying the root's left subtree leaves its right one too tall: RR
+        tree.remove(1);
+        tree.remove(3);
+        assertEquals(2, metrics.getSingleRotations());
+        tree.remove(2);
+        assertTrue(TreeUtilities.isAVLTree(tree.root));
+        assertEquals(3, metrics.getSingleRotations());
+        assertEquals(1, metrics.getDoubleRotations());
+        assertEquals(3, metrics.getRemoves());
+    }
+
+    @Test
+    public void testLookups() {
+        AVLTree<Integer> tree = AVLTree.fromSorted(new Integer[] {1, 2, 3, 4, 5, 6, 7});
+        AVLTreeMetrics metrics = tree.enableMetrics();
+        assertTrue(tree.contains(4)); // the root: one node, one equals()
+        assertEquals(1, metrics.getLookups());
+        assertEquals(1.0, metrics.getMeanComparisonsPerLookup(), 0);
+        assertEquals(Integer.valueOf(1), tree.get(1)); // three nodes, five comparisons
+        assertFalse(tree.contains(8)); // three nodes, six comparisons
+        assertEquals(3, metrics.getLookups());
+        assertEquals(12 / 3.0, metrics.getMeanComparisonsPerLookup(), 1e-9);
+        assertEquals(7 / 3.0, metrics.getMeanPathLength(), 1e-9);
+        long[] histogram = metrics.getPathLengthHistogram();
+        assertEquals(AVLTreeMetrics.MAX_PATH_LENGTH + 1, histogram.length);
+        assertEquals(1, histogram[1]);
+        assertEquals(2, histogram[3]);
+        // a coarse clock may time all three lookups as 0ns
+        assertTrue(metrics.getMeanLookupNanos() >= 0);
+        assertTrue(metrics.getMaxLookupNanos() >= metrics.getMeanLookupNanos());
+    }
+
+    @Test
+    public void testSnapshotAndReset() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        AVLTreeMetrics metrics = tree.enableMetrics();
+        for (int i = 0; i < 100; i++) {
+            tree.add(i);
+        }
+        for (int i = 0; i < 100; i++) {
+            tree.contains(i);
+        }
+        AVLTreeMetrics.Snapshot snapshot = metrics.snapshot();
+        metrics.reset();
+        assertEquals(100, snapshot.adds());
+        assertEquals(100, snapshot.lookups());
+        assertTrue(snapshot.maxAddNanos() >= snapshot.meanAddNanos());
+        assertTrue(snapshot.maxLookupNanos() >= snapshot.meanLookupNanos());
+        assertEquals(0, snapshot.maxRemoveNanos());
+        assertTrue(snapshot.singleRotations() > 0);
+        assertTrue(snapshot.meanPathLength() <= 1 + tree.root.height);
+        long total = 0;
+        for (long count : snapshot.pathLengthHistogram()) {
+            total += count;
+        }
+        assertEquals(100, total);
+        assertEquals(0, metrics.getAdds());
+        assertEquals(0, metrics.getLookups());
+        assertEquals(0, metrics.getMeanAddNanos(), 0);
+
+        tree.disableMetrics();
+        assertNull(tree.metrics());
+        tree.add(100);
+        assertEquals(0, metrics.getAdds());
+    }
+
+    @Test
+    public void testJMX() throws Exception {
+        AVLTree<Integer> tree = new AVLTree<>();
+        AVLTreeMetrics metrics = tree.enableMetrics();
+        ObjectName name = metrics.register("testJMX");
+        try {
+            tree.add(1);
+            tree.contains(1);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(name, "Adds"));
+            assertEquals(1L, server.getAttribute(name, "Lookups"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "Adds"));
+        } finally {
+            AVLTreeMetrics.unregister(name);
+        }
+    }
+}
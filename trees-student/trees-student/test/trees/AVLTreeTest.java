@@ -6,23 +6,38 @@ package trees;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.Timeout;
 
+import codecs.Codecs;
+import maps.SimpleTreeMap;
+
 
  public class AVLTreeTest {
  
     //  @Rule
     //  public Timeout globalTimeout = Timeout.seconds(10); // 10 seconds
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setup() {
     }
@@ -266,6 +281,296 @@ import org.junit.rules.Timeout;
         }
     }
 
+    private static <E> void assertCachedFields(Node<E> n) {
+        if (n == null) return;
+        assertEquals(TreeUtilities.height(n), n.height);
+        assertEquals(TreeUtilities.inOrder(n).size(), n.size);
+        assertCachedFields(n.left);
+        assertCachedFields(n.right);
+    }
+
+    @Test
+    public void testCachedFieldsRandomized() throws Exception {
+        for (int seed = 0; seed < 100; seed++) {
+            Random r = new Random(seed);
+            AVLTree<Integer> a = new AVLTree<>();
+            for (int i = 0; i < 200; i++) {
+                if (r.nextDouble() < 0.6) {
+                    a.add(r.nextInt(100));
+                } else {
+                    a.remove(r.nextInt(100));
+                }
+                assertTrue(TreeUtilities.isAVLTree(a.root));
+                assertCachedFields(a.root);
+            }
+        }
+    }
+
+    @Test
+    public void testSelectAndRank() throws Exception {
+        AVLTree<Integer> tree = new AVLTree<>();
+        List<Integer> l = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            l.add(2 * i);
+        }
+        Collections.shuffle(l, new Random(0));
+        for (Integer i : l) {
+            tree.add(i);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(Integer.valueOf(2 * i), tree.select(i));
+            assertEquals(i, tree.rank(2 * i));
+            assertEquals(i + 1, tree.rank(2 * i + 1));
+        }
+        assertEquals(0, tree.rank(-1));
+        assertEquals(200, tree.rank(1000));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSelectOutOfBounds() throws Exception {
+        AVLTree<Integer> tree = new AVLTree<>();
+        tree.add(1);
+        tree.select(1);
+    }
+
+    @Test
+    public void testCountInRange() throws Exception {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 100; i++) {
+            tree.add(i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            tree.remove(i);
+        }
+        assertEquals(50, tree.countInRange(0, 100));
+        assertEquals(5, tree.countInRange(10, 20));
+        assertEquals(5, tree.countInRange(11, 21));
+        assertEquals(0, tree.countInRange(20, 10));
+        assertEquals(0, tree.countInRange(200, 300));
+    }
+
+    @Test
+    public void testFromSorted() throws Exception {
+        for (int size = 0; size < 300; size++) {
+            Integer[] values = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = 3 * i;
+            }
+            AVLTree<Integer> tree = AVLTree.fromSorted(values);
+            assertEquals(size, tree.size());
+            assertTrue(TreeUtilities.isAVLTree(tree.root));
+            assertCachedFields(tree.root);
+            assertEquals(Arrays.asList(values), TreeUtilities.inOrder(tree.root));
+            if (tree.root != null) {
+                assertNull(tree.root.parent);
+            }
+
+            // the tree must stay a valid AVL tree under further changes
+            tree.add(1);
+            tree.remove(0);
+            assertTrue(TreeUtilities.isAVLTree(tree.root));
+            assertCachedFields(tree.root);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedUnsorted() throws Exception {
+        AVLTree.fromSorted(new Integer[] {1, 3, 2});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedDuplicates() throws Exception {
+        AVLTree.fromSorted(new Integer[] {1, 2, 2});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedTooFew() throws Exception {
+        AVLTree.fromSorted(Arrays.asList(1, 2, 3).iterator(), 4);
+    }
+
+    @Test
+    public void testSaveLoad() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("tree");
+        for (int size : new int[] {0, 1, 2, 100, 100000}) {
+            AVLTree<Integer> tree = new AVLTree<>();
+            for (int i = 0; i < size; i++) {
+                tree.add(-7 * i);
+            }
+            tree.save(file, Codecs.INT);
+            AVLTree<Integer> loaded = AVLTree.load(file, Codecs.INT);
+            assertEquals(size, loaded.size());
+            assertTrue(TreeUtilities.isAVLTree(loaded.root));
+            assertCachedFields(loaded.root);
+            assertEquals(TreeUtilities.inOrder(tree.root), TreeUtilities.inOrder(loaded.root));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadMapSnapshotAsTree() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("map");
+        new SimpleTreeMap<Integer, Integer>().save(file, Codecs.INT, Codecs.INT);
+        AVLTree.load(file, Codecs.INT);
+    }
+
+    private static AVLTree<Integer> randomTree(Random r, int size, int bound, TreeSet<Integer> expected) {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < size; i++) {
+            int v = r.nextInt(bound);
+            tree.add(v);
+            expected.add(v);
+        }
+        return tree;
+    }
+
+    private static void assertSameValues(TreeSet<Integer> expected, AVLTree<Integer> tree) {
+        assertTrue(TreeUtilities.isAVLTree(tree.root));
+        assertCachedFields(tree.root);
+        if (tree.root != null) {
+            assertNull(tree.root.parent);
+        }
+        assertEquals(expected.size(), tree.size());
+        assertEquals(new ArrayList<>(expected), TreeUtilities.inOrder(tree.root));
+    }
+
+    @Test
+    public void testJoin() throws Exception {
+        for (int seed = 0; seed < 50; seed++) {
+            Random r = new Random(seed);
+            AVLTree<Integer> left = new AVLTree<>();
+            AVLTree<Integer> right = new AVLTree<>();
+            TreeSet<Integer> expected = new TreeSet<>();
+            int leftSize = r.nextInt(300);
+            int rightSize = r.nextInt(300);
+            for (int i = 0; i < leftSize; i++) {
+                left.add(i);
+                expected.add(i);
+            }
+            for (int i = 0; i < rightSize; i++) {
+                right.add(leftSize + 1 + i);
+                expected.add(leftSize + 1 + i);
+            }
+            expected.add(leftSize);
+            AVLTree<Integer> joined = AVLTree.join(left, leftSize, right);
+            assertSameValues(expected, joined);
+            assertEquals(0, left.size());
+            assertEquals(0, right.size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJoinUnordered() throws Exception {
+        AVLTree<Integer> left = AVLTree.fromSorted(new Integer[] {1, 2, 3});
+        AVLTree<Integer> right = AVLTree.fromSorted(new Integer[] {5, 6});
+        AVLTree.join(left, 3, right);
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+        for (int seed = 0; seed < 50; seed++) {
+            Random r = new Random(seed);
+            TreeSet<Integer> expected = new TreeSet<>();
+            AVLTree<Integer> tree = randomTree(r, r.nextInt(500), 1000, expected);
+            int pivot = r.nextInt(1000);
+
+            AVLTree<Integer> upper = tree.split(pivot);
+            assertSameValues(new TreeSet<>(expected.headSet(pivot)), tree);
+            assertSameValues(new TreeSet<>(expected.tailSet(pivot)), upper);
+        }
+    }
+
+    @Test
+    public void testSetOperations() throws Exception {
+        for (int seed = 0; seed < 50; seed++) {
+            Random r = new Random(seed);
+            TreeSet<Integer> s1 = new TreeSet<>();
+            TreeSet<Integer> s2 = new TreeSet<>();
+            int bound = 1 + r.nextInt(2000);
+            AVLTree<Integer> t1 = randomTree(r, r.nextInt(1000), bound, s1);
+            AVLTree<Integer> t2 = randomTree(r, r.nextInt(1000), bound, s2);
+
+            TreeSet<Integer> union = new TreeSet<>(s1);
+            union.addAll(s2);
+            AVLTree<Integer> t = AVLTree.fromSorted(s1.toArray(new Integer[0]));
+            t.addAll(t2);
+            assertSameValues(union, t);
+            assertSameValues(s2, t2); // unchanged
+
+            TreeSet<Integer> intersection = new TreeSet<>(s1);
+            intersection.retainAll(s2);
+            t = AVLTree.fromSorted(s1.toArray(new Integer[0]));
+            t.retainAll(t2);
+            assertSameValues(intersection, t);
+            assertSameValues(s2, t2);
+
+            TreeSet<Integer> difference = new TreeSet<>(s1);
+            difference.removeAll(s2);
+            t1.removeAll(t2);
+            assertSameValues(difference, t1);
+            assertSameValues(s2, t2);
+        }
+    }
+
+    @Test
+    public void testSetOperationsParallel() throws Exception {
+        Random r = new Random(0);
+        TreeSet<Integer> s1 = new TreeSet<>();
+        TreeSet<Integer> s2 = new TreeSet<>();
+        AVLTree<Integer> t1 = randomTree(r, 100000, 1000000, s1);
+        AVLTree<Integer> t2 = randomTree(r, 100000, 1000000, s2);
+        t1.addAll(t2);
+        s1.addAll(s2);
+        assertSameValues(s1, t1);
+        t1.removeAll(t2);
+        s1.removeAll(s2);
+        assertSameValues(s1, t1);
+    }
+
+    @Test
+    public void testNavigation() throws Exception {
+        AVLTree<Integer> tree = new AVLTree<>();
+        assertNull(tree.first());
+        assertNull(tree.last());
+        assertNull(tree.floor(0));
+        for (int i = 0; i < 50; i++) {
+            tree.add(2 * i);
+        }
+        assertEquals(Integer.valueOf(0), tree.first());
+        assertEquals(Integer.valueOf(98), tree.last());
+        assertEquals(Integer.valueOf(10), tree.floor(10));
+        assertEquals(Integer.valueOf(10), tree.floor(11));
+        assertEquals(Integer.valueOf(8), tree.lower(10));
+        assertEquals(Integer.valueOf(10), tree.ceiling(10));
+        assertEquals(Integer.valueOf(12), tree.ceiling(11));
+        assertEquals(Integer.valueOf(12), tree.higher(10));
+        assertNull(tree.floor(-1));
+        assertNull(tree.lower(0));
+        assertNull(tree.ceiling(99));
+        assertNull(tree.higher(98));
+    }
+
+    @Test
+    public void testRangeIterator() throws Exception {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 50; i++) {
+            tree.add(2 * i);
+        }
+        List<Integer> actual = new ArrayList<>();
+        Iterator<Integer> it = tree.iterator(11, 20);
+        while (it.hasNext()) {
+            actual.add(it.next());
+        }
+        assertEquals(Arrays.asList(12, 14, 16, 18), actual);
+
+        actual.clear();
+        it = tree.iterator(null, 5);
+        while (it.hasNext()) {
+            actual.add(it.next());
+        }
+        assertEquals(Arrays.asList(0, 2, 4), actual);
+        assertFalse(tree.iterator(200, null).hasNext());
+    }
+
     @Test
     public void testIteratorEmpty() throws Exception {
         AVLTree<Integer> tree = new AVLTree<>();
@@ -321,6 +626,75 @@ import org.junit.rules.Timeout;
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testIteratorInOrder() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(i);
+        }
+        List<Integer> shuffled = new ArrayList<>(expected);
+        Collections.shuffle(shuffled, new Random(0));
+        for (Integer i : shuffled) {
+            tree.add(i);
+        }
+
+        List<Integer> actual = new ArrayList<>();
+        for (Integer i: tree) {
+            actual.add(i);
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 100; i++) {
+            tree.add(i);
+        }
+
+        Iterator<Integer> it = tree.iterator();
+        List<Integer> visited = new ArrayList<>();
+        while (it.hasNext()) {
+            Integer i = it.next();
+            visited.add(i);
+            if (i % 3 != 0) {
+                it.remove();
+            }
+        }
+        assertEquals(100, visited.size());
+        assertEquals(34, tree.size());
+        assertTrue(TreeUtilities.isAVLTree(tree.root));
+
+        List<Integer> actual = new ArrayList<>();
+        for (Integer i: tree) {
+            actual.add(i);
+        }
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(Integer.valueOf(3 * i), actual.get(i));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIteratorRemoveTwice() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        tree.add(1);
+        Iterator<Integer> it = tree.iterator();
+        it.next();
+        it.remove();
+        it.remove();
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorFailFast() {
+        AVLTree<Integer> tree = new AVLTree<>();
+        tree.add(1);
+        tree.add(2);
+        for (Integer i : tree) {
+            tree.add(i + 10);
+        }
+    }
+
     @Test
     public void testAVLAll() throws Exception {
         testLLSimple();
@@ -335,8 +709,286 @@ import org.junit.rules.Timeout;
         testRemoveMultipleWithRebalancing();
         testRemoveOtherOrder();
         testAVL100Randomized();
+        testCachedFieldsRandomized();
+        testSelectAndRank();
+        testCountInRange();
+        testFromSorted();
+        testSaveLoad();
+        testJoin();
+        testSplit();
+        testSetOperations();
+        testNavigation();
+        testRangeIterator();
         testIteratorEmpty();
         testIteratorSimple();
         testIteratorComplex();
+        testIteratorInOrder();
+        testIteratorRemove();
+        testHashingRandomized();
+        testContentEquals();
+        testDiffRandomized();
+        testStreams();
+        testSpliteratorSplits();
+    }
+ 
+    /**
+     * @return the hash a tree keeps for a single value
+     */
+    private static long valueHash(Integer v) {
+        AVLTree<Integer> single = new AVLTree<>();
+        single.enableHashing();
+        single.add(v);
+        return single.contentHash();
+    }
+
+    /**
+     * Assert that each node's hash is the sum of its value's hash and its children's.
+     */
+    private static void assertHashes(Node<Integer> n) {
+        if (n == null) return;
+        long children = (n.left == null ? 0 : n.left.hash) + (n.right == null ? 0 : n.right.hash);
+        assertEquals(valueHash(n.data), n.hash - children);
+        assertHashes(n.left);
+        assertHashes(n.right);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testContentHashDisabled() throws Exception {
+        new AVLTree<Integer>().contentHash();
+    }
+
+    @Test
+    public void testHashingRandomized() throws Exception {
+        for (int seed = 0; seed < 30; seed++) {
+            Random r = new Random(seed);
+            TreeSet<Integer> expected = new TreeSet<>();
+            AVLTree<Integer> a = randomTree(r, 100, 200, expected);
+            assertFalse(a.isHashing());
+            a.enableHashing();
+            assertTrue(a.isHashing());
+            assertHashes(a.root);
+            for (int i = 0; i < 300; i++) {
+                int v = r.nextInt(200);
+                if (r.nextDouble() < 0.5) {
+                    a.add(v);
+                } else {
+                    a.remove(v);
+                }
+            }
+            assertHashes(a.root);
+            // the hash doesn't depend on the shape
+            List<Integer> values = TreeUtilities.inOrder(a.root);
+            AVLTree<Integer> b = AVLTree.fromSorted(values.toArray(new Integer[0]));
+            b.enableHashing();
+            assertEquals(a.contentHash(), b.contentHash());
+
+            // nor on how the tree was put together
+            AVLTree<Integer> other = randomTree(r, 50, 400, new TreeSet<>());
+            a.addAll(other);
+            assertHashes(a.root);
+            a.removeAll(randomTree(r, 50, 400, new TreeSet<>()));
+            assertHashes(a.root);
+            a.retainAll(randomTree(r, 300, 400, new TreeSet<>()));
+            assertHashes(a.root);
+            AVLTree<Integer> upper = a.split(200);
+            assertTrue(upper.isHashing());
+            assertHashes(a.root);
+            assertHashes(upper.root);
+            Iterator<Integer> it = upper.iterator();
+            while (it.hasNext()) {
+                if (it.next() % 3 == 0) {
+                    it.remove();
+                }
+            }
+            assertHashes(upper.root);
+            AVLTree<Integer> joined = AVLTree.join(a, 200, upper);
+            assertTrue(joined.isHashing());
+            assertHashes(joined.root);
+        }
+    }
+
+    @Test
+    public void testContentEquals() throws Exception {
+        Random r = new Random(23);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(i);
+        }
+        AVLTree<Integer> a = new AVLTree<>();
+        AVLTree<Integer> b = new AVLTree<>();
+        for (Integer v : values) {
+            a.add(v);
+        }
+        Collections.shuffle(values, r);
+        for (Integer v : values) {
+            b.add(v);
+        }
+        assertTrue(a.contentEquals(b));
+        a.enableHashing();
+        assertTrue(a.contentEquals(b));
+        b.enableHashing();
+        assertTrue(a.contentEquals(b));
+        assertTrue(b.contentEquals(a));
+        b.remove(500);
+        b.add(1000);
+        assertFalse(a.contentEquals(b));
+        a.remove(500);
+        a.add(1000);
+        assertTrue(a.contentEquals(b));
+        b.remove(0);
+        assertFalse(a.contentEquals(b));
+    }
+
+    @Test
+    public void testContentEqualsCollidingHashCodes() throws Exception {
+        // "Aa" and "BB" have the same hashCode()
+        AVLTree<String> a = AVLTree.fromSorted(new String[] {"Aa", "x"});
+        AVLTree<String> b = AVLTree.fromSorted(new String[] {"BB", "x"});
+        a.enableHashing();
+        b.enableHashing();
+        assertEquals(a.contentHash(), b.contentHash());
+        assertTrue(a.probablyContentEquals(b));
+        assertFalse(a.contentEquals(b));
+        assertFalse(b.contentEquals(a));
+    }
+
+    @Test
+    public void testHasher() throws Exception {
+        // 0 and 2^32 + 1 have the same hashCode(), but not the same longValue()
+        long collides = (1L << 32) | 1L;
+        assertEquals(Long.valueOf(0).hashCode(), Long.valueOf(collides).hashCode());
+        AVLTree<Long> a = AVLTree.fromSorted(new Long[] {0L, 5L});
+        AVLTree<Long> b = AVLTree.fromSorted(new Long[] {5L, collides});
+        a.enableHashing();
+        b.enableHashing();
+        assertTrue(a.diff(b).isEmpty());
+
+        ToLongFunction<Long> hasher = Long::longValue;
+        a.enableHashing(hasher);
+        b.enableHashing(hasher);
+        assertTrue(a.isHashing());
+        assertFalse(a.probablyContentEquals(b));
+        assertFalse(a.contentEquals(b));
+        AVLTree.Diff<Long> diff = a.diff(b);
+        assertEquals(Arrays.asList(0L), diff.onlyInThis());
+        assertEquals(Arrays.asList(collides), diff.onlyInOther());
+
+        // the hashes follow changes, splits and joins
+        b.remove(collides);
+        b.add(0L);
+        assertTrue(a.probablyContentEquals(b));
+        AVLTree<Long> upper = b.split(3L);
+        AVLTree<Long> joined = AVLTree.join(b, 3L, upper);
+        a.add(3L);
+        assertTrue(a.probablyContentEquals(joined));
+        assertTrue(a.diff(joined).isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testProbablyContentEqualsDifferentHashers() throws Exception {
+        AVLTree<Long> a = new AVLTree<>();
+        AVLTree<Long> b = new AVLTree<>();
+        a.enableHashing();
+        b.enableHashing(Long::longValue);
+        a.probablyContentEquals(b);
+    }
+
+    @Test
+    public void testDiffRandomized() throws Exception {
+        for (int seed = 0; seed < 50; seed++) {
+            Random r = new Random(seed);
+            TreeSet<Integer> expectedA = new TreeSet<>();
+            AVLTree<Integer> a = randomTree(r, r.nextInt(2000), 4000, expectedA);
+            TreeSet<Integer> expectedB = new TreeSet<>(expectedA);
+            List<Integer> shuffled = new ArrayList<>(expectedA);
+            Collections.shuffle(shuffled, r);
+            AVLTree<Integer> b = new AVLTree<>();
+            for (Integer v : shuffled) {
+                b.add(v);
+            }
+            a.enableHashing();
+            b.enableHashing();
+            assertTrue(a.diff(b).isEmpty());
+            int changes = r.nextInt(20);
+            for (int i = 0; i < changes; i++) {
+                int v = r.nextInt(4000);
+                if (r.nextBoolean()) {
+                    b.add(v);
+                    expectedB.add(v);
+                } else {
+                    b.remove(v);
+                    expectedB.remove(v);
+                }
+            }
+            TreeSet<Integer> onlyInA = new TreeSet<>(expectedA);
+            onlyInA.removeAll(expectedB);
+            TreeSet<Integer> onlyInB = new TreeSet<>(expectedB);
+            onlyInB.removeAll(expectedA);
+            AVLTree.Diff<Integer> diff = a.diff(b);
+            assertEquals(new ArrayList<>(onlyInA), diff.onlyInThis());
+            assertEquals(new ArrayList<>(onlyInB), diff.onlyInOther());
+            AVLTree.Diff<Integer> reverse = b.diff(a);
+            assertEquals(diff.onlyInThis(), reverse.onlyInOther());
+            assertEquals(diff.onlyInOther(), reverse.onlyInThis());
+        }
+    }
+
+    @Test
+    public void testDiffEmpty() throws Exception {
+        AVLTree<Integer> a = new AVLTree<>();
+        AVLTree<Integer> b = AVLTree.fromSorted(new Integer[] {1, 2, 3});
+        a.enableHashing();
+        b.enableHashing();
+        assertEquals(Arrays.asList(1, 2, 3), a.diff(b).onlyInOther());
+        assertEquals(Arrays.asList(1, 2, 3), b.diff(a).onlyInThis());
+        assertTrue(a.diff(a).isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDiffDisabled() throws Exception {
+        AVLTree<Integer> a = new AVLTree<>();
+        a.enableHashing();
+        a.diff(new AVLTree<>());
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        TreeSet<Integer> expected = new TreeSet<>();
+        AVLTree<Integer> a = randomTree(new Random(24), 100000, 1000000, expected);
+        assertEquals(new ArrayList<>(expected), a.parallelStream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<>(expected), a.stream().collect(Collectors.toList()));
+        assertEquals(expected.stream().mapToLong(v -> v).sum(), a.parallelStream().mapToLong(v -> v).sum());
+        assertEquals(expected.stream().filter(v -> v % 7 == 0).count(),
+                a.parallelStream().filter(v -> v % 7 == 0).count());
+        assertEquals(0, new AVLTree<Integer>().parallelStream().count());
+    }
+
+    @Test
+    public void testSpliteratorSplits() throws Exception {
+        AVLTree<Integer> a = AVLTree.fromSorted(new Integer[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9});
+        Spliterator<Integer> s = a.spliterator();
+        assertTrue(s.hasCharacteristics(Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+                | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL));
+        assertNull(s.getComparator());
+        assertEquals(10, s.getExactSizeIfKnown());
+        // start traversing, then split what's left
+        assertTrue(s.tryAdvance(v -> assertEquals(Integer.valueOf(0), v)));
+        Spliterator<Integer> prefix = s.trySplit();
+        assertEquals(4, prefix.estimateSize());
+        assertEquals(5, s.estimateSize());
+        List<Integer> values = new ArrayList<>();
+        prefix.forEachRemaining(values::add);
+        s.forEachRemaining(values::add);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), values);
+        assertFalse(s.tryAdvance(v -> fail()));
+        assertNull(s.trySplit());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testSpliteratorModified() throws Exception {
+        AVLTree<Integer> a = AVLTree.fromSorted(new Integer[] {0, 1, 2, 3, 4});
+        Spliterator<Integer> s = a.spliterator();
+        a.add(5);
+        s.tryAdvance(v -> { });
     }
- }
\ No newline at end of file
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package trees;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+
+public class IntAVLTreeTest {
+
+    /**
+     * Check the links, balance and cached counts of the subtree rooted at n,
+     * returning its height.
+     */
+    static int checkStructure(ArrayAVLTree t, int n) {
+        if (n == ArrayAVLTree.NIL) return -1;
+        if (t.left[n] != ArrayAVLTree.NIL) assertEquals(n, t.parent[t.left[n]]);
+        if (t.right[n] != ArrayAVLTree.NIL) assertEquals(n, t.parent[t.right[n]]);
+        int hl = checkStructure(t, t.left[n]);
+        int hr = checkStructure(t, t.right[n]);
+        assertTrue(Math.abs(hl - hr) <= 1);
+        assertEquals(1 + t.count(t.left[n]) + t.count(t.right[n]), t.count(n));
+        return 1 + Math.max(hl, hr);
+    }
+
+    private static List<Integer> toList(IntAVLTree t) {
+        List<Integer> l = new ArrayList<>();
+        PrimitiveIterator.OfInt it = t.iterator();
+        while (it.hasNext()) {
+            l.add(it.nextInt());
+        }
+        return l;
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        IntAVLTree t = new IntAVLTree();
+        assertEquals(0, t.size());
+        assertFalse(t.contains(0));
+        assertFalse(t.remove(0));
+        assertFalse(t.iterator().hasNext());
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        Random r = new Random(0);
+        TreeSet<Integer> expected = new TreeSet<>();
+        IntAVLTree t = new IntAVLTree();
+        for (int i = 0; i < 5000; i++) {
+            int v = r.nextInt(500) - 250;
+            if (r.nextDouble() < 0.6) {
+                t.add(v);
+                expected.add(v);
+            } else {
+                assertEquals(expected.remove(v), t.remove(v));
+            }
+            assertEquals(expected.size(), t.size());
+            assertEquals(expected.contains(v), t.contains(v));
+            if (i % 100 == 0) {
+                checkStructure(t, t.root);
+                assertEquals(new ArrayList<>(expected), toList(t));
+            }
+        }
+        int i = 0;
+        for (Integer v : expected) {
+            assertEquals(v.intValue(), t.select(i));
+            assertEquals(i, t.rank(v));
+            i++;
+        }
+        assertEquals(expected.subSet(-100, 100).size(), t.countInRange(-100, 100));
+    }
+
+    @Test
+    public void testIteratorRemove() throws Exception {
+        IntAVLTree t = IntAVLTree.fromSorted(new int[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        checkStructure(t, t.root);
+        PrimitiveIterator.OfInt it = t.iterator();
+        while (it.hasNext()) {
+            if (it.nextInt() % 2 == 0) {
+                it.remove();
+            }
+        }
+        checkStructure(t, t.root);
+        assertEquals(java.util.Arrays.asList(1, 3, 5, 7, 9), toList(t));
+
+        // freed slots are reused
+        for (int v = 20; v < 25; v++) {
+            t.add(v);
+        }
+        assertEquals(10, t.left.length);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorFailFast() throws Exception {
+        IntAVLTree t = IntAVLTree.fromSorted(new int[] {1, 2, 3});
+        PrimitiveIterator.OfInt it = t.iterator();
+        it.nextInt();
+        t.add(4);
+        it.nextInt();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedUnsorted() throws Exception {
+        IntAVLTree.fromSorted(new int[] {1, 1});
+    }
+}
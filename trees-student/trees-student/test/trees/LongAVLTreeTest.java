@@ -0,0 +1,61 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package trees;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+
+public class LongAVLTreeTest {
+
+    @Test
+    public void testManyActions() throws Exception {
+        Random r = new Random(0);
+        TreeSet<Long> expected = new TreeSet<>();
+        LongAVLTree t = new LongAVLTree();
+        for (int i = 0; i < 5000; i++) {
+            long v = Long.MAX_VALUE - r.nextInt(500);
+            if (r.nextDouble() < 0.6) {
+                t.add(v);
+                expected.add(v);
+            } else {
+                assertEquals(expected.remove(v), t.remove(v));
+            }
+            assertEquals(expected.size(), t.size());
+            assertEquals(expected.contains(v), t.contains(v));
+        }
+        IntAVLTreeTest.checkStructure(t, t.root);
+
+        List<Long> actual = new ArrayList<>();
+        PrimitiveIterator.OfLong it = t.iterator();
+        while (it.hasNext()) {
+            actual.add(it.nextLong());
+        }
+        assertEquals(new ArrayList<>(expected), actual);
+
+        int i = 0;
+        for (Long v : expected) {
+            assertEquals(v.longValue(), t.select(i));
+            assertEquals(i, t.rank(v));
+            i++;
+        }
+    }
+
+    @Test
+    public void testFromSorted() throws Exception {
+        LongAVLTree t = LongAVLTree.fromSorted(new long[] {Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE});
+        IntAVLTreeTest.checkStructure(t, t.root);
+        assertEquals(5, t.size());
+        assertTrue(t.contains(Long.MIN_VALUE));
+        assertEquals(2, t.countInRange(0, Long.MAX_VALUE));
+    }
+}
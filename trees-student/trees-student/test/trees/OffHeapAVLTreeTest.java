@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package trees;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import codecs.Codecs;
+
+
+public class OffHeapAVLTreeTest {
+
+    @Test
+    public void testEmpty() throws Exception {
+        OffHeapAVLTree<Long> t = new OffHeapAVLTree<>(Codecs.LONG);
+        assertEquals(0, t.size());
+        assertFalse(t.contains(0L));
+        assertNull(t.remove(0L));
+        assertFalse(t.iterator().hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVariableWidthCodec() throws Exception {
+        new OffHeapAVLTree<>(Codecs.STRING);
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        Random r = new Random(0);
+        TreeSet<Long> expected = new TreeSet<>();
+        OffHeapAVLTree<Long> t = new OffHeapAVLTree<>(Codecs.LONG);
+        for (int i = 0; i < 200000; i++) {
+            long v = r.nextInt(100000) - 50000;
+            if (r.nextDouble() < 0.6) {
+                t.add(v);
+                expected.add(v);
+            } else {
+                assertEquals(expected.remove(v) ? Long.valueOf(v) : null, t.remove(v));
+            }
+            assertEquals(expected.size(), t.size());
+        }
+        for (long v = -50000; v < 50000; v += 7) {
+            assertEquals(expected.contains(v), t.contains(v));
+        }
+
+        List<Long> actual = new ArrayList<>();
+        for (Long v : t) {
+            actual.add(v);
+        }
+        assertEquals(new ArrayList<>(expected), actual);
+
+        int i = 0;
+        for (Long v : expected) {
+            if (i % 97 == 0) {
+                assertEquals(v, t.select(i));
+                assertEquals(i, t.rank(v));
+            }
+            i++;
+        }
+        assertEquals(expected.subSet(-1000L, 1000L).size(), t.countInRange(-1000L, 1000L));
+    }
+
+    @Test
+    public void testIteratorRemove() throws Exception {
+        OffHeapAVLTree<Integer> t = new OffHeapAVLTree<>(Codecs.INT);
+        for (int i = 0; i < 100; i++) {
+            t.add(i);
+        }
+        Iterator<Integer> it = t.iterator();
+        while (it.hasNext()) {
+            if (it.next() % 2 == 1) {
+                it.remove();
+            }
+        }
+        assertEquals(50, t.size());
+        int expected = 0;
+        for (Integer v : t) {
+            assertEquals(Integer.valueOf(expected), v);
+            expected += 2;
+        }
+        t.clear();
+        assertEquals(0, t.size());
+        t.add(1);
+        assertTrue(t.contains(1));
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        OffHeapAVLTree<Long> t = new OffHeapAVLTree<>(Codecs.LONG);
+        for (long i = 0; i < 10000; i++) {
+            t.add(i * 2);
+        }
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            final long seed = r;
+            readers.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int i = 0; i < 100000; i++) {
+                        long v = random.nextInt(20000);
+                        assertEquals(v % 2 == 0, t.contains(v));
+                        if (v % 2 == 0) {
+                            assertEquals(Long.valueOf(v), t.get(v));
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(new ArrayList<Throwable>(), failures);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2025 Marc Liberatore.
+ */
+
+package trees;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+
+public class PersistentAVLTreeTest {
+
+    /**
+     * Check the order, balance and cached fields of the subtree rooted at n,
+     * returning its height.
+     */
+    static int checkStructure(PersistentAVLTree.ImmutableNode<Integer> n, Integer lo, Integer hi) {
+        if (n == null) return -1;
+        if (lo != null) assertTrue(n.data > lo);
+        if (hi != null) assertTrue(n.data < hi);
+        int hl = checkStructure(n.left, lo, n.data);
+        int hr = checkStructure(n.right, n.data, hi);
+        assertTrue(Math.abs(hl - hr) <= 1);
+        assertEquals(1 + Math.max(hl, hr), n.height);
+        int sl = (n.left == null) ? 0 : n.left.size;
+        int sr = (n.right == null) ? 0 : n.right.size;
+        assertEquals(1 + sl + sr, n.size);
+        return n.height;
+    }
+
+    private static List<Integer> toList(Iterable<Integer> t) {
+        List<Integer> l = new ArrayList<>();
+        for (Integer i : t) {
+            l.add(i);
+        }
+        return l;
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        PersistentAVLTree<Integer> t = new PersistentAVLTree<>();
+        assertEquals(0, t.size());
+        assertFalse(t.contains(0));
+        assertNull(t.remove(0));
+        assertNull(t.first());
+        assertNull(t.last());
+        assertEquals(0, t.rank(0));
+        assertFalse(t.iterator().hasNext());
+    }
+
+    @Test
+    public void testManyActions() throws Exception {
+        Random r = new Random(0);
+        TreeSet<Integer> expected = new TreeSet<>();
+        PersistentAVLTree<Integer> t = new PersistentAVLTree<>();
+        for (int i = 0; i < 5000; i++) {
+            int v = r.nextInt(500) - 250;
+            if (r.nextDouble() < 0.6) {
+                expected.add(v);
+                t.add(v);
+            } else {
+                assertEquals(expected.remove(v) ? Integer.valueOf(v) : null, t.remove(v));
+            }
+            assertEquals(expected.size(), t.size());
+            if (i % 100 == 0) {
+                checkStructure(t.root, null, null);
+            }
+        }
+        checkStructure(t.root, null, null);
+        assertEquals(new ArrayList<>(expected), toList(t));
+        assertEquals(expected.first(), t.first());
+        assertEquals(expected.last(), t.last());
+        int k = 0;
+        for (Integer v : expected) {
+            assertEquals(v, t.select(k));
+            assertEquals(k, t.rank(v));
+            k++;
+        }
+        assertEquals(expected.subSet(-100, 100).size(), t.countInRange(-100, 100));
+    }
+
+    @Test
+    public void testSequentialInsertIsBalanced() throws Exception {
+        PersistentAVLTree<Integer> t = new PersistentAVLTree<>();
+        for (int i = 0; i < 1023; i++) {
+            t.add(i);
+        }
+        assertEquals(9, checkStructure(t.root, null, null));
+    }
+
+    @Test
+    public void testSnapshotsAreUnaffectedByLaterChanges() throws Exception {
+        Random r = new Random(1);
+        PersistentAVLTree<Integer> t = new PersistentAVLTree<>();
+        TreeSet<Integer> current = new TreeSet<>();
+        List<PersistentAVLTree<Integer>> snapshots = new ArrayList<>();
+        List<List<Integer>> contents = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int v = r.nextInt(200);
+            if (r.nextBoolean()) {
+                t.add(v);
+                current.add(v);
+            } else {
+                t.remove(v);
+                current.remove(v);
+            }
+            if (i % 50 == 0) {
+                snapshots.add(t.snapshot());
+                contents.add(new ArrayList<>(current));
+            }
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            PersistentAVLTree<Integer> s = snapshots.get(i);
+            assertEquals(contents.get(i), toList(s));
+            assertEquals(contents.get(i).size(), s.size());
+            checkStructure(s.root, null, null);
+        }
+        assertEquals(new ArrayList<>(current), toList(t));
+    }
+
+    @Test
+    public void testSnapshotSharesUnchangedSubtrees() throws Exception {
+        PersistentAVLTree<Integer> t = new PersistentAVLTree<>();
+        for (int i = 0; i < 1000; i++) {
+            t.add(i);
+        }
+        PersistentAVLTree<Integer> s = t.snapshot();
+        assertSame(t.root, s.root);
+        t.add(1000);
+        assertNotSame(t.root, s.root);
+        assertSame(s.root.left, t.root.left); // only the right spine was copied
+        assertEquals(1000, s.size());
+        assertFalse(s.contains(1000));
+    }
+
+    @Test
+    public void testSnapshotIsIndependentlyModifiable() throws Exception {
+        PersistentAVLTree<Integer> t = new PersistentAVLTree<>();
+        for (int i = 0; i < 10; i++) {
+            t.add(i);
+        }
+        PersistentAVLTree<Integer> s = t.snapshot();
+        s.remove(3);
+        t.add(10);
+        assertEquals(List.of(0, 1, 2, 4, 5, 6, 7, 8, 9), toList(s));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10), toList(t));
+    }
+
+    @Test
+    public void testIteratorSeesItsOwnVersion() throws Exception {
+        PersistentAVLTree<Integer> t = new PersistentAVLTree<>();
+        for (int i = 0; i < 10; i++) {
+            t.add(i);
+        }
+        List<Integer> seen = new ArrayList<>();
+        Iterator<Integer> it = t.iterator();
+        while (it.hasNext()) {
+            int v = it.next();
+            seen.add(v);
+            if (v % 2 == 0) {
+                it.remove();
+            }
+            t.add(100 + v);
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), seen);
+        assertEquals(List.of(1, 3, 5, 7, 9, 100, 101, 102, 103, 104, 105, 106, 107, 108, 109), toList(t));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIteratorRemoveTwice() throws Exception {
+        PersistentAVLTree<Integer> t = new PersistentAVLTree<>();
+        t.add(1);
+        Iterator<Integer> it = t.iterator();
+        it.next();
+        it.remove();
+        it.remove();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSelectOutOfBounds() throws Exception {
+        PersistentAVLTree<Integer> t = new PersistentAVLTree<>();
+        t.add(1);
+        t.select(1);
+    }
+}
@@ -270,6 +270,58 @@ public class TreeUtilitiesTest {
         }
     }
 
+    /**
+     * Assert that every child's parent pointer points back to its parent.
+     */
+    private static <E extends Comparable<E>> void assertParentsCorrect(BinarySearchTree<E> t) {
+        if (t.root != null) {
+            assertNull(t.root.parent);
+        }
+        List<Node<E>> nodes = new ArrayList<>();
+        if (t.root != null) {
+            nodes.add(t.root);
+        }
+        while (!nodes.isEmpty()) {
+            Node<E> n = nodes.remove(nodes.size() - 1);
+            if (n.left != null) {
+                assertSame(n, n.left.parent);
+                nodes.add(n.left);
+            }
+            if (n.right != null) {
+                assertSame(n, n.right.parent);
+                nodes.add(n.right);
+            }
+        }
+    }
+
+    /**
+     * Build the balanced tree of the values in [start, end] by adding each
+     * middle value (start + end) / 2 before the values on either side of it.
+     */
+    private static void addMiddleFirst(BinarySearchTree<Integer> t, int start, int end) {
+        if (start > end) return;
+        int mid = (start + end) / 2;
+        t.add(mid);
+        addMiddleFirst(t, start, mid - 1);
+        addMiddleFirst(t, mid + 1, end);
+    }
+
+    @Test
+    public void testBalanceShape() throws Exception {
+        for (int size = 0; size < 300; size++) {
+            BinarySearchTree<Integer> b = randomTree(size);
+            BinarySearchTree<Integer> t = TreeUtilities.intoBalanced(b);
+            BinarySearchTree<Integer> expected = new BinarySearchTree<>();
+            addMiddleFirst(expected, 0, size - 1);
+            assertEquals(size, t.size());
+            assertTrue(TreeUtilities.equalSubtrees(expected.root, t.root));
+            assertParentsCorrect(t);
+            // the old tree is untouched
+            assertEquals(size, TreeUtilities.inOrder(b.root).size());
+            assertParentsCorrect(b);
+        }
+    }
+
     @Test
     public void testBalanceAll() throws Exception {
         testBalanceEmpty();
@@ -280,6 +332,71 @@ public class TreeUtilitiesTest {
         testBalance100Randomized();
     }
 
+    @Test
+    public void testBalanceInPlaceEmpty() throws Exception {
+        BinarySearchTree<Integer> b = new BinarySearchTree<>();
+        TreeUtilities.balanceInPlace(b);
+        assertNull(b.root);
+        assertEquals(0, b.size());
+    }
+
+    @Test
+    public void testBalanceInPlaceSeven() throws Exception {
+        BinarySearchTree<Integer> b = new BinarySearchTree<>();
+        for (int i = 1; i < 8; i++) {
+            b.add(i);
+        }
+        Node<Integer> four = b.root.right.right.right;
+        TreeUtilities.balanceInPlace(b);
+
+        BinarySearchTree<Integer> bal = new BinarySearchTree<>();
+        addMiddleFirst(bal, 1, 7);
+        assertTrue(TreeUtilities.equalSubtrees(bal.root, b.root));
+        assertSame(four, b.root);
+        assertParentsCorrect(b);
+    }
+
+    @Test
+    public void testBalanceInPlaceRandomized() throws Exception {
+        for (int size = 1; size < 1000; size += 7) {
+            BinarySearchTree<Integer> b = randomTree(size);
+            TreeUtilities.balanceInPlace(b);
+            assertEquals(size, b.size());
+            assertEquals(31 - Integer.numberOfLeadingZeros(size), TreeUtilities.height(b.root));
+            assertTrue(TreeUtilities.isAVLTree(b.root));
+            assertParentsCorrect(b);
+            List<Integer> l = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                l.add(i);
+            }
+            assertEquals(l, TreeUtilities.inOrder(b.root));
+        }
+    }
+
+    @Test
+    public void testBalanceDegenerate() throws Exception {
+        // a path of left children, linked directly, as adding in decreasing order would
+        final int size = 1 << 20;
+        BinarySearchTree<Integer> b = new BinarySearchTree<>();
+        b.root = new Node<>(size - 1);
+        Node<Integer> n = b.root;
+        for (int i = size - 2; i >= 0; i--) {
+            n.left = new Node<>(i, n);
+            n = n.left;
+        }
+        b.size = size;
+
+        BinarySearchTree<Integer> t = TreeUtilities.intoBalanced(b);
+        assertEquals(20, TreeUtilities.height(t.root));
+        assertTrue(TreeUtilities.isAVLTree(t.root));
+
+        TreeUtilities.balanceInPlace(b);
+        assertEquals(20, TreeUtilities.height(b.root));
+        assertTrue(TreeUtilities.isAVLTree(b.root));
+        assertParentsCorrect(b);
+        assertEquals(TreeUtilities.inOrder(t.root), TreeUtilities.inOrder(b.root));
+    }
+
     @Test
     public void testisBSTEmpty() throws Exception {
         assertTrue(TreeUtilities.isBST(null));
@@ -359,6 +476,163 @@ public class TreeUtilitiesTest {
         assertFalse(TreeUtilities.isAVLTree(o));
     }
 
+    @Test
+    public void testAddDuplicate() throws Exception {
+        BinarySearchTree<Integer> b = new BinarySearchTree<>();
+        b.add(2);
+        b.add(1);
+        b.add(2);
+        b.add(1);
+        assertEquals(2, b.size());
+        assertEquals(Arrays.asList(1, 2), TreeUtilities.inOrder(b.root));
+        assertEquals(1, TreeUtilities.height(b.root));
+    }
+
+    @Test
+    public void testDegenerateTree() throws Exception {
+        // sorted keys make a tree that is one long path, deeper than any
+        // recursive traversal could go
+        final int size = 20000;
+        List<Integer> l = new ArrayList<>();
+        BinarySearchTree<Integer> b = new BinarySearchTree<>();
+        BinarySearchTree<Integer> c = new BinarySearchTree<>();
+        for (int i = 0; i < size; i++) {
+            l.add(i);
+            b.add(i);
+            c.add(i);
+        }
+        assertEquals(size, b.size());
+        assertTrue(b.contains(size - 1));
+        assertEquals(Integer.valueOf(size - 1), b.findData(size - 1));
+        assertEquals(size - 1, TreeUtilities.height(b.root));
+        assertEquals(l, TreeUtilities.inOrder(b.root));
+        assertTrue(TreeUtilities.isBST(b.root));
+        assertFalse(TreeUtilities.isAVLTree(b.root));
+        assertTrue(TreeUtilities.equalSubtrees(b.root, c.root));
+        c.remove(size - 1);
+        c.add(-1);
+        assertFalse(TreeUtilities.equalSubtrees(b.root, c.root));
+        b.remove(0);
+        assertFalse(b.contains(0));
+        assertEquals(size - 1, b.size());
+    }
+
+    @Test
+    public void testIsAVLTreeDeep() throws Exception {
+        BinarySearchTree<Integer> b = TreeUtilities.intoBalanced(randomTree(1 << 16));
+        assertTrue(TreeUtilities.isAVLTree(b.root));
+        assertTrue(TreeUtilities.isBST(b.root));
+        // hang a path of three below the last leaf
+        Node<Integer> n = b.root;
+        while (n.right != null) {
+            n = n.right;
+        }
+        n.right = new Node<>(1 << 16, n);
+        n.right.right = new Node<>((1 << 16) + 1, n.right);
+        assertFalse(TreeUtilities.isAVLTree(b.root));
+        assertTrue(TreeUtilities.isBST(b.root));
+        n.right.right.data = 0;
+        assertFalse(TreeUtilities.isBST(b.root));
+    }
+
+    private static BinarySearchTree<Integer> randomTree(int size) {
+        BinarySearchTree<Integer> b = new BinarySearchTree<>();
+        List<Integer> l = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            l.add(i);
+        }
+        Collections.shuffle(l, new Random(0));
+        for (Integer i : l) {
+            b.add(i);
+        }
+        return b;
+    }
+
+    @Test
+    public void testParallelChecksEmpty() throws Exception {
+        assertTrue(TreeUtilities.isBSTParallel(null));
+        assertTrue(TreeUtilities.isAVLTreeParallel(null));
+        assertTrue(TreeUtilities.equalSubtreesParallel(null, null));
+        assertFalse(TreeUtilities.equalSubtreesParallel(new Node<>(1), null));
+    }
+
+    @Test
+    public void testParallelChecksValid() throws Exception {
+        BinarySearchTree<Integer> b = TreeUtilities.intoBalanced(randomTree(1 << 18));
+        BinarySearchTree<Integer> c = TreeUtilities.intoBalanced(b);
+        assertTrue(TreeUtilities.isBSTParallel(b.root));
+        assertTrue(TreeUtilities.isAVLTreeParallel(b.root));
+        assertTrue(TreeUtilities.equalSubtreesParallel(b.root, c.root));
+    }
+
+    @Test
+    public void testParallelChecksRandomized() throws Exception {
+        Random r = new Random(22);
+        for (int trial = 0; trial < 50; trial++) {
+            int size = 1 + r.nextInt(1 << 14);
+            BinarySearchTree<Integer> b = randomTree(size);
+            if (r.nextBoolean()) {
+                b = TreeUtilities.intoBalanced(b);
+            }
+            BinarySearchTree<Integer> c = TreeUtilities.intoBalanced(b);
+            // change one value, perhaps breaking the order
+            List<Node<Integer>> nodes = new ArrayList<>();
+            nodes.add(c.root);
+            for (int i = 0; i < nodes.size(); i++) {
+                Node<Integer> n = nodes.get(i);
+                if (n.left != null) nodes.add(n.left);
+                if (n.right != null) nodes.add(n.right);
+            }
+            if (r.nextBoolean()) {
+                nodes.get(r.nextInt(size)).data = r.nextInt(size + 2) - 1;
+            }
+            for (BinarySearchTree<Integer> t : Arrays.asList(b, c)) {
+                assertEquals(TreeUtilities.isBST(t.root), TreeUtilities.isBSTParallel(t.root));
+                assertEquals(TreeUtilities.isAVLTree(t.root), TreeUtilities.isAVLTreeParallel(t.root));
+            }
+            BinarySearchTree<Integer> balanced = TreeUtilities.intoBalanced(b);
+            assertEquals(TreeUtilities.equalSubtrees(balanced.root, c.root),
+                    TreeUtilities.equalSubtreesParallel(balanced.root, c.root));
+        }
+    }
+
+    @Test
+    public void testParallelChecksDeepViolation() throws Exception {
+        BinarySearchTree<Integer> b = TreeUtilities.intoBalanced(randomTree(1 << 18));
+        BinarySearchTree<Integer> c = TreeUtilities.intoBalanced(b);
+        // the rightmost node of the left subtree: ordered with its parent, but
+        // not with the root
+        Node<Integer> n = b.root.left;
+        while (n.right != null) {
+            n = n.right;
+        }
+        n.data = b.root.data + 1;
+        assertFalse(TreeUtilities.isBSTParallel(b.root));
+        assertTrue(TreeUtilities.isAVLTreeParallel(b.root)); // which only checks children against parents
+        assertFalse(TreeUtilities.equalSubtreesParallel(b.root, c.root));
+        // a subtree hung below the bottom level
+        n.data = b.root.data - 1;
+        n.right = new Node<>(b.root.data - 1, n);
+        n.right.right = new Node<>(b.root.data - 1, n.right);
+        assertFalse(TreeUtilities.isAVLTreeParallel(b.root));
+        assertFalse(TreeUtilities.isBSTParallel(b.root));
+    }
+
+    @Test
+    public void testParallelChecksDegenerate() throws Exception {
+        final int size = 1 << 16;
+        BinarySearchTree<Integer> b = new BinarySearchTree<>();
+        b.root = new Node<>(0);
+        Node<Integer> n = b.root;
+        for (int i = 1; i < size; i++) {
+            n.right = new Node<>(i, n);
+            n = n.right;
+        }
+        assertTrue(TreeUtilities.isBSTParallel(b.root));
+        assertFalse(TreeUtilities.isAVLTreeParallel(b.root));
+        assertTrue(TreeUtilities.equalSubtreesParallel(b.root, b.root));
+    }
+
    // @Test
   //  public void testIsAVLTreeWarning() throws Exception {        
    //     fail("This test is intended to fail. Read the comment and then comment out this test.");